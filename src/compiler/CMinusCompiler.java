@@ -5,6 +5,7 @@ import parser.*;
 import parser.CMinusParser.Program;
 import lowlevel.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.io.*;
 import optimizer.*;
 import x86codegen.*;
@@ -16,6 +17,8 @@ public class CMinusCompiler implements Compiler {
 
     public static HashMap globalHash = new HashMap();
     private static boolean genX64Code = false;
+    private static boolean parallelLowering = false;
+    private static boolean useAstCache = false;
 
     public CMinusCompiler() {
     }
@@ -26,18 +29,47 @@ public class CMinusCompiler implements Compiler {
     public static boolean getGenX64Code() {
         return genX64Code;
     }
+    // Lower the functions to low-level code in parallel on the common ForkJoinPool
+    public static void setParallelLowering(boolean parallel) {
+        parallelLowering = parallel;
+    }
+    public static boolean getParallelLowering() {
+        return parallelLowering;
+    }
+    // Reuse the parse tree of an unchanged source file (saved as <file>.c.astcache)
+    public static void setUseAstCache(boolean useCache) {
+        useAstCache = useCache;
+    }
+    public static boolean getUseAstCache() {
+        return useAstCache;
+    }
 
     public void compile(String filePrefix) {
 
         String fileName = filePrefix + ".c";
 
         try {
-            Parser myParser = new CMinusParser(fileName);
+            CMinusParser myParser = new CMinusParser(fileName);
 
+            // Report every syntax error, not just the first
+            myParser.setErrorRecovery(true);
+            myParser.setAstCache(useAstCache);
             Program parseTree = myParser.parse();
+            if (!myParser.getDiagnostics().isEmpty()) {
+                for (String diagnostic : myParser.getDiagnostics()) {
+                    System.err.println(fileName + ": " + diagnostic);
+                }
+                return;
+            }
             //myParser.printAST(parseTree);
 
-            CodeItem lowLevelCode = parseTree.genLLCode();
+            // Semantic errors stop the compile before any code is generated
+            parseTree.analyze();
+            parseTree.simplify();
+
+            CodeItem lowLevelCode = parallelLowering
+                    ? parseTree.genLLCode(ForkJoinPool.commonPool())
+                    : parseTree.genLLCode();
 
             fileName = filePrefix + ".ll";
             PrintWriter outFile =
@@ -37,12 +37,12 @@ public class ControlFlowAnalysis {
             BasicBlock tgt;
             if ( (currOper.getType() == Operation.OperationType.JMP) ||
                  (currOper.isX86BranchOper()) ) {
-              tgtNum = ( (Integer) currOper.getSrcOperand(0).getValue()).intValue();
-              tgt = BasicBlock.getBlockFromNum(func,tgtNum);
+              tgtNum = currOper.getSrcOperand(0).getBlockNum();
+              tgt = func.getBlockForNum(tgtNum);
             }
             else {
-              tgtNum = ( (Integer) currOper.getSrcOperand(2).getValue()).intValue();
-              tgt = BasicBlock.getBlockFromNum(func,tgtNum);
+              tgtNum = currOper.getSrcOperand(2).getBlockNum();
+              tgt = func.getBlockForNum(tgtNum);
             }
           currBlock.addOutEdge(tgt);
           tgt.addInEdge(currBlock);
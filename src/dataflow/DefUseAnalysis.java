@@ -59,7 +59,7 @@ public class DefUseAnalysis {
       for (Operation currOper = currBlock.getFirstOper(); currOper != null;
                     currOper = currOper.getNextOper()) {
         if (currOper.hasRegDest()) {
-          int regNum = ( (Integer) currOper.getDestOperand(0).getValue()).intValue();
+          int regNum = currOper.getDestOperand(0).getRegNum();
           defs[regNum].add(currOper.getNum());
         }
       }
@@ -87,7 +87,7 @@ public class DefUseAnalysis {
                     currOper = currOper.getNextOper()) {
 
         if (currOper.hasRegDest()) {
-          int regNum = ( (Integer) currOper.getDestOperand(0).getValue()).intValue();
+          int regNum = currOper.getDestOperand(0).getRegNum();
             // remove all defs of this reg from gen set (to get rid of those
             // which were earlier in the block), then add this def
           gen = gen.subtract(defs[regNum]);
@@ -115,7 +115,7 @@ public class DefUseAnalysis {
       for (Operation currOper = currBlock.getFirstOper(); currOper != null;
                     currOper = currOper.getNextOper()) {
         if (currOper.hasRegDest()) {
-          int regNum = ( (Integer) currOper.getDestOperand(0).getValue()).intValue();
+          int regNum = currOper.getDestOperand(0).getRegNum();
           defs[regNum].add(currOper.getNum());
         }
       }
@@ -143,7 +143,7 @@ public class DefUseAnalysis {
                     currOper = currOper.getNextOper()) {
 
         if (currOper.hasRegDest()) {
-          int regNum = ( (Integer) currOper.getDestOperand(0).getValue()).intValue();
+          int regNum = currOper.getDestOperand(0).getRegNum();
             // remove all defs of this reg from gen set (to get rid of those
             // which were earlier in the block), then add this def
           gen = gen.subtract(defs[regNum]);
@@ -29,6 +29,9 @@ public class LivenessAnalysis {
         // is referenced in both the function and the oper)
         // also sets up BitArraySets in each BasicBlock
       func.setUpLiveness();
+        // the per-oper passes below only read the code, so they scan a dense
+        // copy of it
+      InstructionStore store = func.buildInstructionStore();
 
         // Next, we need to set up and perform the BasicBlock level analysis
 
@@ -38,30 +41,30 @@ public class LivenessAnalysis {
 
         // We first determine the def and use sets for each basic block, then we
         // iterate until in/out sets are stable
-      setUpDefAndUseSets(func);
+      setUpDefAndUseSets(func, store);
 
       performIterationOnInOutSets (func);
 
         // to check liveness analysis, we look for things like defs which aren't
         // live out (unused vars), and uses which are live into function
         // (i.e. BB0; undefined vars)
-      checkLivenessAnalysis (func);
+      checkLivenessAnalysis (func, store);
 
         // we now have BB granularity
         // to get Oper granularity, we need to do 2 things:
         //    1. use IN/OUT sets to update opers
         //    2. compute local register use (regs that aren't live out)
-      updateLivenessForOpers (func);
+      updateLivenessForOpers (func, store);
 
 
 
     }
   }
 
-  private void setUpDefAndUseSets (Function func) {
+  private void setUpDefAndUseSets (Function func, InstructionStore store) {
 
-    for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
-                    currBlock = currBlock.getNextBlock()) {
+    for (int blockPos = 0; blockPos < store.getNumBlocks(); blockPos++) {
+      BasicBlock currBlock = store.getBlock(blockPos);
         // for each block, we walk the block to determine the use/def
 
         // the DEF set is the set of register definitions within the block,
@@ -81,26 +84,23 @@ public class LivenessAnalysis {
       BitArraySet defsSoFar = new BitArraySet(func.getMaxRegNum()+1);
       BitArraySet usesSoFar = new BitArraySet(func.getMaxRegNum()+1);
 
-      for (Operation currOper = currBlock.getFirstOper(); currOper != null;
-                    currOper = currOper.getNextOper()) {
+      for (int currOper = store.getFirstOper(blockPos);
+           currOper != InstructionStore.NONE;
+           currOper = store.getNextOper(currOper)) {
           // because an oper reads its sources before defining the reg, we need
           // to eval uses first
-        for (int i=0; i < Operation.MAX_SRC_OPERANDS; i++) {
-          Operand currOperand = currOper.getSrcOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+        for (int i=0; i < store.getSrcCount(currOper); i++) {
+          int regNum = store.getSrcReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             if (!defsSoFar.contains(regNum)) {
               uses.add(regNum);
             }
             usesSoFar.add(regNum);
           }
         }
-        for (int i=0; i < Operation.MAX_DEST_OPERANDS; i++) {
-          Operand currOperand = currOper.getDestOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+        for (int i=0; i < store.getDestCount(currOper); i++) {
+          int regNum = store.getDestReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             if (!usesSoFar.contains(regNum)) {
               defs.add(regNum);
             }
@@ -197,9 +197,9 @@ public class LivenessAnalysis {
     //    isn't live out, it is dead code
     // 2. uses which are live into the function.  Any live in to block 0 might
     //    indicate a problem
-  private void checkLivenessAnalysis (Function func) {
-    for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
-                    currBlock = currBlock.getNextBlock()) {
+  private void checkLivenessAnalysis (Function func, InstructionStore store) {
+    for (int blockPos = 0; blockPos < store.getNumBlocks(); blockPos++) {
+      BasicBlock currBlock = store.getBlock(blockPos);
 
         // if block 0, check live in - safer to check for no predecessor
       if (currBlock.getPrevBlock() == null) {
@@ -221,22 +221,19 @@ public class LivenessAnalysis {
       BitArraySet unusedDefsSoFar = new BitArraySet(func.getMaxRegNum()+1);
         // for all blocks, look at each definition, and see it it is live out
         // but only if it isn't used subsequently within the block
-      for (Operation currOper = currBlock.getFirstOper(); currOper != null;
-                    currOper = currOper.getNextOper()) {
+      for (int currOper = store.getFirstOper(blockPos);
+           currOper != InstructionStore.NONE;
+           currOper = store.getNextOper(currOper)) {
           // if used, reset bit
-        for (int i=0; i < Operation.MAX_SRC_OPERANDS; i++) {
-          Operand currOperand = currOper.getSrcOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+        for (int i=0; i < store.getSrcCount(currOper); i++) {
+          int regNum = store.getSrcReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             unusedDefsSoFar.remove(regNum);
           }
         }
-        for (int i=0; i < Operation.MAX_DEST_OPERANDS; i++) {
-          Operand currOperand = currOper.getDestOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+        for (int i=0; i < store.getDestCount(currOper); i++) {
+          int regNum = store.getDestReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             unusedDefsSoFar.add(regNum);
           }
         }
@@ -255,7 +252,7 @@ public class LivenessAnalysis {
     }
   }
 
-  private void updateLivenessForOpers (Function func) {
+  private void updateLivenessForOpers (Function func, InstructionStore store) {
       // we will walk through each block, from last oper to first
       // for each oper, if a reg is defined, we remove it from the current
       //    live set
@@ -264,36 +261,33 @@ public class LivenessAnalysis {
       // as oper's live set
 
       // the current live set had better equal livenessIn, or we are confused
-    for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
-                    currBlock = currBlock.getNextBlock()) {
+    for (int blockPos = 0; blockPos < store.getNumBlocks(); blockPos++) {
+      BasicBlock currBlock = store.getBlock(blockPos);
 
       BitArraySet currentLiveness = new BitArraySet (currBlock.getLivenessOut());
         // walk backwards through opers
-      for (Operation currOper = currBlock.getLastOper(); currOper != null;
-                    currOper = currOper.getPrevOper()) {
-
-        for (int i=0; i < Operation.MAX_DEST_OPERANDS; i++) {
-          Operand currOperand = currOper.getDestOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+      for (int currOper = store.getLastOper(blockPos);
+           currOper != InstructionStore.NONE;
+           currOper = store.getPrevOper(currOper)) {
+
+        for (int i=0; i < store.getDestCount(currOper); i++) {
+          int regNum = store.getDestReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             currentLiveness.remove(regNum);
           }
         }
 
 
           // update for uses
-        for (int i=0; i < Operation.MAX_SRC_OPERANDS; i++) {
-          Operand currOperand = currOper.getSrcOperand(i);
-          if ( (currOperand != null) &&
-               (currOperand.getType() == Operand.OperandType.REGISTER) ) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+        for (int i=0; i < store.getSrcCount(currOper); i++) {
+          int regNum = store.getSrcReg(currOper, i);
+          if (regNum != InstructionStore.NONE) {
             currentLiveness.add(regNum);
           }
         }
 
           // set oper liveness
-        currOper.setLiveRange(new BitArraySet(currentLiveness));
+        store.getOperation(currOper).setLiveRange(new BitArraySet(currentLiveness));
 
       }
       if (! currentLiveness.equals(currBlock.getLivenessIn())) {
@@ -177,14 +177,7 @@ public class BasicBlock {
     // pointers are maintained
 
   public static BasicBlock getBlockFromNum(Function func, int blockNum) {
-    for (BasicBlock curr = func.getFirstBlock(); curr != null;
-              curr = curr.getNextBlock() ) {
-      if (curr.getBlockNum() == blockNum) {
-        return (curr);
-      }
-    }
-    throw new LowLevelException("BasicBlock: no block corresponds to num" +
-                                  blockNum);
+    return func.getBlockForNum(blockNum);
   }
   /**
    * This is the main method for adding an Operation to a block
@@ -202,6 +195,7 @@ public class BasicBlock {
       lastOper = newOper;
     }
     newOper.setBlock(this);
+    func.linkOper(newOper);
   }
   /**
    *  splices an Operation out of the BasicBlock
@@ -221,6 +215,7 @@ public class BasicBlock {
     else {
       oper.getNextOper().setPrevOper(oper.getPrevOper());
     }
+    func.unlinkOper(oper);
   }
 
   /**
@@ -241,6 +236,8 @@ public class BasicBlock {
     }
     oper.setNextOper(insertOper);
     insertOper.setPrevOper(oper);
+    insertOper.setBlock(this);
+    func.linkOper(insertOper);
   }
   /**
    * Inserts Operation into list just prior to an Operation already in list.
@@ -259,6 +256,8 @@ public class BasicBlock {
     }
     oper.setPrevOper(insertOper);
     insertOper.setNextOper(oper);
+    insertOper.setBlock(this);
+    func.linkOper(insertOper);
   }
   /**
    * Inserts Operation into the beginning of the Operation list.
@@ -274,6 +273,8 @@ public class BasicBlock {
       lastOper = insertOper;
     }
     firstOper = insertOper;
+    insertOper.setBlock(this);
+    func.linkOper(insertOper);
   }
 
 
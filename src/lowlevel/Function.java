@@ -59,6 +59,10 @@ public class Function extends CodeItem {
     // of unconnected blocks.
   private BasicBlock firstUnconnectedBlock;
   private BasicBlock lastUnconnectedBlock;
+    // The blocks linked into either list, indexed by block number, so a jmp
+    // or branch target is found without walking the list.  The methods that
+    // link and unlink blocks keep it up to date.
+  private BasicBlock []blockIndex;
     // controls whether any optimization should be done during code generation
   private static boolean optimize;
 
@@ -69,6 +73,13 @@ public class Function extends CodeItem {
   private BitArraySet []defUseVars;
   private BitArraySet []livenessVars;
   private Operation []operPtr;
+    // Def-use chains, indexed by virtual register: the Operations in the
+    // function's blocks which write the register, and those which read it
+    // (once per src slot).  BasicBlock and Operation keep them up to date as
+    // Operations are linked in, unlinked and given new Operands, each in
+    // constant time.
+  private ArrayList<RegChain> regDefs;
+  private ArrayList<RegChain> regUses;
 
 /***************************************************************************/
     /**
@@ -96,6 +107,9 @@ public class Function extends CodeItem {
     maxBlockNum = 0;
     maxOperNum = 0;
     currBlock = null;
+    blockIndex = new BasicBlock[16];
+    regDefs = new ArrayList<RegChain>();
+    regUses = new ArrayList<RegChain>();
     symbolTable = new HashMap<String, Integer>();
     maxRegNum = 0;
     returnBlock = genReturnBlock();
@@ -274,6 +288,7 @@ public class Function extends CodeItem {
   public void createBlock0 () {
     firstBlock = new BasicBlock(this);
     lastBlock = firstBlock;
+    indexBlock(firstBlock);
     Operation newOper =
           new Operation(Operation.OperationType.FUNC_ENTRY, firstBlock);
 
@@ -318,12 +333,14 @@ public class Function extends CodeItem {
     lastBlock.setNextBlock(newBlock);
     newBlock.setPrevBlock(lastBlock);
     BasicBlock curr = newBlock;
+    indexBlock(curr);
       // in case the new block is actually the head of a list of blocks to be
       // appended, this code ensures lastBlock variable maintained.  This is
       // needed at the end of code generation for a function, when the
       // "unconnnected" list is appended to the "main" path.
     while (curr.getNextBlock() != null) {
       curr = curr.getNextBlock();
+      indexBlock(curr);
     }
     lastBlock = curr;
   }
@@ -341,10 +358,12 @@ public class Function extends CodeItem {
     currBlock.setNextBlock(newBlock);
     newBlock.setPrevBlock(currBlock);
     BasicBlock lastInChain = newBlock;
+    indexBlock(lastInChain);
       // code added so that if you are appending a chain, the lastBlock or
       // lastUnconnectedBlock pointer is set correctly.
     while (lastInChain.getNextBlock() != null) {
       lastInChain = lastInChain.getNextBlock();
+      indexBlock(lastInChain);
     }
     if (lastBlock == currBlock) {
       lastBlock = lastInChain;
@@ -370,11 +389,13 @@ public class Function extends CodeItem {
       firstUnconnectedBlock = newBlock;
     }
     BasicBlock lastInChain = newBlock;
+    indexBlock(lastInChain);
 
       // code added so that if you are appending a chain, the lastBlock or
       // lastUnconnectedBlock pointer is set correctly.
     while (lastInChain.getNextBlock() != null) {
       lastInChain = lastInChain.getNextBlock();
+      indexBlock(lastInChain);
     }
     lastUnconnectedBlock = lastInChain;
   }
@@ -392,12 +413,20 @@ public class Function extends CodeItem {
     else {
       lastBlock = block.getPrevBlock();
     }
+    if (blockIndex[block.getBlockNum()] == block) {
+      blockIndex[block.getBlockNum()] = null;
+    }
+    for (Operation currOper = block.getFirstOper(); currOper != null;
+                  currOper = currOper.getNextOper()) {
+      unlinkOper(currOper);
+    }
   }
 
   public void insertBlockAfter (BasicBlock currBlock, BasicBlock newBlock) {
     BasicBlock next = currBlock.getNextBlock();
     currBlock.setNextBlock(newBlock);
     newBlock.setPrevBlock(currBlock);
+    indexBlock(newBlock);
     if (next != null) {
       newBlock.setNextBlock(next);
       next.setPrevBlock(newBlock);
@@ -412,6 +441,141 @@ public class Function extends CodeItem {
     }
   }
 
+    /**
+     * Finds a block by its number, e.g. the target of a jmp or branch
+     * @param blockNum - number of the block
+     * @return the block, which must be linked into the function
+     */
+  public BasicBlock getBlockForNum (int blockNum) {
+    BasicBlock block = null;
+    if (blockNum >= 0 && blockNum < blockIndex.length) {
+      block = blockIndex[blockNum];
+    }
+    if (block == null) {
+      throw new LowLevelException("Function: no block corresponds to num" +
+                                  blockNum);
+    }
+    return block;
+  }
+
+  private void indexBlock (BasicBlock block) {
+    int blockNum = block.getBlockNum();
+    if (blockNum >= blockIndex.length) {
+      BasicBlock []newIndex =
+          new BasicBlock[Math.max(blockNum + 1, blockIndex.length * 2)];
+      System.arraycopy(blockIndex, 0, newIndex, 0, blockIndex.length);
+      blockIndex = newIndex;
+    }
+    blockIndex[blockNum] = block;
+  }
+
+/***************************************************************************/
+    // def-use chains
+    //
+    // The code isn't in SSA form: a register holding a C- variable may be
+    // written by several Operations, and the chains don't say which of them
+    // reaches a given use (that takes liveness).  A temporary has a single
+    // def, so its chain is exact.
+
+    /**
+     * @param regNum - a virtual register
+     * @return the Operations which write regNum, in no particular order;
+     * don't modify the list
+     */
+  public List<Operation> getDefs (int regNum) {
+    return chainFor(regDefs, regNum);
+  }
+    /**
+     * @param regNum - a virtual register
+     * @return the Operations which read regNum, once per src slot and in no
+     * particular order; don't modify the list
+     */
+  public List<Operation> getUses (int regNum) {
+    return chainFor(regUses, regNum);
+  }
+    // the only Operation which writes regNum, or null if there are none or
+    // several
+  public Operation getSingleDef (int regNum) {
+    List<Operation> defs = getDefs(regNum);
+    return (defs.size() == 1) ? defs.get(0) : null;
+  }
+
+  private static List<Operation> chainFor (ArrayList<RegChain> chains,
+                                           int regNum) {
+    if (regNum >= chains.size() || chains.get(regNum) == null) {
+      return Collections.<Operation>emptyList();
+    }
+    return chains.get(regNum);
+  }
+
+    // The chains are only right if every change to the code in the blocks
+    // goes through BasicBlock's append/insert/removeOper, Operation.delete()
+    // and Operation's setSrcOperand/setDestOperand, which call the three
+    // methods below.  Code which splices the prev/next links by hand must
+    // unlink the Operations it takes out and link the ones it puts in;
+    // removeUnusedDefs deletes code based on getUses().
+
+    // adds an Operation just put into one of the blocks to the chains; an
+    // Operation moved from one block to another is already there
+  void linkOper (Operation oper) {
+    if (oper.isLinked()) {
+      return;
+    }
+    oper.setLinked(true);
+    for (int i = 0; i < oper.srcCount(); i++) {
+      addToChain(regUses, false, oper.getSrcOperand(i), oper, i);
+    }
+    for (int i = 0; i < oper.destCount(); i++) {
+      addToChain(regDefs, true, oper.getDestOperand(i), oper, i);
+    }
+  }
+    // takes an Operation removed from its block out of the chains
+  void unlinkOper (Operation oper) {
+    if (!oper.isLinked()) {
+      return;
+    }
+    oper.setLinked(false);
+    for (int i = 0; i < oper.srcCount(); i++) {
+      removeFromChain(regUses, oper.getSrcOperand(i), oper, i);
+    }
+    for (int i = 0; i < oper.destCount(); i++) {
+      removeFromChain(regDefs, oper.getDestOperand(i), oper, i);
+    }
+  }
+    // called by a linked Operation before slot index is given a new Operand
+  void replaceOperand (Operation oper, int index, Operand oldOperand,
+                       Operand newOperand, boolean isDest) {
+    ArrayList<RegChain> chains = isDest ? regDefs : regUses;
+    removeFromChain(chains, oldOperand, oper, index);
+    addToChain(chains, isDest, newOperand, oper, index);
+  }
+
+  private static void addToChain (ArrayList<RegChain> chains, boolean isDest,
+                                   Operand operand, Operation oper, int slot) {
+    if (operand == null || operand.getType() != Operand.OperandType.REGISTER) {
+      return;
+    }
+    int regNum = operand.getRegNum();
+    while (chains.size() <= regNum) {
+      chains.add(null);
+    }
+    RegChain chain = chains.get(regNum);
+    if (chain == null) {
+      chain = new RegChain(isDest);
+      chains.set(regNum, chain);
+    }
+    chain.add(oper, slot);
+  }
+
+  private static void removeFromChain (ArrayList<RegChain> chains,
+                                       Operand operand, Operation oper,
+                                       int slot) {
+    if (operand == null || operand.getType() != Operand.OperandType.REGISTER) {
+      return;
+    }
+    chains.get(operand.getRegNum()).remove(oper, slot);
+  }
+
 /***************************************************************************/
     // dataflow support
 
@@ -449,6 +613,16 @@ public class Function extends CodeItem {
     }
   }
 
+    /**
+     * Lays the Operations out in a new InstructionStore.  The Function
+     * doesn't keep it: the store is a snapshot, so build another after
+     * changing the code.
+     * @return the new store
+     */
+  public InstructionStore buildInstructionStore () {
+    return new InstructionStore(this);
+  }
+
     // sets up BitArraySets in function and in opers (the same BitArraySet
     // is referenced in both the function and the oper)
     // also sets up BitArraySets in each BasicBlock
@@ -0,0 +1,224 @@
+package lowlevel;
+
+/**
+ * This class is a dense copy of a Function's Operations, for passes which
+ * only read the code
+ *
+ * Description:  Walking Operations chases next pointers and Operand arrays
+ * all over the heap.  An InstructionStore lays a Function's Operations out
+ * in block order in parallel int arrays: opcode, block, prev/next links and
+ * the type and number of each src and dest Operand.  A pass such as liveness
+ * analysis can then scan contiguous memory.  Index i of every array is the
+ * i-th Operation, and getOperation(i) returns the Operation itself, so a
+ * pass can still annotate it or reach a MACRO or STRING name.
+ *
+ * The store is a snapshot, built by Function.buildInstructionStore().  It
+ * doesn't follow later changes to the code; rebuild it after changing the
+ * Function.
+ */
+
+public class InstructionStore {
+
+    // marks an empty src/dest slot, and the end of a block's links
+  public static final int NONE = -1;
+
+  private static final Operation.OperationType []OPCODES =
+      Operation.OperationType.values();
+  private static final Operand.OperandType []OPERAND_TYPES =
+      Operand.OperandType.values();
+  private static final int REGISTER = Operand.OperandType.REGISTER.ordinal();
+
+/***************************************************************************/
+    // instance variables
+  private int numOpers;
+  private int numBlocks;
+    // per Operation: opcode ordinal, position of its block, and the index of
+    // the previous and next Operation in the same block
+  private int []opcode;
+  private int []block;
+  private int []prev;
+  private int []next;
+    // per Operation, where its src (dest) slots start in the arrays below;
+    // entry numOpers marks the end of the last Operation's slots
+  private int []srcStart;
+  private int []destStart;
+    // per src/dest slot: the Operand type ordinal or NONE, and the number of
+    // an INTEGER, REGISTER or BLOCK Operand
+  private int []srcType;
+  private int []srcNum;
+  private int []destType;
+  private int []destNum;
+  private Operation []opers;
+    // per block, in list order: the block and its first and last Operation,
+    // NONE for an empty block
+  private BasicBlock []blocks;
+  private int []blockFirst;
+  private int []blockLast;
+
+/***************************************************************************/
+    /**
+     * @param func is the Function whose Operations are copied
+     */
+  public InstructionStore (Function func) {
+    int numSrcs = 0;
+    int numDests = 0;
+    for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
+                    currBlock = currBlock.getNextBlock()) {
+      numBlocks++;
+      for (Operation currOper = currBlock.getFirstOper(); currOper != null;
+                    currOper = currOper.getNextOper()) {
+        numOpers++;
+        numSrcs += currOper.srcCount();
+        numDests += currOper.destCount();
+      }
+    }
+    opcode = new int[numOpers];
+    block = new int[numOpers];
+    prev = new int[numOpers];
+    next = new int[numOpers];
+    srcStart = new int[numOpers + 1];
+    destStart = new int[numOpers + 1];
+    srcType = new int[numSrcs];
+    srcNum = new int[numSrcs];
+    destType = new int[numDests];
+    destNum = new int[numDests];
+    opers = new Operation[numOpers];
+    blocks = new BasicBlock[numBlocks];
+    blockFirst = new int[numBlocks];
+    blockLast = new int[numBlocks];
+
+    int index = 0;
+    int blockPos = 0;
+    int srcPos = 0;
+    int destPos = 0;
+    for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
+                    currBlock = currBlock.getNextBlock()) {
+      blocks[blockPos] = currBlock;
+      blockFirst[blockPos] = NONE;
+      blockLast[blockPos] = NONE;
+      for (Operation currOper = currBlock.getFirstOper(); currOper != null;
+                    currOper = currOper.getNextOper()) {
+        opers[index] = currOper;
+        opcode[index] = currOper.getType().ordinal();
+        block[index] = blockPos;
+        if (blockFirst[blockPos] == NONE) {
+          blockFirst[blockPos] = index;
+          prev[index] = NONE;
+        }
+        else {
+          prev[index] = index - 1;
+          next[index - 1] = index;
+        }
+        next[index] = NONE;
+        blockLast[blockPos] = index;
+
+        srcStart[index] = srcPos;
+        for (int i = 0; i < currOper.srcCount(); i++) {
+          copyOperand(currOper.getSrcOperand(i), srcType, srcNum, srcPos++);
+        }
+        destStart[index] = destPos;
+        for (int i = 0; i < currOper.destCount(); i++) {
+          copyOperand(currOper.getDestOperand(i), destType, destNum, destPos++);
+        }
+        index++;
+      }
+      blockPos++;
+    }
+    srcStart[numOpers] = srcPos;
+    destStart[numOpers] = destPos;
+  }
+
+  private static void copyOperand(Operand operand, int []types, int []nums,
+                                  int slot) {
+    if (operand == null) {
+      types[slot] = NONE;
+      return;
+    }
+    types[slot] = operand.getType().ordinal();
+    switch (operand.getType()) {
+      case INTEGER:
+        nums[slot] = operand.getImmediate();
+        break;
+      case REGISTER:
+        nums[slot] = operand.getRegNum();
+        break;
+      case BLOCK:
+        nums[slot] = operand.getBlockNum();
+        break;
+      default:
+        break;
+    }
+  }
+
+/***************************************************************************/
+  // accessor methods
+  public int getNumOpers () {
+    return numOpers;
+  }
+  public int getNumBlocks () {
+    return numBlocks;
+  }
+
+    // blocks are numbered by position in the function's list, from 0
+  public BasicBlock getBlock (int blockPos) {
+    return blocks[blockPos];
+  }
+  public int getFirstOper (int blockPos) {
+    return blockFirst[blockPos];
+  }
+  public int getLastOper (int blockPos) {
+    return blockLast[blockPos];
+  }
+
+  public Operation getOperation (int index) {
+    return opers[index];
+  }
+  public Operation.OperationType getType (int index) {
+    return OPCODES[opcode[index]];
+  }
+  public int getBlockPos (int index) {
+    return block[index];
+  }
+  public int getPrevOper (int index) {
+    return prev[index];
+  }
+  public int getNextOper (int index) {
+    return next[index];
+  }
+
+    // the Operation's srcCount()/destCount(); slots below it may be empty
+  public int getSrcCount (int index) {
+    return srcStart[index + 1] - srcStart[index];
+  }
+  public int getDestCount (int index) {
+    return destStart[index + 1] - destStart[index];
+  }
+
+    // the type of a src/dest Operand, or null if the slot is empty
+  public Operand.OperandType getSrcType (int index, int slot) {
+    int type = srcType[srcStart[index] + slot];
+    return (type == NONE) ? null : OPERAND_TYPES[type];
+  }
+  public Operand.OperandType getDestType (int index, int slot) {
+    int type = destType[destStart[index] + slot];
+    return (type == NONE) ? null : OPERAND_TYPES[type];
+  }
+    // the number of an INTEGER, REGISTER or BLOCK src/dest Operand
+  public int getSrcNum (int index, int slot) {
+    return srcNum[srcStart[index] + slot];
+  }
+  public int getDestNum (int index, int slot) {
+    return destNum[destStart[index] + slot];
+  }
+
+    // the register read/written by a src/dest slot, or NONE if it doesn't
+    // hold a REGISTER
+  public int getSrcReg (int index, int slot) {
+    int pos = srcStart[index] + slot;
+    return (srcType[pos] == REGISTER) ? srcNum[pos] : NONE;
+  }
+  public int getDestReg (int index, int slot) {
+    int pos = destStart[index] + slot;
+    return (destType[pos] == REGISTER) ? destNum[pos] : NONE;
+  }
+}
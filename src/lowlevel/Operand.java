@@ -16,8 +16,9 @@ import parser.CodeGenerationException;
  * Operation is made up of src and dest Operands.  For example, r1=r2+3 has r2
  * and 3 as src operands, and r1 as the dest.  Because there are several types
  * of Operands possible, each Operand must specify its type.  Because the
- * value of the Operand varies from int to Strings, the value is stored as an
- * Object
+ * value of the Operand varies from int to Strings, an int value (literal,
+ * register or block number) is kept unboxed and a name as a String; each
+ * kind has its own accessor.  Operands are immutable.
  */
 
 
@@ -27,13 +28,13 @@ public class Operand {
      * OperandType specifies the different types of operands
      * UNKNOWN shouldn't be used
      * INTEGER is for integer literals
-     *    - uses a Integer value
+     *    - uses an int value
      * REGISTER is for virtual register operands
-     *    - uses a Integer value, representing register number
+     *    - uses an int value, representing register number
      * MACRO is for special purpose registers, such as architectural regs
      *    - uses a String value, which is name of register
      * BLOCK is for destinations of a JMP or BR
-     *    - uses a Integer value, representing block number
+     *    - uses an int value, representing block number
      * STRING is for functions names (in JSRs) or global variable names
      *    - uses a String value, which is name of function or variable
      */
@@ -55,10 +56,11 @@ public class Operand {
 /***************************************************************************/
   // instance variables
     // the operand type, as specified in consts above
-  OperandType type;
-    // contains an int for INT, REG, & BLOCK.  Contains a String for MACRO and
-    // STRING
-  Object value;
+  private final OperandType type;
+    // the number for INTEGER, REGISTER and BLOCK, so it is never boxed
+  private final int num;
+    // the name for MACRO and STRING; null for the other types
+  private final String name;
 /***************************************************************************/
   // constructors
     /**
@@ -68,37 +70,93 @@ public class Operand {
     this (newType, null);
   }
     /**
-     * Creates a new Operand; this will likely be the most common form of the
-     * constructor used by the code generator.
+     * Creates an INTEGER, REGISTER or BLOCK Operand
      * @param newType specifies the type of the Operand
-     * @param newValue specifies the value of the Operand
+     * @param newNum is the literal, register number or block number
+     */
+  public Operand (OperandType newType, int newNum) {
+    type = newType;
+    num = newNum;
+    name = null;
+  }
+    /**
+     * Creates a MACRO or STRING Operand
+     * @param newType specifies the type of the Operand
+     * @param newName is the name of the register, function or variable
+     */
+  public Operand (OperandType newType, String newName) {
+    type = newType;
+    num = 0;
+    name = newName;
+  }
+    /**
+     * Creates a new Operand from a boxed value, as older code does
+     * @param newType specifies the type of the Operand
+     * @param newValue is an Integer for INTEGER, REGISTER and BLOCK, or a
+     * String for MACRO and STRING
      */
   public Operand (OperandType newType, Object newValue) {
     type = newType;
-    value = newValue;
+    if (newValue instanceof Integer) {
+      num = ((Integer) newValue).intValue();
+      name = null;
+    }
+    else {
+      num = 0;
+      name = (String) newValue;
+    }
   }
     /**
      * @param copyOperand will have its type/value copied
      */
   public Operand (Operand copyOperand) {
-    type = copyOperand.getType();
-      // we can share the same Object
-    value = copyOperand.getValue();
+    type = copyOperand.type;
+    num = copyOperand.num;
+    name = copyOperand.name;
   }
 
 /***************************************************************************/
   // accessor methods
+    // An Operand never changes once built, so the same one may appear in
+    // several Operations; to change an Operation, give it a new Operand.
   public OperandType getType () {
     return type;
   }
-  public void setType (OperandType newType) {
-    type = newType;
+  public int getRegNum () {
+    if (type != OperandType.REGISTER) {
+      throw new LowLevelException("Operand: not a register: " + type);
+    }
+    return num;
+  }
+  public int getBlockNum () {
+    if (type != OperandType.BLOCK) {
+      throw new LowLevelException("Operand: not a block: " + type);
+    }
+    return num;
   }
+  public int getImmediate () {
+    if (type != OperandType.INTEGER) {
+      throw new LowLevelException("Operand: not an integer: " + type);
+    }
+    return num;
+  }
+    // the register name of a MACRO, or the function/variable name of a STRING
+  public String getName () {
+    if (type != OperandType.MACRO && type != OperandType.STRING) {
+      throw new LowLevelException("Operand: not a name: " + type);
+    }
+    return name;
+  }
+    // the value boxed, as an Integer or a String; prefer the accessors above
   public Object getValue() {
-    return value;
+    if (isNumeric()) {
+      return Integer.valueOf(num);
+    }
+    return name;
   }
-  public void setValue( Object newValue) {
-    value = newValue;
+  private boolean isNumeric () {
+    return type == OperandType.INTEGER || type == OperandType.REGISTER ||
+           type == OperandType.BLOCK;
   }
 /**
  * @throws CodeGenerationException*************************************************************************/
@@ -127,11 +185,10 @@ public class Operand {
     // prints an operand surrounded by parentheses
   public void printLLCode(PrintWriter outFile) throws CodeGenerationException {
     if (outFile == null) {
-      System.out.print("("+ printType() +" " + value + ")");
+      System.out.print("("+ printType() +" " + getValue() + ")");
     }
     else {
-      outFile.print("("+ printType() +" " + value + ")");
+      outFile.print("("+ printType() +" " + getValue() + ")");
     }
-//    System.out.print("("+ printType() +" " + value + ")");
   }
 }
@@ -1,6 +1,7 @@
 package lowlevel;
 
 import java.io.*;
+import java.util.Arrays;
 import dataflow.BitArraySet;
 import parser.CodeGenerationException;
 
@@ -23,21 +24,52 @@ import parser.CodeGenerationException;
  * mapping with assembly.  An Operation maintains next/prev references, so a
  * block can contain a list of Operations.  The Operation also maintains sets
  * of Operands.  To keep it general, we employ arrays of src and dest Operands.
+ *
+ * Memory Operations give an address as a base, a byte displacement and an
+ * optional index:  LOAD_I dest = [src0 + src1 + 4*src2], STORE_I
+ * [src1 + src2 + 4*src3] = src0, and LOAD_ADDR dest = src0 + src1.  The base
+ * is a global's name (STRING), the stack pointer (MACRO ESP) or a register
+ * holding an address.  The index counts ints, so it is scaled by 4.
  */
 
 public class Operation {
 
-  public enum OperationType {UNKNOWN, FUNC_ENTRY, FUNC_EXIT, ASSIGN, ADD_I,
-        SUB_I, MUL_I, DIV_I, LT, LTE, GT, GTE, EQUAL, NOT_EQUAL, RETURN, JMP,
-        BEQ, BNE, PASS, CALL, LOAD_I, STORE_I, X64_ADD_Q, X64_SUB_Q, X64_LOAD_Q, X64_STORE_Q,
-        X86_MUL_I, X86_DIV_I, X86_BEQ, X86_BNE, X86_BLT, X86_BLE, X86_BGT,
-        X86_BGE, X86_PUSH, X86_POP, X86_MOV, X86_CMP
+    // Each type gives the number of src and dest Operands it usually has, so
+    // an Operation allocates just those slots.  Setting a slot past them
+    // grows the Operation's array (e.g. a CALL annotated with the param regs
+    // it reads, or a DIV_I once converted to X86_DIV_I).
+  public enum OperationType {UNKNOWN(MAX_SRC_OPERANDS, MAX_DEST_OPERANDS),
+        FUNC_ENTRY(0, 0), FUNC_EXIT(0, 0), ASSIGN(1, 1),
+        ADD_I(2, 1), SUB_I(2, 1), MUL_I(2, 1), DIV_I(2, 1),
+        LT(2, 1), LTE(2, 1), GT(2, 1), GTE(2, 1), EQUAL(2, 1), NOT_EQUAL(2, 1),
+        RETURN(1, 0), JMP(1, 0), BEQ(3, 0), BNE(3, 0), PASS(1, 0), CALL(1, 0),
+        LOAD_I(3, 1), STORE_I(4, 0), LOAD_ADDR(2, 1),
+        X64_ADD_Q(2, 1), X64_SUB_Q(2, 1), X64_LOAD_Q(3, 1), X64_STORE_Q(4, 0),
+        X64_MOV_Q(1, 1),
+        X86_MUL_I(2, 2), X86_DIV_I(3, 2), X86_BEQ(2, 0), X86_BNE(2, 0),
+        X86_BLT(2, 0), X86_BLE(2, 0), X86_BGT(2, 0), X86_BGE(2, 0),
+        X86_PUSH(1, 0), X86_POP(0, 1), X86_MOV(1, 1), X86_CMP(2, 1);
+
+    private final int srcArity;
+    private final int destArity;
+
+    OperationType (int srcs, int dests) {
+      srcArity = srcs;
+      destArity = dests;
+    }
+    public int getSrcArity () {
+      return srcArity;
+    }
+    public int getDestArity () {
+      return destArity;
+    }
   }
 
-    // Constants defined to allow the # of Operands to be tailored to a specific
-    // architecture
+    // The most Operands any type starts with; UNKNOWN gets this many
   public static final int MAX_DEST_OPERANDS = 2;
   public static final int MAX_SRC_OPERANDS = 4;
+    // shared by every Operation which has no src or no dest Operands
+  private static final Operand []NO_OPERANDS = new Operand[0];
 
 
 /***************************************************************************/
@@ -51,14 +83,22 @@ public class Operation {
   private int opNum;
     // The type of Operation, as defined in consts above
   private OperationType opType;
-    // Arrays of src and destination Operands; Their size is determined by
-    // the consts above
+    // Arrays of src and destination Operands; Their size starts at the
+    // arity of the type, and grows if a later slot is set
   private Operand []dest;
   private Operand []src;
-    // the next two variables currently unused
+    // the highest src and dest slots set so far, -1 if none
   private int maxSrc;
   private int maxDest;
 
+    // true while the Operation is in one of its function's blocks, and so in
+    // the function's def-use chains
+  private boolean linked;
+    // where the entry for each src/dest slot holding a register sits in that
+    // register's use/def chain; null until a slot is first chained
+  private int []srcChainPos;
+  private int []destChainPos;
+
     // FOR LIVE RANGE
   private BitArraySet liveRange;
 
@@ -77,8 +117,8 @@ public class Operation {
     block = currBlock;
     prevOper = null;
     nextOper = null;
-    dest = new Operand[MAX_DEST_OPERANDS];
-    src = new Operand[MAX_SRC_OPERANDS];
+    dest = newOperands(type.getDestArity());
+    src = newOperands(type.getSrcArity());
     maxSrc = -1;
     maxDest = -1;
 
@@ -119,24 +159,65 @@ public class Operation {
     nextOper = next;
   }
 
+    // a slot which was never set, even one past the array, reads as null
   public Operand getSrcOperand (int index) {
-    return src[index];
+    return (index < src.length) ? src[index] : null;
   }
   public void setSrcOperand (int index, Operand newOperand) {
+    if (index >= src.length) {
+      src = Arrays.copyOf(src, index + 1);
+    }
+    if (linked) {
+      block.getFunc().replaceOperand(this, index, src[index], newOperand, false);
+    }
     src[index] = newOperand;
     if (index > maxSrc) {
       maxSrc = index;
     }
   }
   public Operand getDestOperand (int index) {
-    return dest[index];
+    return (index < dest.length) ? dest[index] : null;
   }
   public void setDestOperand (int index, Operand newOperand) {
+    if (index >= dest.length) {
+      dest = Arrays.copyOf(dest, index + 1);
+    }
+    if (linked) {
+      block.getFunc().replaceOperand(this, index, dest[index], newOperand, true);
+    }
     dest[index] = newOperand;
     if (index > maxDest) {
       maxDest = index;
     }
   }
+    // The number of src/dest slots up to the last one set, so a pass can
+    // loop over just those; a slot below the count may still be null
+  public int srcCount () {
+    return maxSrc + 1;
+  }
+  public int destCount () {
+    return maxDest + 1;
+  }
+
+  boolean isLinked () {
+    return linked;
+  }
+  void setLinked (boolean isLinked) {
+    linked = isLinked;
+  }
+  int getChainPos (boolean isDest, int slot) {
+    return isDest ? destChainPos[slot] : srcChainPos[slot];
+  }
+  void setChainPos (boolean isDest, int slot, int pos) {
+    if (isDest) {
+      destChainPos = chainPosFor(destChainPos, slot, dest.length);
+      destChainPos[slot] = pos;
+    }
+    else {
+      srcChainPos = chainPosFor(srcChainPos, slot, src.length);
+      srcChainPos[slot] = pos;
+    }
+  }
 
   public BitArraySet getLiveRange () {
     return liveRange;
@@ -185,7 +266,23 @@ public class Operation {
 /***************************************************************************/
   // support methods
 
+    // positions, big enough for slot (and for every Operand slot there is)
+  private static int []chainPosFor (int []positions, int slot, int numSlots) {
+    if (positions == null) {
+      return new int[Math.max(slot + 1, numSlots)];
+    }
+    if (slot >= positions.length) {
+      return Arrays.copyOf(positions, Math.max(slot + 1, numSlots));
+    }
+    return positions;
+  }
+
+  private static Operand []newOperands (int count) {
+    return (count == 0) ? NO_OPERANDS : new Operand[count];
+  }
+
   public void delete() {
+    getBlock().getFunc().unlinkOper(this);
     if (getPrevOper() == null) {
       getBlock().setFirstOper(getNextOper());
     }
@@ -201,7 +298,7 @@ public class Operation {
   }
 
   public boolean hasRegDest() {
-    if (dest[0] != null) {
+    if (getDestOperand(0) != null) {
       if (dest[0].getType() == Operand.OperandType.REGISTER) {
         return true;
       }
@@ -254,6 +351,8 @@ public class Operation {
         return "Load";
       case STORE_I:
         return "Store";
+      case LOAD_ADDR:
+        return "LoadAddr";
       case X86_PUSH:
         return "Push";
       case X86_POP:
@@ -286,6 +385,8 @@ public class Operation {
           return "Load_Q";
       case X64_STORE_Q:
           return "Store_Q";
+      case X64_MOV_Q:
+          return "Mov_Q";
 
       default:
         throw new LowLevelException ("Operation: unexpected op type");
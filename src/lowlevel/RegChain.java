@@ -0,0 +1,73 @@
+package lowlevel;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * This class is one virtual register's def or use chain
+ *
+ * Description:  An entry is an Operation and the src (or dest) slot which
+ * holds the register, so an Operation reading the register twice is in the
+ * chain twice.  Each Operation remembers where its slots' entries sit, so an
+ * entry is removed in constant time by moving the last entry into its place.
+ * The chain is therefore in no particular order.  Function keeps the chains;
+ * everyone else sees them as read-only Lists.
+ */
+
+class RegChain extends AbstractList<Operation> {
+
+/***************************************************************************/
+    // instance variables
+    // whether this chain holds dest slots (defs) rather than src slots (uses)
+  private final boolean isDest;
+  private Operation []opers = new Operation[2];
+  private int []slots = new int[2];
+  private int size;
+
+/***************************************************************************/
+    /**
+     * @param isDest is true for a def chain, false for a use chain
+     */
+  RegChain (boolean isDest) {
+    this.isDest = isDest;
+  }
+
+/***************************************************************************/
+  // accessor methods
+  public Operation get (int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return opers[index];
+  }
+  public int size () {
+    return size;
+  }
+
+/***************************************************************************/
+  // support methods
+
+    // adds the entry for slot of oper, and tells oper where it went
+  void add (Operation oper, int slot) {
+    if (size == opers.length) {
+      opers = Arrays.copyOf(opers, size * 2);
+      slots = Arrays.copyOf(slots, size * 2);
+    }
+    opers[size] = oper;
+    slots[size] = slot;
+    oper.setChainPos(isDest, slot, size);
+    size++;
+  }
+
+    // removes the entry for slot of oper; the last entry takes its place
+  void remove (Operation oper, int slot) {
+    int pos = oper.getChainPos(isDest, slot);
+    size--;
+    if (pos != size) {
+      opers[pos] = opers[size];
+      slots[pos] = slots[size];
+      opers[pos].setChainPos(isDest, slots[pos], pos);
+    }
+    opers[size] = null;
+  }
+}
@@ -0,0 +1,170 @@
+package optimizer;
+
+import java.util.Locale;
+import java.util.Random;
+import dataflow.ControlFlowAnalysis;
+import lowlevel.*;
+
+public class BlockLookupBenchmark {
+  /*
+      Benchmark for the passes that look blocks up by number: the jmp
+      optimizer and control flow analysis.
+
+      Usage: java optimizer.BlockLookupBenchmark [name=value ...]
+          blocks=N        blocks per generated function (default 4000)
+          jumps=D         share of blocks that hold just a jmp, 0-1 (default 0.25)
+          seed=S          generator seed (default 1)
+          iterations=N    timed runs per pass, after as many warm-up runs (default 10)
+
+      Each generated function is a chain of blocks.  Most blocks assign a
+      register, branch on it to a random block and jmp to another; the
+      rest hold just a jmp to a later block, so the jmp optimizer has
+      chains to shorten.  Every run gets a fresh copy of the function,
+      built outside the timed region.  For each pass this prints the best
+      time and the time per jmp/branch it looked up.
+   */
+
+  private int blocks = 4000;
+  private double jumpRatio = 0.25;
+  private long seed = 1;
+  private int iterations = 10;
+
+  public static void main(String[] args) {
+    BlockLookupBenchmark benchmark = new BlockLookupBenchmark();
+    for (String arg : args) {
+      benchmark.setOption(arg);
+    }
+    benchmark.run();
+  }
+
+  private void setOption(String arg) {
+    int equals = arg.indexOf('=');
+    if (equals < 0) {
+      throw new IllegalArgumentException("Expected name=value, got " + arg);
+    }
+    String name = arg.substring(0, equals);
+    String value = arg.substring(equals + 1);
+    switch (name) {
+      case "blocks":
+        blocks = Integer.parseInt(value);
+        break;
+      case "jumps":
+        jumpRatio = Double.parseDouble(value);
+        break;
+      case "seed":
+        seed = Long.parseLong(value);
+        break;
+      case "iterations":
+        iterations = Integer.parseInt(value);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option " + name);
+    }
+  }
+
+  private void run() {
+    int transfers = countTransfers(generate());
+    System.out.printf(Locale.ROOT,
+        "Function: %d blocks, %d jmps/branches, jumps=%.2f seed=%d%n",
+        blocks, transfers, jumpRatio, seed);
+    System.out.printf(Locale.ROOT, "%-14s %10s %12s%n", "pass", "ms", "ns/lookup");
+
+    time("jmpopt", transfers, new Pass() {
+      public void run(Function func) {
+        new JumpOptimizer(func).doJmpOptimization(func);
+      }
+    });
+    time("controlflow", transfers, new Pass() {
+      public void run(Function func) {
+        new ControlFlowAnalysis(func).performAnalysis();
+      }
+    });
+  }
+
+  interface Pass {
+    void run(Function func);
+  }
+
+  private void time(String name, int transfers, Pass pass) {
+      // Warm up
+    for (int i = 0; i < iterations; i++) {
+      pass.run(generate());
+    }
+
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < iterations; i++) {
+      Function func = generate();
+      long begin = System.nanoTime();
+      pass.run(func);
+      best = Math.min(best, System.nanoTime() - begin);
+    }
+    System.out.printf(Locale.ROOT, "%-14s %10.2f %12.1f%n",
+        name, best / 1e6, (double) best / transfers);
+  }
+
+    // Builds the function the same way for every run, from the same seed
+  private Function generate() {
+    Random random = new Random(seed);
+    Function func = new Function(Data.TYPE_INT, "bench");
+    func.createBlock0();
+
+      // The first block holds FUNC_ENTRY; the return block is appended
+      // last.  Block numbers are handed out in order, so the generated
+      // blocks are numbered first to last.
+    int first = func.getMaxBlockNum() + 1;
+    int last = first + blocks - 1;
+    for (int i = 0; i < blocks; i++) {
+      BasicBlock block = new BasicBlock(func);
+      int blockNum = block.getBlockNum();
+      if (random.nextDouble() < jumpRatio && blockNum < last) {
+          // a later target, so a chain of jmps always ends
+        block.appendOper(jmp(block, blockNum + 1 +
+                                    random.nextInt(last - blockNum)));
+      }
+      else {
+        int reg = func.getNewRegNum();
+        Operation assign = new Operation(Operation.OperationType.ASSIGN, block);
+        assign.setDestOperand(0, new Operand(Operand.OperandType.REGISTER,
+                                             reg));
+        assign.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER,
+                                            i));
+        block.appendOper(assign);
+
+        Operation branch = new Operation(Operation.OperationType.BNE, block);
+        branch.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER,
+                                            reg));
+        branch.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER,
+                                            0));
+        branch.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK,
+                                  first + random.nextInt(blocks)));
+        block.appendOper(branch);
+        block.appendOper(jmp(block, first + random.nextInt(blocks)));
+      }
+      func.appendBlock(block);
+    }
+    func.appendBlock(func.getReturnBlock());
+    return func;
+  }
+
+  private static Operation jmp(BasicBlock block, int tgtNum) {
+    Operation jmp = new Operation(Operation.OperationType.JMP, block);
+    jmp.setSrcOperand(0, new Operand(Operand.OperandType.BLOCK,
+                                     tgtNum));
+    return jmp;
+  }
+
+  private static int countTransfers(Function func) {
+    int transfers = 0;
+    for (BasicBlock block = func.getFirstBlock(); block != null;
+         block = block.getNextBlock()) {
+      for (Operation oper = block.getFirstOper(); oper != null;
+           oper = oper.getNextOper()) {
+        if ( (oper.getType() == Operation.OperationType.JMP) ||
+             (oper.isBranchOper()) ) {
+          transfers++;
+        }
+      }
+    }
+    return transfers;
+  }
+}
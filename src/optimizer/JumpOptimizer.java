@@ -54,31 +54,31 @@ public class JumpOptimizer {
             // OK, we've found a jmp or branch
             // If the target of the branch is a BB with just a jmp, optimize
           int tgtBlockNum;
-          Operand tgtOperand;
+          int tgtOperandNum;
           if (currOper.getType() == Operation.OperationType.JMP) {
             if (currOper.getSrcOperand(0).getType() != Operand.OperandType.BLOCK) {
               throw new CodeOptimizationException ("JmpOpti: unexpected jmp operand");
             }
-            tgtOperand = currOper.getSrcOperand(0);
-            tgtBlockNum = ((Integer)tgtOperand.getValue()).intValue();
+            tgtOperandNum = 0;
           }
           else {
             if (currOper.getSrcOperand(2).getType() != Operand.OperandType.BLOCK) {
               throw new CodeOptimizationException ("JmpOpti: unexpected branch operand");
             }
-            tgtOperand = currOper.getSrcOperand(2);
-            tgtBlockNum = ((Integer)tgtOperand.getValue()).intValue();
+            tgtOperandNum = 2;
           }
-          BasicBlock tgtBlock = BasicBlock.getBlockFromNum(func, tgtBlockNum);
+          tgtBlockNum = currOper.getSrcOperand(tgtOperandNum).getBlockNum();
+          BasicBlock tgtBlock = func.getBlockForNum(tgtBlockNum);
           Operation tgtOper = tgtBlock.getFirstOper();
           if ( (tgtOper != null) &&
                (tgtOper.getType() == Operation.OperationType.JMP) ) {
             if (tgtOper.getSrcOperand(0).getType() != Operand.OperandType.BLOCK) {
               throw new CodeOptimizationException ("JmpOpti: unexpected jmp operand(2)");
             }
-            int tgtBlock2Num = ((Integer)tgtOper.getSrcOperand(0).getValue()).intValue();
+            int tgtBlock2Num = tgtOper.getSrcOperand(0).getBlockNum();
               // change the target
-            tgtOperand.setValue(new Integer(tgtBlock2Num));
+            currOper.setSrcOperand(tgtOperandNum,
+                new Operand(Operand.OperandType.BLOCK, tgtBlock2Num));
             tgtBlockNum = tgtBlock2Num;
             somethingChanged = true;
             changesMade = true;
@@ -98,13 +98,7 @@ public class JumpOptimizer {
             continue;
           }
             // now can eliminate the jmp/branch
-          currBlock.setLastOper(currOper.getPrevOper());
-          if (currOper.getPrevOper() == null) {
-            currBlock.setFirstOper(null);
-          }
-          else {
-            currOper.getPrevOper().setNextOper(null);
-          }
+          currBlock.removeOper(currOper);
           somethingChanged = true;
           changesMade = true;
         }
@@ -177,13 +171,14 @@ public class JumpOptimizer {
           continue;
         }
         int currentTgt =
-            ((Integer) currOper.getSrcOperand(tgtOperandNum).getValue()).intValue();
+            currOper.getSrcOperand(tgtOperandNum).getBlockNum();
         int newTgt = remap[currentTgt];
         if (newTgt != 0) {
           if (newTgt > func.getMaxBlockNum()) {
             throw new CodeOptimizationException("emptyblockopti: unexpected block num");
           }
-          currOper.getSrcOperand(tgtOperandNum).setValue(new Integer(newTgt));
+          currOper.setSrcOperand(tgtOperandNum,
+              new Operand(Operand.OperandType.BLOCK, newTgt));
         }
       }
     }
@@ -224,7 +219,7 @@ public class JumpOptimizer {
         }
           // for jmps, if tgt is next block can't do opti
         if (lastOper.getType() == Operation.OperationType.JMP) {
-          int lastTgt = ((Integer)lastOper.getSrcOperand(0).getValue()).intValue();
+          int lastTgt = lastOper.getSrcOperand(0).getBlockNum();
           if (lastTgt == currBlock.getBlockNum()) {
             continue;
           }
@@ -249,7 +244,7 @@ public class JumpOptimizer {
             continue;
           }
           int tgtBlock =
-              ((Integer) currOper.getSrcOperand(tgtOperandNum).getValue()).intValue();
+              currOper.getSrcOperand(tgtOperandNum).getBlockNum();
           possibleBlocks[tgtBlock] = 0;
         }
       }
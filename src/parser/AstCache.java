@@ -0,0 +1,411 @@
+package parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import parser.CMinusParser.*;
+import scanner.Token.TokenType;
+
+class AstCache {
+    /*
+        Saves a parsed Program next to its source file and loads it back,
+        so an unchanged file doesn't have to be scanned and parsed again.
+
+        The cache for foo.c is foo.c.astcache. It starts with a header:
+            int     MAGIC
+            int     VERSION
+            byte[32] SHA-256 of the source
+        and it is only used when all three match; anything else (a changed
+        source, a cache from another compiler version, a truncated or
+        corrupt file) counts as a miss and the file is parsed again.
+        VERSION must go up whenever the parser or the AST classes change
+        what a source file parses to.
+
+        After the header comes the tree, written depth first. Every node is
+        a byte kind (the FlatAst constants, NONE for a missing node)
+        followed by its fields. Identifiers are written once; later uses
+        refer back to them by number. A final MAGIC marks a complete file.
+
+        CMinusParser.writeTree/readTree use the same encoding as a plain
+        binary AST format: MAGIC, VERSION, the tree and MAGIC, with no
+        source hash. Unlike a cache, a bad tree file is an IOException.
+     */
+
+    static final int MAGIC = 0x434d4153;
+    static final int VERSION = 2;
+    static final String SUFFIX = ".astcache";
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private CMinusParser parser;
+    private File cacheFile;
+    private byte[] sourceHash;
+
+    // Names written so far and their numbers, or read so far in order
+    private HashMap<String, Integer> nameIds = new HashMap<String, Integer>();
+    private ArrayList<String> names = new ArrayList<String>();
+
+    // For writeTree/readTree, with no source file behind it
+    AstCache(CMinusParser parser) {
+        this.parser = parser;
+    }
+
+    AstCache(CMinusParser parser, String sourceFile) throws IOException {
+        this.parser = parser;
+        this.cacheFile = new File(sourceFile + SUFFIX);
+        this.sourceHash = hash(Files.readAllBytes(new File(sourceFile).toPath()));
+    }
+
+    private static byte[] hash(byte[] source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The cached tree for the source, or null if there isn't a valid one
+    Program load() {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[sourceHash.length];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, sourceHash)) {
+                return null;
+            }
+
+            Program program = readProgram(in);
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            return program;
+        } catch (IOException | RuntimeException e) {
+            // A damaged cache is just a miss
+            return null;
+        }
+    }
+
+    // Writes the cache for the source; a cache that can't be written is skipped
+    void store(Program program) {
+        File tempFile = null;
+        try {
+            // Write to a temporary file and rename, so a reader never sees half a cache
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(sourceHash);
+                writeProgram(out, program);
+                out.writeInt(MAGIC);
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    void writeTree(Program program, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeProgram(out, program);
+        out.writeInt(MAGIC);
+        // Leave the stream open for the caller
+        out.flush();
+    }
+
+    Program readTree(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an AST file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("AST file version " + version + ", expected " + VERSION);
+        }
+        try {
+            Program program = readProgram(in);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Corrupt AST file");
+            }
+            return program;
+        } catch (RuntimeException e) {
+            // A bad name number or operator
+            throw new IOException("Corrupt AST file", e);
+        }
+    }
+
+    /* Writing */
+    private void writeProgram(DataOutputStream out, Program program) throws IOException {
+        out.writeInt(program.decls.size());
+        for (Decl decl : program.decls) {
+            writeDecl(out, decl);
+        }
+    }
+
+    private void writeDecl(DataOutputStream out, Decl decl) throws IOException {
+        if (decl instanceof VarDecl) {
+            VarDecl varDecl = (VarDecl) decl;
+            out.writeByte(FlatAst.VAR_DECL);
+            writeVar(out, varDecl.name);
+        } else {
+            FunDecl funDecl = (FunDecl) decl;
+            out.writeByte(funDecl.returnType.equals("void") ? FlatAst.VOID_FUN_DECL : FlatAst.FUN_DECL);
+            writeName(out, funDecl.name.var);
+            if (funDecl.params == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(funDecl.params.size());
+                for (Param param : funDecl.params) {
+                    writeVar(out, param.name);
+                }
+            }
+            writeStatement(out, funDecl.content);
+        }
+    }
+
+    private void writeStatement(DataOutputStream out, Statement statement) throws IOException {
+        if (statement == null) {
+            out.writeByte(FlatAst.NONE);
+        } else if (statement instanceof ExpressionStmt) {
+            out.writeByte(FlatAst.EXPRESSION_STMT);
+            writeExpression(out, ((ExpressionStmt) statement).statement);
+        } else if (statement instanceof CompoundStmt) {
+            CompoundStmt compound = (CompoundStmt) statement;
+            out.writeByte(FlatAst.COMPOUND);
+            out.writeInt(compound.localDecls.size());
+            for (Decl decl : compound.localDecls) {
+                writeVar(out, ((VarDecl) decl).name);
+            }
+            out.writeInt(compound.statements.size());
+            for (Statement inner : compound.statements) {
+                writeStatement(out, inner);
+            }
+        } else if (statement instanceof SelectionStmt) {
+            SelectionStmt selection = (SelectionStmt) statement;
+            out.writeByte(FlatAst.SELECTION);
+            writeExpression(out, selection.condition);
+            writeStatement(out, selection.ifSequence);
+            writeStatement(out, selection.elseSequence);
+        } else if (statement instanceof IterationStmt) {
+            IterationStmt iteration = (IterationStmt) statement;
+            out.writeByte(FlatAst.ITERATION);
+            writeExpression(out, iteration.condition);
+            writeStatement(out, iteration.sequence);
+        } else {
+            out.writeByte(FlatAst.RETURN);
+            writeExpression(out, ((ReturnStmt) statement).LHS);
+        }
+    }
+
+    private void writeExpression(DataOutputStream out, Expression expression) throws IOException {
+        if (expression == null) {
+            out.writeByte(FlatAst.NONE);
+        } else if (expression instanceof AssignExpression) {
+            AssignExpression assign = (AssignExpression) expression;
+            out.writeByte(FlatAst.ASSIGN);
+            writeVar(out, assign.LHS);
+            writeExpression(out, assign.RHS);
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            out.writeByte(FlatAst.BINARY);
+            out.writeByte(binary.op.ordinal());
+            writeExpression(out, binary.LHS);
+            writeExpression(out, binary.RHS);
+        } else if (expression instanceof CallExpression) {
+            CallExpression call = (CallExpression) expression;
+            out.writeByte(FlatAst.CALL);
+            writeName(out, call.LHS.var);
+            out.writeInt(call.args.size());
+            for (Expression arg : call.args) {
+                writeExpression(out, arg);
+            }
+        } else if (expression instanceof NumExpression) {
+            out.writeByte(FlatAst.NUM);
+            out.writeInt(((NumExpression) expression).num);
+        } else {
+            writeVar(out, (VarExpression) expression);
+        }
+    }
+
+    // A variable: its name, index or size (if any), and whether it is an array parameter
+    private void writeVar(DataOutputStream out, VarExpression var) throws IOException {
+        out.writeByte(FlatAst.VAR);
+        writeName(out, var.var);
+        writeExpression(out, var.num);
+        out.writeBoolean(var.blankArray);
+    }
+
+    private void writeName(DataOutputStream out, String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            out.writeInt(id);
+            return;
+        }
+        // First use: -1 and the name itself
+        nameIds.put(name, nameIds.size());
+        out.writeInt(-1);
+        out.writeUTF(name);
+    }
+
+    /* Reading */
+    private Program readProgram(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        ArrayList<Decl> decls = new ArrayList<Decl>();
+        for (int i = 0; i < count; i++) {
+            decls.add(readDecl(in));
+        }
+        return parser.new Program(decls);
+    }
+
+    private Decl readDecl(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        if (kind == FlatAst.VAR_DECL) {
+            return parser.new VarDecl(readVar(in));
+        }
+        if (kind != FlatAst.FUN_DECL && kind != FlatAst.VOID_FUN_DECL) {
+            throw new IOException("Bad declaration kind " + kind);
+        }
+
+        // The same literals the parser uses
+        String returnType = (kind == FlatAst.VOID_FUN_DECL) ? "void" : "int";
+        VarExpression name = parser.new VarExpression(readName(in));
+        int paramCount = in.readInt();
+        List<Param> params = null;
+        if (paramCount >= 0) {
+            params = new ArrayList<Param>();
+            for (int i = 0; i < paramCount; i++) {
+                params.add(parser.new Param(readVar(in)));
+            }
+        }
+        Statement content = readStatement(in);
+        if (!(content instanceof CompoundStmt)) {
+            throw new IOException("Function body is not a compound statement");
+        }
+        return parser.new FunDecl(returnType, name, params, (CompoundStmt) content);
+    }
+
+    private Statement readStatement(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+            case FlatAst.NONE:
+                return null;
+            case FlatAst.EXPRESSION_STMT:
+                return parser.new ExpressionStmt(readExpression(in));
+            case FlatAst.COMPOUND: {
+                ArrayList<Decl> localDecls = new ArrayList<Decl>();
+                int declCount = in.readInt();
+                for (int i = 0; i < declCount; i++) {
+                    localDecls.add(parser.new VarDecl(readVar(in)));
+                }
+                ArrayList<Statement> statements = new ArrayList<Statement>();
+                int statementCount = in.readInt();
+                for (int i = 0; i < statementCount; i++) {
+                    statements.add(readStatement(in));
+                }
+                return parser.new CompoundStmt(localDecls, statements);
+            }
+            case FlatAst.SELECTION: {
+                Expression condition = readExpression(in);
+                Statement ifSequence = readStatement(in);
+                Statement elseSequence = readStatement(in);
+                return parser.new SelectionStmt(condition, ifSequence, elseSequence);
+            }
+            case FlatAst.ITERATION: {
+                Expression condition = readExpression(in);
+                return parser.new IterationStmt(condition, readStatement(in));
+            }
+            case FlatAst.RETURN: {
+                Expression value = readExpression(in);
+                return (value == null) ? parser.new ReturnStmt() : parser.new ReturnStmt(value);
+            }
+            default:
+                throw new IOException("Bad statement kind " + kind);
+        }
+    }
+
+    private Expression readExpression(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+            case FlatAst.NONE:
+                return null;
+            case FlatAst.ASSIGN: {
+                VarExpression LHS = readVar(in);
+                return parser.new AssignExpression(LHS, readExpression(in));
+            }
+            case FlatAst.BINARY: {
+                TokenType op = TOKEN_TYPES[in.readByte()];
+                Expression LHS = readExpression(in);
+                Expression RHS = readExpression(in);
+                return parser.new BinaryExpression(LHS, op, RHS);
+            }
+            case FlatAst.CALL: {
+                VarExpression name = parser.new VarExpression(readName(in));
+                int argCount = in.readInt();
+                ArrayList<Expression> args = new ArrayList<Expression>();
+                for (int i = 0; i < argCount; i++) {
+                    args.add(readExpression(in));
+                }
+                return parser.new CallExpression(name, args);
+            }
+            case FlatAst.NUM:
+                return parser.new NumExpression(in.readInt());
+            case FlatAst.VAR:
+                return readVarFields(in);
+            default:
+                throw new IOException("Bad expression kind " + kind);
+        }
+    }
+
+    private VarExpression readVar(DataInputStream in) throws IOException {
+        if (in.readByte() != FlatAst.VAR) {
+            throw new IOException("Expected a variable");
+        }
+        return readVarFields(in);
+    }
+
+    private VarExpression readVarFields(DataInputStream in) throws IOException {
+        String name = readName(in);
+        Expression num = readExpression(in);
+        boolean blankArray = in.readBoolean();
+        if (blankArray) {
+            return parser.new VarExpression(name, true);
+        }
+        return (num == null) ? parser.new VarExpression(name) : parser.new VarExpression(name, num);
+    }
+
+    private String readName(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        if (id >= 0) {
+            return names.get(id);
+        }
+        // Canonical names, as if the scanner had read them
+        String name = parser.identTable.getName(parser.identTable.intern(in.readUTF()));
+        names.add(name);
+        return name;
+    }
+}
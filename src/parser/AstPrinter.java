@@ -0,0 +1,238 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import parser.CMinusParser.*;
+import scanner.Token.TokenType;
+
+class AstPrinter {
+    /*
+        Writes a Program as the indented text tree (CMinusParser.printTree).
+
+        Lines are built in one char buffer and handed to the Writer a chunk
+        at a time, instead of one write() per line. Indentation is copied
+        out of a run of spaces that is built once, so printing a node never
+        concatenates Strings.
+
+        The format, one node per line, each level indented four spaces:
+            Program {
+                int                     global variable
+                    x
+                function int            function, its name, params and body
+                    gcd
+                    Params (
+                        int u
+                    )
+                    { ... }
+            }
+        Statements and expressions print their keyword or operator, then
+        their parts one level further in. An empty statement prints
+        nothing.
+     */
+
+    private static final int INDENT = 4;
+    // Write the buffer out once it gets this big
+    private static final int CHUNK = 8192;
+
+    private Writer out;
+    private char[] buffer = new char[CHUNK];
+    private int length = 0;
+    private char[] spaces = new char[INDENT * 32];
+    // Operator text by TokenType ordinal
+    private String[] ops;
+
+    AstPrinter(CMinusParser parser, Writer out) {
+        this.out = out;
+        Arrays.fill(spaces, ' ');
+        TokenType[] types = TokenType.values();
+        ops = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            ops[i] = parser.ops.get(types[i]);
+        }
+    }
+
+    void print(Program program) throws IOException {
+        append("Program {\n");
+        for (Decl decl : program.decls) {
+            if (decl != null) {
+                printDecl(decl, 0);
+            }
+        }
+        append("}\n");
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    // Starts a line depth levels in
+    private AstPrinter line(int depth) throws IOException {
+        int width = depth * INDENT;
+        if (width > spaces.length) {
+            spaces = new char[Math.max(width, spaces.length * 2)];
+            Arrays.fill(spaces, ' ');
+        }
+        reserve(width);
+        System.arraycopy(spaces, 0, buffer, length, width);
+        length += width;
+        return this;
+    }
+
+    private AstPrinter append(String text) throws IOException {
+        int count = text.length();
+        reserve(count);
+        text.getChars(0, count, buffer, length);
+        length += count;
+        return this;
+    }
+
+    private AstPrinter append(int number) throws IOException {
+        // Digits are written backwards from the end of the number's space
+        long value = number;
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int count = negative ? digits + 1 : digits;
+        reserve(count);
+        int end = length + count;
+        for (int i = end - 1; i >= end - digits; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if (negative) {
+            buffer[length] = '-';
+        }
+        length = end;
+        return this;
+    }
+
+    private AstPrinter append(char c) throws IOException {
+        reserve(1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    // Makes room for count more chars, writing out what is buffered if need be
+    private void reserve(int count) throws IOException {
+        if (length + count <= buffer.length) {
+            return;
+        }
+        out.write(buffer, 0, length);
+        length = 0;
+        if (count > buffer.length) {
+            buffer = new char[count];
+        }
+    }
+
+    /*
+        Each print method takes the depth of its parent, so a node's own
+        line is one level further in.
+     */
+    private void printDecl(Decl decl, int depth) throws IOException {
+        if (decl instanceof VarDecl) {
+            line(depth + 1).append("int\n");
+            printVar(((VarDecl) decl).name, depth + 1, "");
+            return;
+        }
+
+        FunDecl funDecl = (FunDecl) decl;
+        line(depth + 1).append("function ").append(funDecl.returnType).append('\n');
+        printVar(funDecl.name, depth + 1, "");
+        line(depth + 2).append("Params (\n");
+        if (funDecl.params != null) {
+            for (Param param : funDecl.params) {
+                printVar(param.name, depth + 2, "int ");
+            }
+        }
+        line(depth + 2).append(")\n");
+        printStatement(funDecl.content, depth + 1);
+    }
+
+    private void printStatement(Statement statement, int depth) throws IOException {
+        if (statement == null) {
+            return;
+        }
+        if (statement instanceof ExpressionStmt) {
+            printExpression(((ExpressionStmt) statement).statement, depth);
+        } else if (statement instanceof CompoundStmt) {
+            CompoundStmt compound = (CompoundStmt) statement;
+            line(depth + 1).append("{\n");
+            for (Decl decl : compound.localDecls) {
+                printDecl(decl, depth + 1);
+            }
+            for (Statement inner : compound.statements) {
+                printStatement(inner, depth + 1);
+            }
+            line(depth + 1).append("}\n");
+        } else if (statement instanceof SelectionStmt) {
+            SelectionStmt selection = (SelectionStmt) statement;
+            line(depth + 1).append("if (\n");
+            printExpression(selection.condition, depth + 1);
+            line(depth + 1).append(")\n");
+            printStatement(selection.ifSequence, depth + 1);
+            if (selection.elseSequence != null) {
+                line(depth + 1).append("else\n");
+                printStatement(selection.elseSequence, depth + 1);
+            }
+        } else if (statement instanceof IterationStmt) {
+            IterationStmt iteration = (IterationStmt) statement;
+            line(depth + 1).append("while\n");
+            line(depth + 1).append("(\n");
+            printExpression(iteration.condition, depth + 1);
+            line(depth + 1).append(")\n");
+            printStatement(iteration.sequence, depth + 1);
+        } else {
+            ReturnStmt returnStmt = (ReturnStmt) statement;
+            line(depth + 1).append("return\n");
+            printExpression(returnStmt.LHS, depth + 1);
+        }
+    }
+
+    private void printExpression(Expression expression, int depth) throws IOException {
+        if (expression == null) {
+            return;
+        }
+        if (expression instanceof AssignExpression) {
+            AssignExpression assign = (AssignExpression) expression;
+            line(depth + 1).append("=\n");
+            printVar(assign.LHS, depth + 1, "");
+            printExpression(assign.RHS, depth + 1);
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            line(depth + 1).append(ops[binary.op.ordinal()]).append('\n');
+            printExpression(binary.LHS, depth + 1);
+            printExpression(binary.RHS, depth + 1);
+        } else if (expression instanceof CallExpression) {
+            CallExpression call = (CallExpression) expression;
+            printVar(call.LHS, depth, "");
+            line(depth + 1).append("(\n");
+            for (Expression arg : call.args) {
+                printExpression(arg, depth + 1);
+            }
+            line(depth + 1).append(")\n");
+        } else if (expression instanceof NumExpression) {
+            line(depth + 1).append(((NumExpression) expression).num).append('\n');
+        } else {
+            printVar((VarExpression) expression, depth, "");
+        }
+    }
+
+    // A variable, with prefix ("int " for a param) before its name
+    private void printVar(VarExpression var, int depth, String prefix) throws IOException {
+        line(depth + 1).append(prefix).append(var.var);
+        if (var.blankArray) {
+            append("[]\n");
+        } else if (var.num == null) {
+            append('\n');
+        } else {
+            append(" [\n");
+            printExpression(var.num, depth + 1);
+            line(depth + 1).append("]\n");
+        }
+    }
+}
@@ -2,16 +2,30 @@ package parser;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import lowlevel.*;
+import scanner.ChannelScanner;
 import scanner.CMinusScanner;
+import scanner.IdentTable;
+import scanner.LineIndex;
+import scanner.MappedScanner;
+import scanner.Scanner;
 import scanner.Token;
+import scanner.TokenStream;
 import scanner.Token.TokenType;
 
 public class CMinusParser implements Parser {
@@ -58,18 +72,7 @@ public class CMinusParser implements Parser {
         14. parseSelectionStmt
         15. parseIterationStmt
         16. parseReturnStmt
-        17. parseExpression
-        18. parseExpression2
-        19. parseExpression3
-        20. parseSimpleExpr2
-        21. parseAdditiveExpr
-        22. parseAdditiveExpr2
-        23. parseTerm
-        24. parseTerm2
-        25. parseFactor
-        26. parseVarCall
-        27. parseArgs
-        28. parseArgList
+        17. parseExpression (precedence climbing, covers the rest of the grammar)
 
         Extra Functions
         1. matchToken() - check and advance
@@ -78,21 +81,74 @@ public class CMinusParser implements Parser {
      */
 
     /* Constructor */
-    private CMinusScanner scanner;
+    private Scanner scanner;
     public Program program;
     public HashMap < TokenType, String > ops = new HashMap < TokenType, String > ();
-    public String INDENT = "    ";
     public FileWriter outputFile;
-    public HashMap<String, Integer> symbolTable = new HashMap<String, Integer>();
+    // Identifiers for this compilation; every IDENT_TOKEN carries one of its canonical names
+    public IdentTable identTable = new IdentTable();
+    // Error recovery: keep parsing after a syntax error and collect the messages
+    private boolean recovering = false;
+    private List<String> diagnostics = new ArrayList<String>();
+    // The file being parsed, if there is one, and whether to cache its tree next to it
+    private String sourceFile;
+    private boolean useAstCache = false;
+    // How to scan sourceFile until the scanner is built; null for CMinusScanner
+    private MappedScanner.Engine sourceEngine;
 
     public CMinusParser(String fileName) throws Exception {
+        this(fileName, null);
+    }
+
+    // A null engine reads the file through CMinusScanner
+    public CMinusParser(String fileName, MappedScanner.Engine engine) throws Exception {
+        sourceFile = fileName;
+        sourceEngine = engine;
         File inputFile = new File(fileName);
-        FileReader codeFile = new FileReader(inputFile);
-        BufferedReader inputReader = new BufferedReader(codeFile);
-        scanner = new CMinusScanner(inputReader);
+        if (!inputFile.isFile()) {
+            throw new FileNotFoundException(fileName);
+        }
+        // The scanner is built by scanner() once a token is needed, so a
+        // tree loaded from the AstCache doesn't scan the file at all
 
         // program = parse();
 
+        initOps();
+    }
+
+    public CMinusParser(ReadableByteChannel channel) throws IOException {
+        // Stream the source (a pipe, stdin) through a fixed-size buffer
+        scanner = new ChannelScanner(channel, identTable);
+
+        initOps();
+    }
+
+    public CMinusParser(TokenStream tokens) {
+        // Parse from pre-scanned token arrays, sharing their identifier table
+        identTable = tokens.getIdentTable();
+        scanner = tokens.cursor();
+
+        initOps();
+    }
+
+    // The scanner, built from sourceFile the first time it's needed
+    private Scanner scanner() {
+        if (scanner == null) {
+            try {
+                if (sourceEngine == null) {
+                    scanner = new CMinusScanner(new BufferedReader(new FileReader(sourceFile)), identTable);
+                } else {
+                    scanner = new MappedScanner(sourceFile, sourceEngine, identTable);
+                }
+            } catch (IOException e) {
+                // Scanner has no checked exceptions, so neither do the token methods
+                throw new UncheckedIOException(e);
+            }
+        }
+        return scanner;
+    }
+
+    private void initOps() {
         // Add keys and values (TokenType, Character)
         ops.put(TokenType.PLUS_TOKEN, "+");
         ops.put(TokenType.MINUS_TOKEN, "-");
@@ -108,29 +164,141 @@ public class CMinusParser implements Parser {
 
     /* Helper functions */
     public Boolean checkToken(TokenType token) {
-        return (scanner.viewNextToken().getType() == token);
+        return (scanner().viewNextToken().getType() == token);
     }
     public Token advanceToken() {
-        return scanner.getNextToken();
+        return scanner().getNextToken();
     }
     public Token matchToken(TokenType token) throws Exception {
-        Token nextToken = scanner.getNextToken();
+        int position = scanner().viewNextPosition();
+        Token nextToken = scanner().getNextToken();
         if (nextToken.getType() != token) {
-            throw new Exception("Error: Unexpected token. Was expecting " + token.toString() + " but got " + nextToken.toString());
+            throw unexpected(token, nextToken, position);
         }
         return nextToken;
     }
+    private Exception unexpected(TokenType token, Token nextToken, int position) {
+        return new Exception("Error: Unexpected token" + locate(position) + ". Was expecting " + token.toString() + " but got " + nextToken.toString());
+    }
+    // " (line L, column C)" for an error at the next token, or "" if the scanner doesn't track positions
+    public String locate() {
+        return locate(scanner().viewNextPosition());
+    }
+    private String locate(int position) {
+        LineIndex lines = scanner().getLineIndex();
+        if (position < 0 || lines == null) {
+            return "";
+        }
+        return " (" + lines.describe(position) + ")";
+    }
+
+    /* Error recovery
+     * With error recovery on, parse() doesn't stop at the first syntax error.
+     * It records the error in getDiagnostics(), skips ahead to a token that
+     * can start or end a statement or declaration (panic mode), and carries
+     * on, so one pass finds every error. The tree it returns leaves out the
+     * parts that had errors, so it is only fit for code generation when
+     * getDiagnostics() is empty.
+     */
+    public void setErrorRecovery(boolean recovering) {
+        this.recovering = recovering;
+    }
+    public List<String> getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Where to resume after an error in a statement: FOLLOW(statement-list) and the
+    // keywords in FIRST(statement); void can only start the next function
+    private static final EnumSet<TokenType> STATEMENT_SYNC = EnumSet.of(TokenType.RIGHT_BRACE_TOKEN,
+        TokenType.IF_TOKEN, TokenType.WHILE_TOKEN, TokenType.RETURN_TOKEN, TokenType.VOID_TOKEN, TokenType.EOF_TOKEN);
+    // Where to resume after an error in a declaration: FIRST(decl) and FOLLOW(program)
+    private static final EnumSet<TokenType> DECL_SYNC = EnumSet.of(TokenType.INT_TOKEN,
+        TokenType.VOID_TOKEN, TokenType.EOF_TOKEN);
+
+    // Records error and skips past the next ";" or up to a token in STATEMENT_SYNC
+    private void recoverStatement(Exception error) throws Exception {
+        report(error);
+        skipTo(STATEMENT_SYNC, true);
+    }
+    // Records error and skips up to a token in DECL_SYNC
+    private void recoverDecl(Exception error) throws Exception {
+        report(error);
+        skipTo(DECL_SYNC, false);
+    }
+    // Without error recovery, and for errors that aren't syntax errors, rethrows error
+    private void report(Exception error) throws Exception {
+        if (!recovering || error instanceof RuntimeException) {
+            throw error;
+        }
+        // Unwinding through nested blocks can hit the same error more than once
+        String message = error.getMessage();
+        if (diagnostics.isEmpty() || !diagnostics.get(diagnostics.size() - 1).equals(message)) {
+            diagnostics.add(message);
+        }
+    }
+    // Skips tokens until one in sync (or just past a ";" if afterSemi), passing over whole { } blocks
+    private void skipTo(EnumSet<TokenType> sync, boolean afterSemi) {
+        int depth = 0;
+        while (true) {
+            TokenType type = scanner().viewNextToken().getType();
+            if (type == TokenType.EOF_TOKEN || (depth == 0 && sync.contains(type))) {
+                return;
+            }
+            scanner().getNextToken();
+            if (type == TokenType.LEFT_BRACE_TOKEN) {
+                depth++;
+            } else if (type == TokenType.RIGHT_BRACE_TOKEN && depth > 0) {
+                depth--;
+            } else if (type == TokenType.SEMI_TOKEN && depth == 0 && afterSemi) {
+                return;
+            }
+        }
+    }
 
     /* 17 classes */
     public class Program {
         public ArrayList<Decl> decls;
 
+        private boolean analyzed = false;
+
         public Program(ArrayList<Decl> decls) {
             this.decls = decls;
         }
 
+        /*
+            Semantic pass: links every variable to the Symbol of its
+            declaration, checks each call against the function's params and
+            gives every expression a type. One walk over the tree, stopping
+            at the first error, and genLLCode() does it first, so a bad
+            program fails before any code is generated.
+         */
+        public void analyze() throws Exception {
+            if(analyzed){
+                return;
+            }
+            SymbolTable table = new SymbolTable();
+            for(int i = 0; i < decls.size(); i++){
+                decls.get(i).analyze(table);
+            }
+            analyzed = true;
+        }
+
+        /*
+            Folds constant expressions, drops identities (x + 0, x * 1,
+            x * 0), and replaces ifs and whiles whose condition is a
+            constant with the code that will actually run. Works on the
+            analyzed tree, so there is less of it to lower.
+         */
+        public void simplify() throws Exception {
+            analyze();
+            for(int i = 0; i < decls.size(); i++){
+                decls.get(i).simplify();
+            }
+        }
+
         // Filler code just to let the program compile
         public CodeItem genLLCode() throws Exception {
+            analyze();
             CodeItem headItem = null;
 
             // Loop through our array list of decls and categorize
@@ -142,21 +310,10 @@ public class CMinusParser implements Parser {
                 headItem = firstDecl.genLLCode();
                 CodeItem lastDecl = headItem;
 
-                if(firstDecl instanceof VarDecl){
-                    VarDecl firstVar = (VarDecl) firstDecl;
-                    symbolTable.put(firstVar.name.var, symbolTable.size());
-                }
-                
                 // Get the remaining decls
                 for(int i = 1; i < decls.size(); i++){
                     Decl curDecl = decls.get(i);
 
-                    // Check if it's a global variable then add it in the symbol table
-                    if(decls.get(i) instanceof VarDecl){
-                        VarDecl curVar = (VarDecl)curDecl;
-                        symbolTable.put(curVar.name.var, symbolTable.size());
-                    }
-
                     CodeItem nextItem = curDecl.genLLCode();
                     lastDecl.setNextItem(nextItem);
                     lastDecl = nextItem;
@@ -166,14 +323,67 @@ public class CMinusParser implements Parser {
             return headItem;
         }
 
-        void print() throws IOException {
-            outputFile.write("Program {\n");
-            for (int i = 0; i < decls.size(); i++) {
-                if (decls.get(i) != null) {
-                    decls.get(i).print("");
+        // Same code as genLLCode(), but the functions are lowered in parallel on pool
+        public CodeItem genLLCode(ForkJoinPool pool) throws Exception {
+            analyze();
+            int count = decls.size();
+            CodeItem[] items = new CodeItem[count];
+            Exception[] errors = new Exception[count];
+
+            for(int i = 0; i < count; i++){
+                if(decls.get(i) instanceof VarDecl){
+                    items[i] = decls.get(i).genLLCode();
+                }
+            }
+
+            // Each FunDecl only touches its own Function and the Symbols of its own
+            // params and locals, so runs of them can be lowered as separate tasks,
+            // a few per worker to even out their sizes
+            if(pool.getParallelism() < 2){
+                lowerFunctions(items, errors, 0, count);
+            } else {
+                int runs = Math.min(count, pool.getParallelism() * 4);
+                ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+                for(int run = 0; run < runs; run++){
+                    int from = (int) ((long) run * count / runs);
+                    int to = (int) ((long) (run + 1) * count / runs);
+                    tasks.add(pool.submit(() -> lowerFunctions(items, errors, from, to)));
+                }
+                for(ForkJoinTask<?> task : tasks){
+                    task.join();
+                }
+            }
+
+            // Stitch the items back together in source order; the first error in source order wins
+            CodeItem headItem = null;
+            CodeItem lastDecl = null;
+            for(int i = 0; i < count; i++){
+                if(errors[i] != null){
+                    throw errors[i];
+                }
+                if(headItem == null){
+                    headItem = items[i];
+                } else {
+                    lastDecl.setNextItem(items[i]);
+                }
+                lastDecl = items[i];
+            }
+
+            return headItem;
+        }
+
+        // Lowers the FunDecls in decls[from, to), stopping at the first one with an error
+        private void lowerFunctions(CodeItem[] items, Exception[] errors, int from, int to) {
+            for(int i = from; i < to; i++){
+                if(decls.get(i) instanceof FunDecl){
+                    try {
+                        items[i] = decls.get(i).genLLCode();
+                    } catch (Exception e) {
+                        errors[i] = e;
+                        return;
+                    }
                 }
             }
-            outputFile.write("}\n");
         }
     }
 
@@ -193,20 +403,27 @@ public class CMinusParser implements Parser {
             regNum = num;
         }
 
+        SymbolTable.Type getType(){
+            return name.blankArray ? SymbolTable.Type.ARRAY : SymbolTable.Type.INT;
+        }
+
+        void analyze(SymbolTable table) throws Exception {
+            name.symbol = table.declare(name.var, getType());
+        }
+
         void genLLCode(Function func){
             this.setRegNum(func.getNewRegNum());
+            name.symbol.setRegNum(this.getRegNum());
+            // The code generators look the params up here
             func.getTable().put(name.var, this.getRegNum());
         }
-
-        void print(String parentSpace) throws IOException {
-            this.name.print(parentSpace + INDENT + "int ");
-        }
     }
 
     abstract class Decl {
         // abstract, will be one of the other two decls
         abstract CodeItem genLLCode() throws Exception;
-        abstract void print(String parentSpace) throws IOException;
+        abstract void analyze(SymbolTable table) throws Exception;
+        abstract void simplify();
     }
 
     public class VarDecl extends Decl {
@@ -217,16 +434,25 @@ public class CMinusParser implements Parser {
             this.name = name;
         }
 
-        public CodeItem genLLCode(){
-            Data data = new Data(Data.TYPE_INT, name.var);
-            
+        void analyze(SymbolTable table) throws Exception {
+            SymbolTable.Type type = SymbolTable.Type.INT;
+            if(name.num != null){
+                if(((NumExpression) name.num).num <= 0){
+                    throw new Exception("Array " + name.var + " must have a positive size.");
+                }
+                type = SymbolTable.Type.ARRAY;
+            }
+            name.symbol = table.declare(name.var, type);
+        }
 
-            return data;
+        void simplify(){
         }
 
-        void print(String parentSpace) throws IOException {
-            outputFile.write(parentSpace + INDENT + "int\n");
-            this.name.print(parentSpace + INDENT);
+        public CodeItem genLLCode(){
+            if(name.num != null){
+                return new Data(Data.TYPE_INT, name.var, true, ((NumExpression) name.num).num);
+            }
+            return new Data(Data.TYPE_INT, name.var);
         }
     }
 
@@ -245,17 +471,40 @@ public class CMinusParser implements Parser {
             this.content = content;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            // Declared before its body is checked, so it can call itself
+            int paramCount = (params == null) ? 0 : params.size();
+            SymbolTable.Type[] paramTypes = new SymbolTable.Type[paramCount];
+            for(int i = 0; i < paramCount; i++){
+                paramTypes[i] = params.get(i).getType();
+            }
+            SymbolTable.Type type = returnType.equals("void") ? SymbolTable.Type.VOID : SymbolTable.Type.INT;
+            name.symbol = table.declareFunction(name.var, type, paramTypes);
+
+            // The params are in scope in the body, whose own locals can hide them
+            table.enterFunction(name.symbol);
+            for(int i = 0; i < paramCount; i++){
+                params.get(i).analyze(table);
+            }
+            content.analyze(table);
+            table.exitFunction();
+        }
+
+        void simplify(){
+            content.simplify();
+        }
+
         public CodeItem genLLCode() throws Exception {
             FuncParam firstParam = null;
 
             // Get the first parameter
             if(params != null){
                 Param param = params.get(0);
-                firstParam = new FuncParam(Data.TYPE_INT, param.name.var);
+                firstParam = new FuncParam(Data.TYPE_INT, param.name.var, param.name.blankArray);
             }
 
             // Get the first function
-            int type = (returnType == "void") ? Data.TYPE_VOID : Data.TYPE_INT;
+            int type = returnType.equals("void") ? Data.TYPE_VOID : Data.TYPE_INT;
             Function func = new Function(type, name.var, firstParam);
 
             if(params != null){
@@ -266,7 +515,7 @@ public class CMinusParser implements Parser {
                     param.genLLCode(func);
 
                     if(i > 0){
-                        FuncParam nextParam = new FuncParam(Data.TYPE_INT, param.name.var);
+                        FuncParam nextParam = new FuncParam(Data.TYPE_INT, param.name.var, param.name.blankArray);
                         lastParam.setNextParam(nextParam);
                         lastParam = nextParam;
                     }
@@ -290,26 +539,14 @@ public class CMinusParser implements Parser {
 
             return func;
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = parentSpace + INDENT;
-            outputFile.write(mySpace + "function " + this.returnType + "\n");
-            name.print(mySpace);
-            outputFile.write(mySpace + INDENT + "Params (\n");
-            if (this.params != null) {
-                for (int i = 0; i < params.size(); i++) {
-                    params.get(i).print(mySpace);
-                }
-            }
-            outputFile.write(mySpace + INDENT + ")\n");
-            content.print(mySpace);
-        }
     }
 
     abstract class Statement {
         // abstract, will be one of the other 5 statements
-        abstract void print(String parentSpace) throws IOException;
         abstract void genLLCode(Function func) throws Exception;
+        abstract void analyze(SymbolTable table) throws Exception;
+        // The statement to use in place of this one, or null if it does nothing
+        abstract Statement simplify();
 
         private int regNum;
         public void setRegNum(int num){
@@ -328,12 +565,24 @@ public class CMinusParser implements Parser {
             this.statement = statement;
         }
 
-        public void genLLCode(Function func) throws Exception {
-            this.statement.genLLCode(func);
+        void analyze(SymbolTable table) throws Exception {
+            this.statement.analyze(table);
         }
 
-        void print(String parentSpace) throws IOException {
-            this.statement.print(parentSpace);
+        Statement simplify(){
+            if(this.statement == null){
+                return null;
+            }
+            this.statement = this.statement.simplify();
+            // A value nobody uses
+            if(!this.statement.hasSideEffects()){
+                return null;
+            }
+            return this;
+        }
+
+        public void genLLCode(Function func) throws Exception {
+            this.statement.genLLCode(func);
         }
     }
 
@@ -347,30 +596,48 @@ public class CMinusParser implements Parser {
             this.statements = statements;
         }
 
-        void print(String parentSpace) throws IOException {
-            String mySpace = parentSpace + INDENT;
-            outputFile.write(mySpace + "{\n");
-            for (int i = 0; i < localDecls.size(); i++) {
-                localDecls.get(i).print(mySpace);
+        void analyze(SymbolTable table) throws Exception {
+            // The locals are only in scope inside the braces
+            table.enterScope();
+            for(int i = 0; i < localDecls.size(); i++){
+                localDecls.get(i).analyze(table);
+            }
+            for(int i = 0; i < statements.size(); i++){
+                if(statements.get(i) != null){
+                    statements.get(i).analyze(table);
+                }
             }
-            for (int i = 0; i < statements.size(); i++) {
-                statements.get(i).print(mySpace);
+            table.exitScope();
+        }
+
+        Statement simplify(){
+            ArrayList < Statement > simplified = new ArrayList < Statement > (statements.size());
+            for(int i = 0; i < statements.size(); i++){
+                if(statements.get(i) != null){
+                    Statement statement = statements.get(i).simplify();
+                    if(statement != null){
+                        simplified.add(statement);
+                    }
+                }
             }
-            outputFile.write(mySpace + "}\n");
+            statements = simplified;
+            return this;
         }
 
         public void genLLCode(Function func) throws Exception {
-            // Get local decls and put them in local symbol table
-            HashMap<String, Integer> localTable = func.getTable();
+            // Give each local its register, and each local array its space in the stack frame
             for(int i = 0; i < localDecls.size(); i++){
                 VarDecl curDecl = (VarDecl) localDecls.get(i);
-                localTable.put(curDecl.name.var, func.getNewRegNum());
+                SymbolTable.Symbol symbol = curDecl.name.symbol;
+                if(symbol.getType() == SymbolTable.Type.ARRAY){
+                    symbol.setFrameOffset(func.getFrameSize());
+                    func.setFrameSize(func.getFrameSize() + 4 * ((NumExpression) curDecl.name.num).num);
+                } else {
+                    symbol.setRegNum(func.getNewRegNum());
+                }
             }
 
             for(int i = 0; i < statements.size(); i++){
-                if(statements.get(i) == null){
-                    int zzz = 0;
-                }
                 statements.get(i).genLLCode(func);
             }
         }
@@ -392,6 +659,31 @@ public class CMinusParser implements Parser {
             this.ifSequence = ifSequence;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            condition.analyze(table);
+            condition.expectType(SymbolTable.Type.INT, "An if condition");
+            if(ifSequence != null){
+                ifSequence.analyze(table);
+            }
+            if(elseSequence != null){
+                elseSequence.analyze(table);
+            }
+        }
+
+        Statement simplify(){
+            condition = condition.simplify();
+            Statement ifSimplified = (ifSequence == null) ? null : ifSequence.simplify();
+            Statement elseSimplified = (elseSequence == null) ? null : elseSequence.simplify();
+
+            // Only one branch can run
+            if(condition instanceof NumExpression){
+                return (((NumExpression) condition).num != 0) ? ifSimplified : elseSimplified;
+            }
+            ifSequence = emptyIfNull(ifSimplified);
+            elseSequence = elseSimplified;
+            return this;
+        }
+
         public void genLLCode(Function func) throws Exception{
             BasicBlock currBlock = func.getCurrBlock();
 
@@ -440,18 +732,6 @@ public class CMinusParser implements Parser {
 
             func.setCurrBlock(postBlock);
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = INDENT + parentSpace;
-            outputFile.write(mySpace + "if (\n");
-            this.condition.print(mySpace);
-            outputFile.write(mySpace + ")\n");
-            this.ifSequence.print(mySpace);
-            if (this.elseSequence != null) {
-                outputFile.write(mySpace + "else\n");
-                this.elseSequence.print(mySpace);
-            }
-        }
     }
 
     public class IterationStmt extends Statement {
@@ -463,7 +743,32 @@ public class CMinusParser implements Parser {
             this.sequence = sequence;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            condition.analyze(table);
+            condition.expectType(SymbolTable.Type.INT, "A while condition");
+            if(sequence != null){
+                sequence.analyze(table);
+            }
+        }
+
+        Statement simplify(){
+            condition = condition.simplify();
+            Statement simplified = (sequence == null) ? null : sequence.simplify();
+
+            // A loop that never runs
+            if(condition instanceof NumExpression && ((NumExpression) condition).num == 0){
+                return null;
+            }
+            sequence = emptyIfNull(simplified);
+            return this;
+        }
+
         public void genLLCode(Function func) throws Exception {
+            if(condition instanceof NumExpression && ((NumExpression) condition).num != 0){
+                genInfiniteLoop(func);
+                return;
+            }
+
             //BasicBlock conditionBlock = new BasicBlock(func);
             BasicBlock postBlock = new BasicBlock(func);
             //func.appendToCurrentBlock(conditionBlock);
@@ -493,13 +798,27 @@ public class CMinusParser implements Parser {
             func.setCurrBlock(postBlock);
         }
 
-        void print(String parentSpace) throws IOException {
-            String mySpace = INDENT + parentSpace;
-            outputFile.write(mySpace + "while\n");
-            outputFile.write(mySpace + "(\n");
-            this.condition.print(mySpace);
-            outputFile.write(mySpace + ")\n");
-            this.sequence.print(mySpace);
+        // while on a nonzero constant: the test on the way in is skipped. The one at
+        // the bottom stays, so the code after the loop and the function's exit are
+        // still reachable from the loop.
+        private void genInfiniteLoop(Function func) throws Exception {
+            BasicBlock sequenceBlock = new BasicBlock(func);
+            BasicBlock postBlock = new BasicBlock(func);
+
+            func.appendToCurrentBlock(sequenceBlock);
+            func.setCurrBlock(sequenceBlock);
+
+            this.sequence.genLLCode(func);
+
+            this.condition.genLLCode(func);
+            Operation jumpOp = new Operation(Operation.OperationType.BNE, sequenceBlock);
+            jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, this.condition.getRegNum()));
+            jumpOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+            jumpOp.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK, sequenceBlock.getBlockNum()));
+            func.getCurrBlock().appendOper(jumpOp);
+
+            func.appendToCurrentBlock(postBlock);
+            func.setCurrBlock(postBlock);
         }
     }
 
@@ -512,6 +831,25 @@ public class CMinusParser implements Parser {
             this.LHS = LHS;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            if(LHS == null){
+                return;
+            }
+            SymbolTable.Symbol function = table.getFunction();
+            if(function.getType() == SymbolTable.Type.VOID){
+                throw new Exception("Function " + function.getName() + " is void and can't return a value.");
+            }
+            LHS.analyze(table);
+            LHS.expectType(SymbolTable.Type.INT, "A return value");
+        }
+
+        Statement simplify(){
+            if(LHS != null){
+                LHS = LHS.simplify();
+            }
+            return this;
+        }
+
         public void genLLCode(Function func) throws Exception {
             BasicBlock currBlock = func.getCurrBlock();
 
@@ -527,23 +865,23 @@ public class CMinusParser implements Parser {
             jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.BLOCK, func.getReturnBlock().getBlockNum()));
             currBlock.appendOper(jumpOp);
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = INDENT + parentSpace;
-            outputFile.write(mySpace + "return\n");
-            if (this.LHS != null) {
-                this.LHS.print(mySpace);
-            }
-        }
     }
 
     abstract class Expression {
         // abstract expression, will be one of the other 5
-        abstract void print(String parentSpace) throws IOException;
         abstract void genLLCode(Function func) throws Exception;
+        // Sets type; the children are analyzed first
+        abstract void analyze(SymbolTable table) throws Exception;
+        // The expression to use in place of this one; the children are simplified first
+        abstract Expression simplify();
+        // Whether evaluating it does more than compute a value (a call, an assignment,
+        // or a division that may trap)
+        abstract boolean hasSideEffects();
 
         // every expression should have a regnum field
         private int regNum;
+        // and a type, once analyzed
+        SymbolTable.Type type;
 
         void setRegNum(int num){
             regNum = num;
@@ -551,6 +889,34 @@ public class CMinusParser implements Parser {
         int getRegNum(){
             return regNum;
         }
+        public SymbolTable.Type getType(){
+            return type;
+        }
+
+        void expectType(SymbolTable.Type expected, String what) throws Exception {
+            if(type != expected){
+                throw new Exception(what + " must be " + typeName(expected) + ", not " + typeName(type) + ".");
+            }
+        }
+    }
+
+    // An if or while body that was simplified away becomes an empty block
+    private Statement emptyIfNull(Statement statement) {
+        if(statement == null){
+            return new CompoundStmt(new ArrayList < Decl > (), new ArrayList < Statement > ());
+        }
+        return statement;
+    }
+
+    private static String typeName(SymbolTable.Type type) {
+        switch(type){
+            case ARRAY:
+                return "an array";
+            case VOID:
+                return "void";
+            default:
+                return "an int";
+        }
     }
 
     public class AssignExpression extends Expression {
@@ -564,6 +930,24 @@ public class CMinusParser implements Parser {
             this.RHS = RHS;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            this.LHS.analyze(table);
+            this.LHS.expectType(SymbolTable.Type.INT, "The target of =");
+            this.RHS.analyze(table);
+            this.RHS.expectType(SymbolTable.Type.INT, "The value assigned to " + this.LHS.var);
+            type = SymbolTable.Type.INT;
+        }
+
+        Expression simplify(){
+            this.LHS.simplify();
+            this.RHS = this.RHS.simplify();
+            return this;
+        }
+
+        boolean hasSideEffects(){
+            return true;
+        }
+
         public void genLLCode(Function func) throws Exception{
             // if local, make assign oper, lhs.reg = rhs.reg (move)
             // annotate with lhs.reg
@@ -577,9 +961,16 @@ public class CMinusParser implements Parser {
             // Add assign operation
             BasicBlock currBlock = func.getCurrBlock();
 
-            // Left hand side is in local table
-            if(func.getTable().containsKey(this.LHS.var)){
-                int reg = func.getTable().get(this.LHS.var);
+            if(this.LHS.num != null){
+                // Left hand side is an array element
+                Operation storeOp = new Operation(Operation.OperationType.STORE_I, currBlock);
+                storeOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, this.RHS.getRegNum()));
+                this.LHS.setElementAddress(storeOp, 1, func);
+                currBlock.appendOper(storeOp);
+                setRegNum(RHS.getRegNum());
+            } else if(!this.LHS.symbol.isGlobal()){
+                // Left hand side is a param or local
+                int reg = this.LHS.symbol.getRegNum();
                 Operation assignOp = new Operation(Operation.OperationType.ASSIGN, currBlock);
                 assignOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, reg));
                 assignOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, this.RHS.getRegNum()));
@@ -595,13 +986,6 @@ public class CMinusParser implements Parser {
 
             //this.LHS.setRegNum(this.RHS.getRegNum());
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = INDENT + parentSpace;
-            outputFile.write(mySpace + "=\n");
-            this.LHS.print(mySpace);
-            this.RHS.print(mySpace);
-        }
     }
 
     public class BinaryExpression extends Expression {
@@ -616,6 +1000,102 @@ public class CMinusParser implements Parser {
             this.RHS = RHS;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            this.LHS.analyze(table);
+            this.LHS.expectType(SymbolTable.Type.INT, "An operand of " + ops.get(this.op));
+            this.RHS.analyze(table);
+            this.RHS.expectType(SymbolTable.Type.INT, "An operand of " + ops.get(this.op));
+            type = SymbolTable.Type.INT;
+        }
+
+        Expression simplify(){
+            this.LHS = this.LHS.simplify();
+            this.RHS = this.RHS.simplify();
+            boolean constantLeft = this.LHS instanceof NumExpression;
+            boolean constantRight = this.RHS instanceof NumExpression;
+            int left = constantLeft ? ((NumExpression) this.LHS).num : 0;
+            int right = constantRight ? ((NumExpression) this.RHS).num : 0;
+
+            if(constantLeft && constantRight){
+                // Java's int arithmetic wraps and truncates like the generated code;
+                // a division that would trap is left for run time
+                switch(this.op){
+                    case PLUS_TOKEN:
+                        return constant(left + right);
+                    case MINUS_TOKEN:
+                        return constant(left - right);
+                    case MULT_TOKEN:
+                        return constant(left * right);
+                    case DIVIDE_TOKEN:
+                        if(right == 0 || (left == Integer.MIN_VALUE && right == -1)){
+                            return this;
+                        }
+                        return constant(left / right);
+                    case LESS_TOKEN:
+                        return constant(left < right ? 1 : 0);
+                    case LESS_EQUAL_TOKEN:
+                        return constant(left <= right ? 1 : 0);
+                    case GREATER_TOKEN:
+                        return constant(left > right ? 1 : 0);
+                    case GREATER_EQUAL_TOKEN:
+                        return constant(left >= right ? 1 : 0);
+                    case EQUAL_TOKEN:
+                        return constant(left == right ? 1 : 0);
+                    case NOT_EQUAL_TOKEN:
+                        return constant(left != right ? 1 : 0);
+                    default:
+                        return this;
+                }
+            }
+
+            if(constantRight){
+                // x + 0, x - 0, x * 1, x / 1, and x * 0 unless x has to run
+                if(right == 0 && (this.op == TokenType.PLUS_TOKEN || this.op == TokenType.MINUS_TOKEN)){
+                    return this.LHS;
+                }
+                if(right == 1 && (this.op == TokenType.MULT_TOKEN || this.op == TokenType.DIVIDE_TOKEN)){
+                    return this.LHS;
+                }
+                if(right == 0 && this.op == TokenType.MULT_TOKEN && !this.LHS.hasSideEffects()){
+                    return this.RHS;
+                }
+            } else if(constantLeft){
+                // 0 + x, 1 * x, and 0 * x unless x has to run
+                if(left == 0 && this.op == TokenType.PLUS_TOKEN){
+                    return this.RHS;
+                }
+                if(left == 1 && this.op == TokenType.MULT_TOKEN){
+                    return this.RHS;
+                }
+                if(left == 0 && this.op == TokenType.MULT_TOKEN && !this.RHS.hasSideEffects()){
+                    return this.LHS;
+                }
+            }
+            return this;
+        }
+
+        private NumExpression constant(int value){
+            NumExpression folded = new NumExpression(value);
+            folded.type = SymbolTable.Type.INT;
+            return folded;
+        }
+
+        boolean hasSideEffects(){
+            if(this.op == TokenType.DIVIDE_TOKEN && !safeDivisor()){
+                return true;
+            }
+            return this.LHS.hasSideEffects() || this.RHS.hasSideEffects();
+        }
+
+        // Dividing by 0 traps, and so does MIN_VALUE / -1; any other constant can't
+        private boolean safeDivisor(){
+            if(!(this.RHS instanceof NumExpression)){
+                return false;
+            }
+            int divisor = ((NumExpression) this.RHS).num;
+            return divisor != 0 && divisor != -1;
+        }
+
         public void genLLCode(Function func) throws Exception {
             // rNew = a + b
             // 
@@ -665,13 +1145,6 @@ public class CMinusParser implements Parser {
             newOper.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, this.getRegNum()));
             currBlock.appendOper(newOper);
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = parentSpace + INDENT;
-            outputFile.write(mySpace + ops.get(this.op) + "\n");
-            this.LHS.print(mySpace);
-            this.RHS.print(mySpace);
-        }
     }
 
     public class CallExpression extends Expression {
@@ -684,6 +1157,40 @@ public class CMinusParser implements Parser {
             this.args = args;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            SymbolTable.Symbol function = table.lookup(LHS.var);
+            if(function == null){
+                throw new Exception("Function " + LHS.var + " doesn't exist.");
+            }
+            if(!function.isFunction()){
+                throw new Exception(LHS.var + " is not a function.");
+            }
+            LHS.symbol = function;
+
+            SymbolTable.Type[] paramTypes = function.getParamTypes();
+            if(args.size() != paramTypes.length){
+                String arguments = (paramTypes.length == 1) ? " argument" : " arguments";
+                throw new Exception("Function " + LHS.var + " takes " + paramTypes.length
+                    + arguments + ", not " + args.size() + ".");
+            }
+            for(int i = 0; i < args.size(); i++){
+                args.get(i).analyze(table);
+                args.get(i).expectType(paramTypes[i], "Argument " + (i + 1) + " of " + LHS.var);
+            }
+            type = function.getType();
+        }
+
+        Expression simplify(){
+            for(int i = 0; i < args.size(); i++){
+                args.set(i, args.get(i).simplify());
+            }
+            return this;
+        }
+
+        boolean hasSideEffects(){
+            return true;
+        }
+
         public void genLLCode(Function func) throws Exception {
             // pass, pass, rNew = retReg
             // retReg holds return value, register number of call expression
@@ -720,16 +1227,6 @@ public class CMinusParser implements Parser {
             func.getCurrBlock().appendOper(assignOp);
             this.setRegNum(register);
         }
-
-        void print(String parentSpace) throws IOException {
-            String mySpace = INDENT + parentSpace;
-            this.LHS.print(parentSpace);
-            outputFile.write(mySpace + "(\n");
-            for (int i = 0; i < args.size(); i++) {
-                args.get(i).print(mySpace);
-            }
-            outputFile.write(mySpace + ")\n");
-        }
     }
 
     public class NumExpression extends Expression {
@@ -741,6 +1238,18 @@ public class CMinusParser implements Parser {
             this.num = num;
         }
 
+        void analyze(SymbolTable table){
+            type = SymbolTable.Type.INT;
+        }
+
+        Expression simplify(){
+            return this;
+        }
+
+        boolean hasSideEffects(){
+            return false;
+        }
+
         public void genLLCode(Function func){
             // note - duplicate numbers may cause problems
             // HashMap<String, Integer> localTable = func.getTable();
@@ -754,10 +1263,6 @@ public class CMinusParser implements Parser {
             func.getCurrBlock().appendOper(assignOp);
             this.setRegNum(register);
         }
-
-        void print(String parentSpace) throws IOException {
-            outputFile.write(INDENT + parentSpace + this.num + "\n");
-        }
     }
 
     public class VarExpression extends Expression {
@@ -768,6 +1273,8 @@ public class CMinusParser implements Parser {
         String var;
         Expression num;
         Boolean blankArray = false;
+        // The declaration var refers to, set by Program.analyze()
+        SymbolTable.Symbol symbol;
 
         public VarExpression(String var) {
             this.var = var;
@@ -781,47 +1288,142 @@ public class CMinusParser implements Parser {
             this.blankArray = blankArray;
         }
 
+        void analyze(SymbolTable table) throws Exception {
+            // throw error if variable doesn't exist
+            symbol = table.lookup(var);
+            if(symbol == null){
+                throw new Exception("Variable " + this.var + " doesn't exist.");
+            }
+            if(symbol.isFunction()){
+                throw new Exception(this.var + " is a function, not a variable.");
+            }
+
+            type = symbol.getType();
+            if(num != null){
+                if(type != SymbolTable.Type.ARRAY){
+                    throw new Exception(this.var + " is not an array.");
+                }
+                num.analyze(table);
+                num.expectType(SymbolTable.Type.INT, "The index of " + this.var);
+                // An element of the array
+                type = SymbolTable.Type.INT;
+            }
+        }
+
+        Expression simplify(){
+            if(num != null){
+                num = num.simplify();
+            }
+            return this;
+        }
+
+        boolean hasSideEffects(){
+            return num != null && num.hasSideEffects();
+        }
+
         public void genLLCode(Function func) throws Exception{
 
-            HashMap<String, Integer> localTable = func.getTable();
             BasicBlock currentBlock = func.getCurrBlock();
-            int register = -1;
 
-            // check for global variables
-            if(localTable.containsKey(var)){
-                register = localTable.get(var);
-                this.setRegNum(register);
+            if(num != null){
+                // An element of an array, loaded from memory
+                Operation loadOp = new Operation(Operation.OperationType.LOAD_I, currentBlock);
+                setElementAddress(loadOp, 0, func);
+                int rNew = func.getNewRegNum();
+                loadOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
+                currentBlock.appendOper(loadOp);
+                this.setRegNum(rNew);
+            } else if(symbol.getType() == SymbolTable.Type.ARRAY && !isArrayParam()){
+                // A whole array, passed to a function: its address
+                int rNew = func.getNewRegNum();
+                Operation addrOp = new Operation(Operation.OperationType.LOAD_ADDR, currentBlock);
+                if(symbol.isGlobal()){
+                    addrOp.setSrcOperand(0, new Operand(Operand.OperandType.STRING, this.var));
+                    addrOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+                } else {
+                    addrOp.setSrcOperand(0, new Operand(Operand.OperandType.MACRO, "ESP"));
+                    addrOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, symbol.getFrameOffset()));
+                }
+                addrOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
+                currentBlock.appendOper(addrOp);
+                this.setRegNum(rNew);
+            } else if(!symbol.isGlobal()){
+                // A param or local; an array param's register holds the array's address
+                this.setRegNum(symbol.getRegNum());
             } else {
                 int rNew = func.getNewRegNum();
-                register = symbolTable.get(var);
                 Operation loadOp = new Operation(Operation.OperationType.LOAD_I, currentBlock);
                 loadOp.setSrcOperand(0, new Operand(Operand.OperandType.STRING, this.var));
                 loadOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
                 currentBlock.appendOper(loadOp);
                 this.setRegNum(rNew);
             }
+        }
 
-            // throw error if variable doesn't exist
-            if(register == -1){
-                throw new Exception("Variable " + this.var + " doesn't exist.");
-            }
+        // An array param's address is in a register; other arrays' addresses are fixed
+        private boolean isArrayParam(){
+            return !symbol.isGlobal() && symbol.getFrameOffset() < 0;
         }
 
-        void print(String parentSpace) throws IOException {
-            if (this.blankArray){
-                outputFile.write(INDENT + parentSpace + this.var + "[]\n");
-            } else if (this.num == null) {
-                outputFile.write(INDENT + parentSpace + this.var + "\n");
+        /*
+            Sets the address of this element as oper's src operands first
+            on: the array's base, a byte displacement, and the index
+            register, if there is one. A global array's base is its name,
+            a local array's is the stack pointer (its place in the frame
+            is the displacement), and an array param's is its register.
+            A constant index is folded into the displacement; any other
+            index is computed here, and the backends scale it by 4.
+         */
+        void setElementAddress(Operation oper, int first, Function func) throws Exception {
+            int displacement = 0;
+            Operand index = null;
+            if(num instanceof NumExpression){
+                displacement = 4 * ((NumExpression) num).num;
+            } else {
+                num.genLLCode(func);
+                index = new Operand(Operand.OperandType.REGISTER, num.getRegNum());
+            }
+
+            if(symbol.isGlobal()){
+                oper.setSrcOperand(first, new Operand(Operand.OperandType.STRING, this.var));
+            } else if(isArrayParam()){
+                oper.setSrcOperand(first, new Operand(Operand.OperandType.REGISTER, symbol.getRegNum()));
             } else {
-                outputFile.write(INDENT + parentSpace + this.var + " [\n");
-                this.num.print(INDENT + parentSpace);
-                outputFile.write(INDENT + parentSpace + "]\n");
+                oper.setSrcOperand(first, new Operand(Operand.OperandType.MACRO, "ESP"));
+                displacement += symbol.getFrameOffset();
+            }
+            oper.setSrcOperand(first + 1, new Operand(Operand.OperandType.INTEGER, displacement));
+            if(index != null){
+                oper.setSrcOperand(first + 2, index);
             }
         }
     }
 
+    // Load the tree of an unchanged source file from its AstCache instead of parsing it
+    public void setAstCache(boolean useAstCache) {
+        this.useAstCache = useAstCache;
+    }
+
     /* Parse Functions */
     public Program parse() throws Exception {
+        if (!useAstCache || sourceFile == null) {
+            return parseProgram();
+        }
+
+        AstCache cache = new AstCache(this, sourceFile);
+        Program cached = cache.load();
+        if (cached != null) {
+            return cached;
+        }
+        Program parsed = parseProgram();
+        // A tree with errors left out (error recovery) isn't the file's tree
+        if (diagnostics.isEmpty()) {
+            cache.store(parsed);
+        }
+        return parsed;
+    }
+
+    private Program parseProgram() throws Exception {
         /* program -> decl {decl}
          * first(program) = { void, int }
          * follow(program) = { $ }
@@ -830,24 +1432,40 @@ public class CMinusParser implements Parser {
         ArrayList < Decl > declList = new ArrayList < Decl > ();
 
         // Parse the first decl
-        Decl nextDecl = parseDecl();
-        declList.add(nextDecl);
+        parseDeclInto(declList);
 
         // Loop through any other decls
         while (checkToken(TokenType.INT_TOKEN) 
             || checkToken(TokenType.VOID_TOKEN)){
-            nextDecl = parseDecl();
-            declList.add(nextDecl);
+            parseDeclInto(declList);
         }
 
         // if we're no longer in the first set, check if we're in the follow set - if yes, continue, if not, error
-        if (!checkToken(TokenType.EOF_TOKEN)) {
-            throw new Exception("Parse error in parseProgram(): expected end of file.");
+        while (!checkToken(TokenType.EOF_TOKEN)) {
+            recoverDecl(new Exception("Parse error in parseProgram(): expected end of file." + locate()));
+            while (checkToken(TokenType.INT_TOKEN) 
+                || checkToken(TokenType.VOID_TOKEN)){
+                parseDeclInto(declList);
+            }
         }
 
         return new Program(declList);
     }
 
+    // Parses into a FlatAst instead of Program; its genLLCode() gives the same code
+    public FlatAst parseFlat() throws Exception {
+        return new FlatParser(scanner(), identTable).parse();
+    }
+
+    // Adds the next decl to declList; with error recovery, a decl with an error is left out
+    private void parseDeclInto(ArrayList<Decl> declList) throws Exception {
+        try {
+            declList.add(parseDecl());
+        } catch (Exception e) {
+            recoverDecl(e);
+        }
+    }
+
     private Decl parseDecl() throws Exception {
         /* decl -> void ID fun-decl | int ID decl'
          * first(decl) = { void, int }
@@ -875,7 +1493,7 @@ public class CMinusParser implements Parser {
             decl = parseDecl2(returnType, name);
         } 
         else {
-            throw new Exception("Error: parseDecl() expects int or void.");
+            throw new Exception("Error: parseDecl() expects int or void." + locate());
         }
 
         return decl;
@@ -915,7 +1533,7 @@ public class CMinusParser implements Parser {
             decl2 = parseFunDecl(returnType, var);
         } 
         else {
-            throw new Exception("Error: parseDecl2 expects ; [ or (");
+            throw new Exception("Error: parseDecl2 expects ; [ or (" + locate());
         }
 
         return decl2;
@@ -946,7 +1564,7 @@ public class CMinusParser implements Parser {
             matchToken(TokenType.SEMI_TOKEN);
         }
         else {
-            throw new Exception("Error: parseVarDecl expects ; or [");
+            throw new Exception("Error: parseVarDecl expects ; or [" + locate());
         }
 
         return varDecl;
@@ -968,7 +1586,7 @@ public class CMinusParser implements Parser {
             // Do nothing
         }
         else {
-            throw new Exception("Error: parseParams expects int or void");
+            throw new Exception("Error: parseParams expects int or void" + locate());
         }
 
         return params;
@@ -1019,7 +1637,7 @@ public class CMinusParser implements Parser {
             param = new Param(var);
         }
         else {
-            throw new Exception("Error: parseParam expected ( ) or ,");
+            throw new Exception("Error: parseParam expected ( ) or ," + locate());
         }
 
         return param;
@@ -1034,6 +1652,17 @@ public class CMinusParser implements Parser {
         matchToken(TokenType.LEFT_BRACE_TOKEN);
         ArrayList<Decl> localDecls = parseLocalDecls();
         ArrayList<Statement> stmtList = parseStmtList();
+
+        // With error recovery, anything else before the "}" is skipped and the
+        // statements carry on, unless the function has clearly ended
+        while (recovering && !checkToken(TokenType.RIGHT_BRACE_TOKEN)) {
+            Exception error = unexpected(TokenType.RIGHT_BRACE_TOKEN, scanner().viewNextToken(), scanner().viewNextPosition());
+            if (checkToken(TokenType.EOF_TOKEN) || checkToken(TokenType.VOID_TOKEN)) {
+                throw error;
+            }
+            recoverStatement(error);
+            stmtList.addAll(parseStmtList());
+        }
         matchToken(TokenType.RIGHT_BRACE_TOKEN);
 
         return new CompoundStmt(localDecls, stmtList);
@@ -1048,11 +1677,15 @@ public class CMinusParser implements Parser {
         Token temp;
 
         while (checkToken(TokenType.INT_TOKEN)) {
-            matchToken(TokenType.INT_TOKEN);
-            temp = matchToken(TokenType.IDENT_TOKEN);
-            String name = (String) temp.getData();
-            Decl decl = parseVarDecl(name);
-            localDecls.add(decl);
+            try {
+                matchToken(TokenType.INT_TOKEN);
+                temp = matchToken(TokenType.IDENT_TOKEN);
+                String name = (String) temp.getData();
+                Decl decl = parseVarDecl(name);
+                localDecls.add(decl);
+            } catch (Exception e) {
+                recoverStatement(e);
+            }
         }
 
         return localDecls;
@@ -1071,8 +1704,12 @@ public class CMinusParser implements Parser {
             || checkToken(TokenType.IF_TOKEN)
             || checkToken(TokenType.WHILE_TOKEN)
             || checkToken(TokenType.RETURN_TOKEN)) {
-            Statement S = parseStatement();
-            SL.add(S);
+            try {
+                Statement S = parseStatement();
+                SL.add(S);
+            } catch (Exception e) {
+                recoverStatement(e);
+            }
         }
 
         return SL;
@@ -1103,7 +1740,7 @@ public class CMinusParser implements Parser {
             S = parseReturnStmt();
         } 
         else {
-            throw new Exception("Error: parseStatement expects beginning of statement.");
+            throw new Exception("Error: parseStatement expects beginning of statement." + locate());
         }
 
         return S;
@@ -1126,7 +1763,7 @@ public class CMinusParser implements Parser {
             matchToken(TokenType.SEMI_TOKEN);
         } 
         else {
-            throw new Exception("Error: parseExpressionStmt expected ID, NUM, (, or ;");
+            throw new Exception("Error: parseExpressionStmt expected ID, NUM, (, or ;" + locate());
         }
 
         return ES;
@@ -1189,7 +1826,7 @@ public class CMinusParser implements Parser {
         } else if (checkToken(TokenType.SEMI_TOKEN)){
             RS = new ReturnStmt();
         } else {
-            throw new Exception("Error: return statement expected ID, NUM, ( or ;");
+            throw new Exception("Error: return statement expected ID, NUM, ( or ;" + locate());
         }
 
         matchToken(TokenType.SEMI_TOKEN);
@@ -1197,347 +1834,327 @@ public class CMinusParser implements Parser {
         return RS;
     }
 
-    private Expression parseExpression() throws Exception {
-        /* expression → ID expression’ | NUM simple-expression’ | (expression) simple-expression’
-         * First(expression) → { ID, NUM, ( }
-         * Follow(expression) → { ;, ), ], “,” }
-         */
+    /* Expression parsing
+     * expression → ID expression’ | NUM simple-expression’ | (expression) simple-expression’
+     * expression’ → = expression | "["expression"]" expression’’ | (args) | simple-expression’
+     * expression’’ → = expression | simple-expression’
+     * simple-expression’ → additive-expression’ [relop additive-expression]
+     * additive-expression → term {addop term}
+     * term → factor {mulop factor}
+     * factor → “(” expression “)” | ID varcall | NUM
+     * varcall → “(“ args “)” | “[“ expression “]” | ε
+     * args → expression {, expression} | ε
+     * Follow(expression) → { ;, ), ], “,” }
+     *
+     * Rather than one function per rule, binary operators are parsed by
+     * precedence climbing over the PRECEDENCE table, with explicit operand
+     * and operator stacks. Every nested expression (parentheses, an array
+     * index, a call argument) is an ExpressionFrame on a stack instead of a
+     * recursive call, so deep nesting can't overflow the Java stack. The
+     * trees and error messages are the same as the grammar above gives:
+     * - assignment only comes first in an expression, and is right associative
+     * - relops don't associate: a < b < c is an error
+     * - a call that starts an expression ends it
+     * - x[i] as a factor is a VarExpression that carries its index
+     */
 
-        Expression E = null;
+    // Binding strength of each binary operator by TokenType ordinal; 0 if not one
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    // Relops can't be chained without parentheses
+    private static final boolean[] NON_ASSOCIATIVE = new boolean[TokenType.values().length];
+
+    static {
+        setPrecedence(3, false, TokenType.MULT_TOKEN, TokenType.DIVIDE_TOKEN);
+        setPrecedence(2, false, TokenType.PLUS_TOKEN, TokenType.MINUS_TOKEN);
+        setPrecedence(1, true, TokenType.LESS_TOKEN, TokenType.LESS_EQUAL_TOKEN,
+            TokenType.GREATER_TOKEN, TokenType.GREATER_EQUAL_TOKEN,
+            TokenType.EQUAL_TOKEN, TokenType.NOT_EQUAL_TOKEN);
+    }
 
-        if (checkToken(TokenType.IDENT_TOKEN)) {
-            String ID = (String) scanner.getNextToken().getData();
-            E = parseExpression2(ID);
-        } 
-        else if (checkToken(TokenType.NUM_TOKEN)) {
-            int num = (int) scanner.getNextToken().getData();
-            E = parseSimpleExpr2(new NumExpression(num));
-            if (E == null) {
-                E = new NumExpression(num);
-            }
-        } 
-        else if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
-            matchToken(TokenType.LEFT_PAREN_TOKEN);
-            E = parseExpression();
-            matchToken(TokenType.RIGHT_PAREN_TOKEN);
-            E = parseSimpleExpr2(E);
-        } 
-        else {
-            throw new Exception("Syntax error: expression expects ID, NUM, or (.");
+    private static void setPrecedence(int precedence, boolean nonAssociative, TokenType... types) {
+        for (TokenType type : types) {
+            PRECEDENCE[type.ordinal()] = precedence;
+            NON_ASSOCIATIVE[type.ordinal()] = nonAssociative;
         }
-        
-        return E;
     }
-    private Expression parseExpression2(String ID) throws Exception {
-        /* expression’ → = expression | "["expression"]" expression’’ | (args) simple-expression’ | simple-expression’
-         * First(expression’) → { =, [, (, ε, *, /, +, -, <, <=, >, >=, ==, != }
-         * Follow(expression’) → { ;, ), ], “,” }
-         */
-
-        Expression E2 = null;
-
-        if (checkToken(TokenType.ASSIGN_TOKEN)) {
-            matchToken(TokenType.ASSIGN_TOKEN);
-            VarExpression LHS = new VarExpression(ID);
-            Expression RHS = parseExpression();
-            E2 = new AssignExpression(LHS, RHS);
-        } 
-        else if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
-            matchToken(TokenType.LEFT_BRACKET_TOKEN);
-            Expression index = parseExpression();
-            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
 
-            VarExpression LHS = new VarExpression(ID, index);
-            Expression E3 = parseExpression3(LHS);
-
-            E2 = LHS;
-            if (E3 != null) {
-                E2 = E3;
-            }
-        } 
-        else if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
-            E2 = parseVarCall(new VarExpression(ID));
-        } 
-        else if (checkToken(TokenType.MULT_TOKEN) 
-            || checkToken(TokenType.DIVIDE_TOKEN) 
-            || checkToken(TokenType.PLUS_TOKEN) 
-            || checkToken(TokenType.MINUS_TOKEN) 
-            || checkToken(TokenType.LESS_EQUAL_TOKEN) 
-            || checkToken(TokenType.LESS_TOKEN) 
-            || checkToken(TokenType.GREATER_TOKEN) 
-            || checkToken(TokenType.GREATER_EQUAL_TOKEN) 
-            || checkToken(TokenType.EQUAL_TOKEN) 
-            || checkToken(TokenType.NOT_EQUAL_TOKEN) 
-            || checkToken(TokenType.IDENT_TOKEN) 
-            || checkToken(TokenType.NUM_TOKEN)) {
-            E2 = parseSimpleExpr2(new VarExpression(ID));
-        } 
-        else if (checkToken(TokenType.SEMI_TOKEN) 
-            || checkToken(TokenType.RIGHT_PAREN_TOKEN) 
-            || checkToken(TokenType.COMMA_TOKEN)
-            || checkToken(TokenType.RIGHT_BRACKET_TOKEN)) {
-            E2 = new VarExpression(ID);
-        } 
-        else {
-            throw new Exception("Syntax error: expression' expects = [ or (.");
-        }
+    private static boolean isOperator(TokenType type) {
+        return PRECEDENCE[type.ordinal()] > 0;
+    }
 
-        return E2;
+    private static boolean isFollow(TokenType type) {
+        return type == TokenType.SEMI_TOKEN
+            || type == TokenType.RIGHT_PAREN_TOKEN
+            || type == TokenType.RIGHT_BRACKET_TOKEN
+            || type == TokenType.COMMA_TOKEN;
     }
-    private Expression parseExpression3(VarExpression LHS) throws Exception {
-        /* expression’’ → = expression | simple-expression’
-         * First(expression’’) → {  =, ε, *, /, +, -, <, <=, >, >=, ==, !=  }
-         * Follow(expression’’) → { ;, ), ], “,” }
-         */
 
-        Expression E3 = LHS;
+    // What closes a frame and where its value goes
+    private enum FrameKind {
+        TOP,        // the whole expression
+        PAREN,      // ( expression ), an operand of the enclosing frame
+        INDEX_VAR,  // ID [ expression ] starting an expression, may be assigned to
+        INDEX,      // ID [ expression ] as a factor
+        ARG         // one argument of a call
+    }
 
-        if (checkToken(TokenType.ASSIGN_TOKEN)) {
-            matchToken(TokenType.ASSIGN_TOKEN);
+    private class ExpressionFrame {
+        FrameKind kind;
+        // Where this frame's operators start on the shared stack
+        int operatorBase;
+        // Left hand sides of "x = " seen at the start, outermost first; null if none
+        ArrayList < VarExpression > targets;
+        boolean seenRelop = false;
+
+        // INDEX_VAR and INDEX: the array name; ARG: the called function
+        String name;
+        // ARG: arguments so far, and whether the call starts its expression
+        ArrayList < Expression > args;
+        boolean callStarts;
 
-            Expression RHS = parseExpression();
-            E3 = new AssignExpression(LHS, RHS);
-        } 
-        else if (checkToken(TokenType.MULT_TOKEN) 
-            || checkToken(TokenType.DIVIDE_TOKEN)
-            || checkToken(TokenType.PLUS_TOKEN)
-            || checkToken(TokenType.MINUS_TOKEN)
-            || checkToken(TokenType.LESS_TOKEN)
-            || checkToken(TokenType.LESS_EQUAL_TOKEN)
-            || checkToken(TokenType.GREATER_TOKEN)
-            || checkToken(TokenType.GREATER_EQUAL_TOKEN)
-            || checkToken(TokenType.EQUAL_TOKEN)
-            || checkToken(TokenType.NOT_EQUAL_TOKEN)) {
-            E3 = parseSimpleExpr2(LHS);
-        }
-        else if (!(checkToken(TokenType.SEMI_TOKEN) 
-            || checkToken(TokenType.RIGHT_PAREN_TOKEN) 
-            || checkToken(TokenType.COMMA_TOKEN)
-            || checkToken(TokenType.RIGHT_BRACKET_TOKEN))) {
-            throw new Exception("Error: expression'' expects an operator.");
-        }
-
-        return E3;
-    }
-    private Expression parseSimpleExpr2(Expression LHS) throws Exception {
-        /* simple-expression’ → additive-expression’ [relop additive expression]
-         * First(simple-expression’) → { ε, *, /, +, -, <, <=, >, >=, ==, != }
-         * Follow(simple-expression’) → { ;, ), ], “,” }
-         */
-        
-        Expression SE2 = LHS;
-        
-        if (checkToken(TokenType.MULT_TOKEN) 
-        || checkToken(TokenType.DIVIDE_TOKEN) 
-        || checkToken(TokenType.PLUS_TOKEN) 
-        || checkToken(TokenType.MINUS_TOKEN)) {
-            SE2 = parseAdditiveExpr2(LHS);
-        }
-        if (checkToken(TokenType.GREATER_EQUAL_TOKEN) 
-        || checkToken(TokenType.GREATER_TOKEN) 
-        || checkToken(TokenType.EQUAL_TOKEN) 
-        || checkToken(TokenType.NOT_EQUAL_TOKEN) 
-        || checkToken(TokenType.LESS_EQUAL_TOKEN) 
-        || checkToken(TokenType.LESS_TOKEN)) {
-            TokenType op = scanner.getNextToken().getType();
-            Expression RHS = parseAdditiveExpr();
-            SE2 = new BinaryExpression(SE2, op, RHS);
-        }
-
-        if(!(checkToken(TokenType.SEMI_TOKEN) 
-        || checkToken(TokenType.RIGHT_PAREN_TOKEN) 
-        || checkToken(TokenType.RIGHT_BRACKET_TOKEN)
-        || checkToken(TokenType.COMMA_TOKEN))){
-            throw new Exception("Error: simple-expression' expected ; ) ] or ,");
+        ExpressionFrame(FrameKind kind, int operatorBase) {
+            this.kind = kind;
+            this.operatorBase = operatorBase;
         }
-        
-        return SE2;
-    }
-    private Expression parseAdditiveExpr() throws Exception {
-        /* additive-expression → term {addop term}
-         * First(additive-expression) → { (, ID, NUM }
-         * Follow(additive-expression) → { ;, ), ], “,” }
-         */
 
-        Expression LHS = parseTerm();
-        
-        while (checkToken(TokenType.PLUS_TOKEN) 
-            || checkToken(TokenType.MINUS_TOKEN)) {
-            TokenType op = scanner.getNextToken().getType();
-            Expression RHS = parseTerm();
-            LHS = new BinaryExpression(LHS, op, RHS);
+        void addTarget(VarExpression target) {
+            if (targets == null) {
+                targets = new ArrayList < VarExpression > ();
+            }
+            targets.add(target);
         }
-        
-        return LHS;
     }
 
-    private Expression parseAdditiveExpr2(Expression inLHS) throws Exception {
-        /* additive-expression’ → term’ {addop term}
-         * First(additive-expression’) → { ε, *, /, +, - }
-         * Follow(additive-expression’) → { <, <=, >, >=, ==, !=, ;, ), ], “,” }
-         */
+    private enum ExprState { START, OPERAND, OPERATOR, END }
 
-        Expression LHS = inLHS;
-        Expression newLHS = parseTerm2(LHS);
-        
-        if (newLHS != null) {
-            LHS = newLHS;
-        }
-        while (checkToken(TokenType.PLUS_TOKEN) 
-            || checkToken(TokenType.MINUS_TOKEN)) {
-            TokenType op = scanner.getNextToken().getType();
-            Expression RHS = parseTerm();
-            LHS = new BinaryExpression(LHS, op, RHS);
-        }
-        
-        return LHS;
-    }
-    private Expression parseTerm() throws Exception {
-        /* term → factor {mulop factor}
-         * First(term) → { (, ID, NUM }
-         * Follow(term) → { +, -, <, <=, >, >=, ==, !=, ;, ), ], “,” }
-         */
+    private ArrayList < Expression > exprOperands = new ArrayList < Expression > ();
+    private ArrayList < TokenType > exprOperators = new ArrayList < TokenType > ();
+    private ArrayList < ExpressionFrame > exprFrames = new ArrayList < ExpressionFrame > ();
+    private ExpressionFrame exprTop = new ExpressionFrame(FrameKind.TOP, 0);
 
-        Expression LHS = parseFactor();
-        
-        while (checkToken(TokenType.MULT_TOKEN) 
-            || checkToken(TokenType.DIVIDE_TOKEN)) {
-            TokenType op = scanner.getNextToken().getType();
-            Expression RHS = parseFactor();
-            LHS = new BinaryExpression(LHS, op, RHS);
-        }
-        
-        return LHS;
-    }
-    private Expression parseTerm2(Expression inLHS) throws Exception {
-        /* term’ → {mulop factor}
-         * First(term’) → { ε. *, / }
-         * Follow(term’) → { +, -, <, <=, >, >=, ==, !=, ;, ), ], “,” }
-         */
+    private Expression parseExpression() throws Exception {
+        // The stacks and the top frame are reused from one expression to the next
+        ArrayList < Expression > operands = exprOperands;
+        ArrayList < TokenType > operators = exprOperators;
+        ArrayList < ExpressionFrame > frames = exprFrames;
+        operands.clear();
+        operators.clear();
+        frames.clear();
+        ExpressionFrame frame = exprTop;
+        frame.targets = null;
+        frame.seenRelop = false;
+        ExprState state = ExprState.START;
+
+        while (true) {
+            TokenType type = scanner().viewNextToken().getType();
+
+            switch (state) {
+            case START:
+                // First operand of an expression, which may be assigned to
+                if (type == TokenType.IDENT_TOKEN) {
+                    String ID = (String) scanner().getNextToken().getData();
+                    type = scanner().viewNextToken().getType();
+                    if (type == TokenType.ASSIGN_TOKEN) {
+                        matchToken(TokenType.ASSIGN_TOKEN);
+                        frame.addTarget(new VarExpression(ID));
+                    } else if (type == TokenType.LEFT_BRACKET_TOKEN) {
+                        matchToken(TokenType.LEFT_BRACKET_TOKEN);
+                        frames.add(frame);
+                        frame = new ExpressionFrame(FrameKind.INDEX_VAR, operators.size());
+                        frame.name = ID;
+                    } else if (type == TokenType.LEFT_PAREN_TOKEN) {
+                        matchToken(TokenType.LEFT_PAREN_TOKEN);
+                        ExpressionFrame call = startCall(ID, true, operators.size());
+                        if (call != null) {
+                            frames.add(frame);
+                            frame = call;
+                        } else {
+                            operands.add(new CallExpression(new VarExpression(ID), new ArrayList < Expression > ()));
+                            state = ExprState.END;
+                        }
+                    } else if (isOperator(type) || isFollow(type)
+                        || type == TokenType.IDENT_TOKEN || type == TokenType.NUM_TOKEN) {
+                        operands.add(new VarExpression(ID));
+                        state = ExprState.OPERATOR;
+                    } else {
+                        throw new Exception("Syntax error: expression' expects = [ or (." + locate());
+                    }
+                } else if (type == TokenType.NUM_TOKEN) {
+                    operands.add(new NumExpression((int) scanner().getNextToken().getData()));
+                    state = ExprState.OPERATOR;
+                } else if (type == TokenType.LEFT_PAREN_TOKEN) {
+                    matchToken(TokenType.LEFT_PAREN_TOKEN);
+                    frames.add(frame);
+                    frame = new ExpressionFrame(FrameKind.PAREN, operators.size());
+                } else {
+                    throw new Exception("Syntax error: expression expects ID, NUM, or (." + locate());
+                }
+                break;
+
+            case OPERAND:
+                // A factor, after an operator
+                if (type == TokenType.IDENT_TOKEN) {
+                    String ID = (String) scanner().getNextToken().getData();
+                    type = scanner().viewNextToken().getType();
+                    if (type == TokenType.LEFT_PAREN_TOKEN) {
+                        matchToken(TokenType.LEFT_PAREN_TOKEN);
+                        ExpressionFrame call = startCall(ID, false, operators.size());
+                        if (call != null) {
+                            frames.add(frame);
+                            frame = call;
+                            state = ExprState.START;
+                        } else {
+                            operands.add(new CallExpression(new VarExpression(ID), new ArrayList < Expression > ()));
+                            state = ExprState.OPERATOR;
+                        }
+                    } else if (type == TokenType.LEFT_BRACKET_TOKEN) {
+                        matchToken(TokenType.LEFT_BRACKET_TOKEN);
+                        frames.add(frame);
+                        frame = new ExpressionFrame(FrameKind.INDEX, operators.size());
+                        frame.name = ID;
+                        state = ExprState.START;
+                    } else if (isOperator(type) || isFollow(type)) {
+                        operands.add(new VarExpression(ID));
+                        state = ExprState.OPERATOR;
+                    } else {
+                        throw new Exception("Error: parseVarCall expected ( [ ] ) ; , or an operator." + locate());
+                    }
+                } else if (type == TokenType.NUM_TOKEN) {
+                    operands.add(new NumExpression((int) scanner().getNextToken().getData()));
+                    state = ExprState.OPERATOR;
+                } else if (type == TokenType.LEFT_PAREN_TOKEN) {
+                    matchToken(TokenType.LEFT_PAREN_TOKEN);
+                    frames.add(frame);
+                    frame = new ExpressionFrame(FrameKind.PAREN, operators.size());
+                    state = ExprState.START;
+                } else {
+                    throw new Exception("Error: parseFactor expected ( ID or NUM" + locate());
+                }
+                break;
 
-        Expression LHS = inLHS;
-        
-        while (checkToken(TokenType.MULT_TOKEN) 
-            || checkToken(TokenType.DIVIDE_TOKEN)) {
-            TokenType op = scanner.getNextToken().getType();
-            Expression RHS = parseFactor();
-            LHS = new BinaryExpression(LHS, op, RHS);
-        }
-        
-        return LHS;
-    }
-    private Expression parseFactor() throws Exception {
-        /* factor → “(” expression “)” | ID varcall | NUM
-         * First(factor) → { (, ID, NUM }
-         * Follow(factor) → { *, /, +, -, <, <=, >, >=, ==, !=, ;, ), ], “,” }
-         */
+            case OPERATOR:
+                if (isOperator(type)) {
+                    boolean nonAssociative = NON_ASSOCIATIVE[type.ordinal()];
+                    if (nonAssociative && frame.seenRelop) {
+                        throw new Exception("Error: simple-expression' expected ; ) ] or ," + locate());
+                    }
+                    reduce(operands, operators, frame.operatorBase, PRECEDENCE[type.ordinal()]);
+                    operators.add(scanner().getNextToken().getType());
+                    frame.seenRelop |= nonAssociative;
+                    state = ExprState.OPERAND;
+                } else if (isFollow(type)) {
+                    state = ExprState.END;
+                } else {
+                    throw new Exception("Error: simple-expression' expected ; ) ] or ," + locate());
+                }
+                break;
+
+            case END:
+                reduce(operands, operators, frame.operatorBase, 0);
+                Expression value = operands.remove(operands.size() - 1);
+                if (frame.targets != null) {
+                    for (int i = frame.targets.size() - 1; i >= 0; i--) {
+                        value = new AssignExpression(frame.targets.get(i), value);
+                    }
+                }
 
-        Expression F = null;
-        
-        if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
-            matchToken(TokenType.LEFT_PAREN_TOKEN);
-            F = parseExpression();
-            matchToken(TokenType.RIGHT_PAREN_TOKEN);
-        } 
-        else if (checkToken(TokenType.IDENT_TOKEN)) {
-            String ID = (String) scanner.getNextToken().getData();
-            F = parseVarCall(new VarExpression(ID));
-        } 
-        else if (checkToken(TokenType.NUM_TOKEN)) {
-            int NUM = (int) scanner.getNextToken().getData();
-            F = new NumExpression(NUM);
-        }
-        else {
-            throw new Exception("Error: parseFactor expected ( ID or NUM");
-        }
-        
-        return F;
-    }
-    private Expression parseVarCall(VarExpression ID) throws Exception {
-        /* varcall → “(“ args “)” | “[“ expression “]” | ε
-         * First(varcall) → { (, [, ε }
-         * Follow(varcall) → { *, /, +, -, <, <=, >, >=, ==, !=, ;, ), ], “,”  }
-         */
+                if (frame.kind == FrameKind.TOP) {
+                    return value;
+                }
+                if (frame.kind == FrameKind.ARG) {
+                    frame.args.add(value);
+                    if (type == TokenType.COMMA_TOKEN) {
+                        // Reuse the frame for the next argument
+                        matchToken(TokenType.COMMA_TOKEN);
+                        frame.targets = null;
+                        frame.seenRelop = false;
+                        state = ExprState.START;
+                        break;
+                    }
+                    matchToken(TokenType.RIGHT_PAREN_TOKEN);
+                    ExpressionFrame call = frame;
+                    frame = frames.remove(frames.size() - 1);
+                    operands.add(new CallExpression(new VarExpression(call.name), call.args));
+                    // A call that starts an expression ends it
+                    state = call.callStarts ? ExprState.END : ExprState.OPERATOR;
+                    break;
+                }
 
-        Expression varcall = null;
-        
-        if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
-            matchToken(TokenType.LEFT_PAREN_TOKEN);
-            ArrayList < Expression > args = parseArgs();
-            matchToken(TokenType.RIGHT_PAREN_TOKEN);
-            varcall = new CallExpression(ID, args);
-        } 
-        else if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
-            matchToken(TokenType.LEFT_BRACKET_TOKEN);
-            varcall = parseExpression();
-            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
-        } 
-        else if (checkToken(TokenType.MULT_TOKEN) 
-            || checkToken(TokenType.DIVIDE_TOKEN) 
-            || checkToken(TokenType.PLUS_TOKEN) 
-            || checkToken(TokenType.MINUS_TOKEN) 
-            || checkToken(TokenType.LESS_TOKEN) 
-            || checkToken(TokenType.GREATER_TOKEN) 
-            || checkToken(TokenType.LESS_EQUAL_TOKEN) 
-            || checkToken(TokenType.GREATER_EQUAL_TOKEN) 
-            || checkToken(TokenType.EQUAL_TOKEN) 
-            || checkToken(TokenType.NOT_EQUAL_TOKEN) 
-            || checkToken(TokenType.SEMI_TOKEN) 
-            || checkToken(TokenType.RIGHT_PAREN_TOKEN) 
-            || checkToken(TokenType.RIGHT_BRACKET_TOKEN) 
-            || checkToken(TokenType.COMMA_TOKEN)) {
-            varcall = ID;
-        }
-        else {
-            throw new Exception("Error: parseVarCall expected ( [ ] ) ; , or an operator.");
+                FrameKind kind = frame.kind;
+                String ID = frame.name;
+                frame = frames.remove(frames.size() - 1);
+                if (kind == FrameKind.PAREN) {
+                    matchToken(TokenType.RIGHT_PAREN_TOKEN);
+                    operands.add(value);
+                    state = ExprState.OPERATOR;
+                } else if (kind == FrameKind.INDEX) {
+                    matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+                    operands.add(new VarExpression(ID, value));
+                    state = ExprState.OPERATOR;
+                } else {
+                    // ID [ expression ] expression’’
+                    matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+                    VarExpression var = new VarExpression(ID, value);
+                    type = scanner().viewNextToken().getType();
+                    if (type == TokenType.ASSIGN_TOKEN) {
+                        matchToken(TokenType.ASSIGN_TOKEN);
+                        frame.addTarget(var);
+                        state = ExprState.START;
+                    } else if (isOperator(type) || isFollow(type)) {
+                        operands.add(var);
+                        state = ExprState.OPERATOR;
+                    } else {
+                        throw new Exception("Error: expression'' expects an operator." + locate());
+                    }
+                }
+                break;
+            }
         }
-        
-        return varcall;
     }
-    private ArrayList <Expression> parseArgs() throws Exception {
-        /* args → arg-list | ε
-         * First(args) → { ID, NUM, (, ε }
-         * Follow(args) → { ) }
-         */
 
-        ArrayList < Expression > args = new ArrayList < Expression > ();
-        
-        if (checkToken(TokenType.IDENT_TOKEN) 
-        || checkToken(TokenType.NUM_TOKEN) 
-        || checkToken(TokenType.LEFT_PAREN_TOKEN)) {
-            args = parseArgList();
-        } else if (!checkToken(TokenType.RIGHT_PAREN_TOKEN)){
-            throw new Exception("Error: parseArgs expects )");
+    // After "ID (": a frame for the call's first argument, or null after "ID ( )"
+    private ExpressionFrame startCall(String ID, boolean callStarts, int operatorBase) throws Exception {
+        TokenType type = scanner().viewNextToken().getType();
+        if (type == TokenType.IDENT_TOKEN
+            || type == TokenType.NUM_TOKEN
+            || type == TokenType.LEFT_PAREN_TOKEN) {
+            ExpressionFrame frame = new ExpressionFrame(FrameKind.ARG, operatorBase);
+            frame.name = ID;
+            frame.args = new ArrayList < Expression > ();
+            frame.callStarts = callStarts;
+            return frame;
+        } else if (type != TokenType.RIGHT_PAREN_TOKEN) {
+            throw new Exception("Error: parseArgs expects )" + locate());
         }
-        
-        return args;
+        matchToken(TokenType.RIGHT_PAREN_TOKEN);
+        return null;
     }
-    private ArrayList<Expression> parseArgList() throws Exception {
-        /* arg-list → expression {, expression}
-         * First(arg-list) → { ID, NUM, ( }
-         * Follow(arg-list) → { ) }
-         */
 
-        ArrayList < Expression > argList = new ArrayList < Expression > ();
-
-        Expression nextExp = parseExpression();
-        argList.add(nextExp);
-
-        while (checkToken(TokenType.COMMA_TOKEN)) {
-            matchToken(TokenType.COMMA_TOKEN);
-            nextExp = parseExpression();
-            argList.add(nextExp);
+    // Pops operators binding at least as tightly as precedence into BinaryExpressions
+    private void reduce(ArrayList < Expression > operands, ArrayList < TokenType > operators, int operatorBase, int precedence) {
+        while (operators.size() > operatorBase
+            && PRECEDENCE[operators.get(operators.size() - 1).ordinal()] >= precedence) {
+            TokenType op = operators.remove(operators.size() - 1);
+            Expression RHS = operands.remove(operands.size() - 1);
+            Expression LHS = operands.remove(operands.size() - 1);
+            operands.add(new BinaryExpression(LHS, op, RHS));
         }
-
-        return argList;
     }
 
     /* Print AST */
     public void printTree(FileWriter file) throws IOException {
         outputFile = file;
-        program.print();
+        printAST(program);
     }
     public void printAST(Program root) throws IOException{
-        root.print();
+        new AstPrinter(this, outputFile).print(root);
+    }
+
+    /* Binary AST, for tools that read the tree back in */
+    public void writeTree(Program root, OutputStream out) throws IOException {
+        new AstCache(this).writeTree(root, out);
+    }
+    public Program readTree(InputStream in) throws IOException {
+        return new AstCache(this).readTree(in);
     }
 }
\ No newline at end of file
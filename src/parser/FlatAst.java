@@ -0,0 +1,185 @@
+package parser;
+
+import lowlevel.CodeItem;
+import scanner.IdentTable;
+
+public final class FlatAst {
+    /*
+        A compact AST: every node is an index into a set of parallel arrays
+        instead of an object.
+
+        The object AST in CMinusParser is built from inner classes, so every
+        node keeps the whole parser alive, and each CompoundStmt carries two
+        ArrayLists. Here a node costs one byte and five ints, and the whole
+        tree is six arrays that can be dropped at once.
+
+        Fields, by node kind (NONE where unused):
+            kind       node kind, one of the constants below
+            child0     first child, or the head of a list of children
+            child1     second child, or the head of a second list
+            child2     third child
+            tokenRef   the token the node stands for: an IdentTable id for
+                       names, the value of a NUM, or a TokenType ordinal for
+                       an operator
+            next       next sibling when the node is in a list
+
+        Kind               tokenRef     child0          child1          child2
+        PROGRAM            -            decls           -               -
+        VAR_DECL           name         size (NUM)      -               -
+        FUN_DECL/VOID_..   name         params          body            -
+        PARAM/ARRAY_PARAM  name         -               -               -
+        COMPOUND           -            local decls     statements      -
+        EXPRESSION_STMT    -            expression      -               -
+        SELECTION          -            condition       then            else
+        ITERATION          -            condition       body            -
+        RETURN             -            value           -               -
+        ASSIGN             -            variable        value           -
+        BINARY             operator     left            right           -
+        CALL               name         args            -               -
+        NUM                value        -               -               -
+        VAR                name         index           -               -
+
+        An empty statement (just ";") is an EXPRESSION_STMT with no
+        expression. FlatParser builds these trees and FlatCodeGenerator
+        walks them to produce the same low-level code as
+        CMinusParser.Program.genLLCode().
+     */
+
+    public static final int NONE = -1;
+
+    public static final int PROGRAM = 0;
+    public static final int VAR_DECL = 1;
+    public static final int FUN_DECL = 2;
+    public static final int VOID_FUN_DECL = 3;
+    public static final int PARAM = 4;
+    public static final int ARRAY_PARAM = 5;
+    public static final int COMPOUND = 6;
+    public static final int EXPRESSION_STMT = 7;
+    public static final int SELECTION = 8;
+    public static final int ITERATION = 9;
+    public static final int RETURN = 10;
+    public static final int ASSIGN = 11;
+    public static final int BINARY = 12;
+    public static final int CALL = 13;
+    public static final int NUM = 14;
+    public static final int VAR = 15;
+
+    private byte[] kind;
+    private int[] child0;
+    private int[] child1;
+    private int[] child2;
+    private int[] tokenRef;
+    private int[] next;
+    private int count;
+    private int root;
+    private IdentTable identTable;
+
+    public FlatAst(IdentTable table) {
+        this(table, 256);
+    }
+
+    public FlatAst(IdentTable table, int capacity) {
+        kind = new byte[capacity];
+        child0 = new int[capacity];
+        child1 = new int[capacity];
+        child2 = new int[capacity];
+        tokenRef = new int[capacity];
+        next = new int[capacity];
+        count = 0;
+        root = NONE;
+        identTable = table;
+    }
+
+    // Adds a node and returns its index
+    int add(int nodeKind, int nodeTokenRef, int nodeChild0, int nodeChild1, int nodeChild2) {
+        if(count == kind.length){
+            grow(count * 2);
+        }
+        kind[count] = (byte) nodeKind;
+        tokenRef[count] = nodeTokenRef;
+        child0[count] = nodeChild0;
+        child1[count] = nodeChild1;
+        child2[count] = nodeChild2;
+        next[count] = NONE;
+        return count++;
+    }
+
+    void setNext(int node, int sibling) {
+        next[node] = sibling;
+    }
+
+    void setRoot(int node) {
+        root = node;
+    }
+
+    private void grow(int newCapacity) {
+        byte[] newKind = new byte[newCapacity];
+        System.arraycopy(kind, 0, newKind, 0, count);
+        kind = newKind;
+        child0 = copy(child0, newCapacity);
+        child1 = copy(child1, newCapacity);
+        child2 = copy(child2, newCapacity);
+        tokenRef = copy(tokenRef, newCapacity);
+        next = copy(next, newCapacity);
+    }
+
+    private int[] copy(int[] field, int newCapacity) {
+        int[] newField = new int[newCapacity];
+        System.arraycopy(field, 0, newField, 0, count);
+        return newField;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public IdentTable getIdentTable() {
+        return identTable;
+    }
+
+    public int getKind(int node) {
+        return kind[node];
+    }
+
+    public int getChild0(int node) {
+        return child0[node];
+    }
+
+    public int getChild1(int node) {
+        return child1[node];
+    }
+
+    public int getChild2(int node) {
+        return child2[node];
+    }
+
+    public int getTokenRef(int node) {
+        return tokenRef[node];
+    }
+
+    public int getNext(int node) {
+        return next[node];
+    }
+
+    // Name of a node whose tokenRef is an identifier
+    public String getName(int node) {
+        return identTable.getName(tokenRef[node]);
+    }
+
+    // Number of nodes in the list starting at head
+    public int listLength(int head) {
+        int length = 0;
+        for(int node = head; node != NONE; node = next[node]){
+            length++;
+        }
+        return length;
+    }
+
+    public CodeItem genLLCode() throws Exception {
+        return new FlatCodeGenerator(this).genProgram();
+    }
+}
@@ -0,0 +1,509 @@
+package parser;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+import lowlevel.*;
+import scanner.Token.TokenType;
+
+class FlatCodeGenerator {
+    /*
+        Walks a FlatAst and generates low-level code.
+
+        One visit method per kind of node, dispatched on the node's kind.
+        Expressions return the register that holds their value instead of
+        storing it in the node. The code is the same, operation for
+        operation and register for register, as the genLLCode() methods of
+        the CMinusParser AST classes.
+     */
+
+    private static final int NONE = FlatAst.NONE;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private FlatAst ast;
+    // Global variables declared so far, and which of them are arrays
+    private HashMap<String, Integer> symbolTable = new HashMap<String, Integer>();
+    private HashSet<String> globalArrays = new HashSet<String>();
+    // Local arrays in scope in the function being generated, by frame offset
+    private HashMap<String, Integer> frameOffsets = new HashMap<String, Integer>();
+
+    FlatCodeGenerator(FlatAst ast) {
+        this.ast = ast;
+    }
+
+    CodeItem genProgram() throws Exception {
+        CodeItem headItem = null;
+        CodeItem lastItem = null;
+
+        for(int decl = ast.getChild0(ast.getRoot()); decl != NONE; decl = ast.getNext(decl)){
+            CodeItem item;
+            if(ast.getKind(decl) == FlatAst.VAR_DECL){
+                symbolTable.put(ast.getName(decl), symbolTable.size());
+                if(ast.getChild0(decl) != NONE){
+                    globalArrays.add(ast.getName(decl));
+                }
+                item = visitVarDecl(decl);
+            } else {
+                item = visitFunDecl(decl);
+            }
+
+            if(headItem == null){
+                headItem = item;
+            } else {
+                lastItem.setNextItem(item);
+            }
+            lastItem = item;
+        }
+
+        return headItem;
+    }
+
+    private CodeItem visitVarDecl(int decl) {
+        if(ast.getChild0(decl) != NONE){
+            return new Data(Data.TYPE_INT, ast.getName(decl), true, ast.getTokenRef(ast.getChild0(decl)));
+        }
+        return new Data(Data.TYPE_INT, ast.getName(decl));
+    }
+
+    private CodeItem visitFunDecl(int decl) throws Exception {
+        int firstParamNode = ast.getChild0(decl);
+        FuncParam firstParam = null;
+        if(firstParamNode != NONE){
+            firstParam = new FuncParam(Data.TYPE_INT, ast.getName(firstParamNode),
+                ast.getKind(firstParamNode) == FlatAst.ARRAY_PARAM);
+        }
+
+        int type = (ast.getKind(decl) == FlatAst.VOID_FUN_DECL) ? Data.TYPE_VOID : Data.TYPE_INT;
+        Function func = new Function(type, ast.getName(decl), firstParam);
+
+        FuncParam lastParam = firstParam;
+        for(int param = firstParamNode; param != NONE; param = ast.getNext(param)){
+            func.getTable().put(ast.getName(param), func.getNewRegNum());
+
+            if(param != firstParamNode){
+                FuncParam nextParam = new FuncParam(Data.TYPE_INT, ast.getName(param),
+                    ast.getKind(param) == FlatAst.ARRAY_PARAM);
+                lastParam.setNextParam(nextParam);
+                lastParam = nextParam;
+            }
+        }
+
+        func.createBlock0();
+        BasicBlock block = new BasicBlock(func);
+
+        func.appendBlock(block);
+        func.setCurrBlock(block);
+
+        visitCompound(ast.getChild1(decl), func);
+
+        func.appendBlock(func.getReturnBlock());
+
+        BasicBlock ucBlock = func.getFirstUnconnectedBlock();
+        if(ucBlock != null){
+            func.appendBlock(ucBlock);
+        }
+
+        return func;
+    }
+
+    private void visitStatement(int stmt, Function func) throws Exception {
+        switch(ast.getKind(stmt)){
+            case FlatAst.EXPRESSION_STMT:
+                // An empty statement has no code
+                if(ast.getChild0(stmt) != NONE){
+                    visitExpression(ast.getChild0(stmt), func);
+                }
+                break;
+            case FlatAst.COMPOUND:
+                visitCompound(stmt, func);
+                break;
+            case FlatAst.SELECTION:
+                visitSelection(stmt, func);
+                break;
+            case FlatAst.ITERATION:
+                visitIteration(stmt, func);
+                break;
+            case FlatAst.RETURN:
+                visitReturn(stmt, func);
+                break;
+            default:
+                throw new CodeGenerationException("Not a statement: node " + stmt);
+        }
+    }
+
+    private void visitCompound(int stmt, Function func) throws Exception {
+        // Local decls go in the function's symbol table (local arrays in
+        // frameOffsets, with their space in the stack frame) until the
+        // closing brace, hiding any outer variable of the same name
+        HashMap<String, Integer> localTable = func.getTable();
+        HashMap<String, Integer> hidden = null;
+        HashMap<String, Integer> hiddenArrays = null;
+        for(int decl = ast.getChild0(stmt); decl != NONE; decl = ast.getNext(decl)){
+            if(hidden == null){
+                hidden = new HashMap<String, Integer>();
+                hiddenArrays = new HashMap<String, Integer>();
+            }
+            String name = ast.getName(decl);
+            Integer outer;
+            Integer outerArray;
+            if(ast.getChild0(decl) != NONE){
+                outerArray = frameOffsets.put(name, func.getFrameSize());
+                func.setFrameSize(func.getFrameSize() + 4 * ast.getTokenRef(ast.getChild0(decl)));
+                outer = localTable.remove(name);
+            } else {
+                outer = localTable.put(name, func.getNewRegNum());
+                outerArray = frameOffsets.remove(name);
+            }
+            if(!hidden.containsKey(name)){
+                hidden.put(name, outer);
+                hiddenArrays.put(name, outerArray);
+            }
+        }
+
+        for(int inner = ast.getChild1(stmt); inner != NONE; inner = ast.getNext(inner)){
+            visitStatement(inner, func);
+        }
+
+        if(hidden != null){
+            for(String name : hidden.keySet()){
+                restore(localTable, name, hidden.get(name));
+                restore(frameOffsets, name, hiddenArrays.get(name));
+            }
+        }
+    }
+
+    private static void restore(HashMap<String, Integer> table, String name, Integer outer) {
+        if(outer == null){
+            table.remove(name);
+        } else {
+            table.put(name, outer);
+        }
+    }
+
+    private void visitSelection(int stmt, Function func) throws Exception {
+        BasicBlock currBlock = func.getCurrBlock();
+
+        int condition = visitExpression(ast.getChild0(stmt), func);
+
+        BasicBlock ifBlock = new BasicBlock(func);
+        BasicBlock elseBlock = null;
+        int elseSequence = ast.getChild2(stmt);
+        if(elseSequence != NONE){
+            elseBlock = new BasicBlock(func);
+        }
+        BasicBlock postBlock = new BasicBlock(func);
+
+        // If the condition is false, jump to the else block (if there is one) or the post block
+        Operation branchEqualOp = new Operation(Operation.OperationType.BEQ, currBlock);
+        branchEqualOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, condition));
+        branchEqualOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+        branchEqualOp.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK, elseBlock == null ? postBlock.getBlockNum() : elseBlock.getBlockNum()));
+        currBlock.appendOper(branchEqualOp);
+
+        func.appendToCurrentBlock(ifBlock);
+        func.setCurrBlock(ifBlock);
+        visitStatement(ast.getChild1(stmt), func);
+
+        func.appendToCurrentBlock(postBlock);
+
+        if(elseSequence != NONE){
+            func.setCurrBlock(elseBlock);
+            visitStatement(elseSequence, func);
+
+            Operation jumpOp = new Operation(Operation.OperationType.JMP, elseBlock);
+            jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.BLOCK, postBlock.getBlockNum()));
+            func.getCurrBlock().appendOper(jumpOp);
+            func.appendUnconnectedBlock(elseBlock);
+        }
+
+        func.setCurrBlock(postBlock);
+    }
+
+    private void visitIteration(int stmt, Function func) throws Exception {
+        int conditionNode = ast.getChild0(stmt);
+        if(ast.getKind(conditionNode) == FlatAst.NUM && ast.getTokenRef(conditionNode) != 0){
+            // while on a nonzero constant: the test on the way in is skipped. The one
+            // at the bottom stays, so the code after the loop and the function's exit
+            // are still reachable from the loop.
+            BasicBlock sequenceBlock = new BasicBlock(func);
+            BasicBlock postBlock = new BasicBlock(func);
+            func.appendToCurrentBlock(sequenceBlock);
+            func.setCurrBlock(sequenceBlock);
+            visitStatement(ast.getChild1(stmt), func);
+
+            int condition = visitExpression(conditionNode, func);
+            Operation jumpOp = new Operation(Operation.OperationType.BNE, sequenceBlock);
+            jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, condition));
+            jumpOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+            jumpOp.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK, sequenceBlock.getBlockNum()));
+            func.getCurrBlock().appendOper(jumpOp);
+
+            func.appendToCurrentBlock(postBlock);
+            func.setCurrBlock(postBlock);
+            return;
+        }
+
+        BasicBlock postBlock = new BasicBlock(func);
+
+        int condition = visitExpression(ast.getChild0(stmt), func);
+
+        Operation branchEqualOp = new Operation(Operation.OperationType.BEQ, postBlock);
+        branchEqualOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, condition));
+        branchEqualOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+        branchEqualOp.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK, postBlock.getBlockNum()));
+        func.getCurrBlock().appendOper(branchEqualOp);
+
+        BasicBlock sequenceBlock = new BasicBlock(func);
+        func.appendToCurrentBlock(sequenceBlock);
+        func.setCurrBlock(sequenceBlock);
+        visitStatement(ast.getChild1(stmt), func);
+
+        // The condition is generated again at the bottom of the loop
+        condition = visitExpression(ast.getChild0(stmt), func);
+        Operation jumpOp = new Operation(Operation.OperationType.BNE, sequenceBlock);
+        jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, condition));
+        jumpOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+        jumpOp.setSrcOperand(2, new Operand(Operand.OperandType.BLOCK, sequenceBlock.getBlockNum()));
+        func.getCurrBlock().appendOper(jumpOp);
+
+        func.appendToCurrentBlock(postBlock);
+        func.setCurrBlock(postBlock);
+    }
+
+    private void visitReturn(int stmt, Function func) throws Exception {
+        BasicBlock currBlock = func.getCurrBlock();
+
+        if(ast.getChild0(stmt) != NONE){
+            int value = visitExpression(ast.getChild0(stmt), func);
+            Operation returnOp = new Operation(Operation.OperationType.ASSIGN, currBlock);
+            returnOp.setDestOperand(0, new Operand(Operand.OperandType.MACRO, "RetReg"));
+            returnOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, value));
+            currBlock.appendOper(returnOp);
+        }
+
+        Operation jumpOp = new Operation(Operation.OperationType.JMP, currBlock);
+        jumpOp.setSrcOperand(0, new Operand(Operand.OperandType.BLOCK, func.getReturnBlock().getBlockNum()));
+        currBlock.appendOper(jumpOp);
+    }
+
+    // Generates code for an expression and returns the register holding its value
+    private int visitExpression(int expr, Function func) throws Exception {
+        switch(ast.getKind(expr)){
+            case FlatAst.ASSIGN:
+                return visitAssign(expr, func);
+            case FlatAst.BINARY:
+                return visitBinary(expr, func);
+            case FlatAst.CALL:
+                return visitCall(expr, func);
+            case FlatAst.NUM:
+                return visitNum(expr, func);
+            case FlatAst.VAR:
+                return visitVar(expr, func);
+            default:
+                throw new CodeGenerationException("Not an expression: node " + expr);
+        }
+    }
+
+    private int visitAssign(int expr, Function func) throws Exception {
+        int value = visitExpression(ast.getChild1(expr), func);
+        int var = ast.getChild0(expr);
+        String name = ast.getName(var);
+
+        BasicBlock currBlock = func.getCurrBlock();
+        if(ast.getChild0(var) != NONE){
+            // Array element: store to memory
+            Operation storeOp = new Operation(Operation.OperationType.STORE_I, currBlock);
+            storeOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, value));
+            setElementAddress(var, storeOp, 1, func);
+            currBlock.appendOper(storeOp);
+            return value;
+        }
+        if(func.getTable().containsKey(name)){
+            // Local: move into the variable's register
+            int reg = func.getTable().get(name);
+            Operation assignOp = new Operation(Operation.OperationType.ASSIGN, currBlock);
+            assignOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, reg));
+            assignOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, value));
+            currBlock.appendOper(assignOp);
+            return reg;
+        }
+
+        if(!symbolTable.containsKey(name)){
+            throw new Exception("Variable " + name + " doesn't exist.");
+        }
+
+        // Global: store to memory
+        Operation storeOp = new Operation(Operation.OperationType.STORE_I, currBlock);
+        storeOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, value));
+        storeOp.setSrcOperand(1, new Operand(Operand.OperandType.STRING, name));
+        currBlock.appendOper(storeOp);
+        return value;
+    }
+
+    private int visitBinary(int expr, Function func) throws Exception {
+        int lhs = visitExpression(ast.getChild0(expr), func);
+        int rhs = visitExpression(ast.getChild1(expr), func);
+        int reg = func.getNewRegNum();
+
+        Operation.OperationType type;
+        switch(TOKEN_TYPES[ast.getTokenRef(expr)]){
+            case PLUS_TOKEN:
+                type = Operation.OperationType.ADD_I;
+                break;
+            case MINUS_TOKEN:
+                type = Operation.OperationType.SUB_I;
+                break;
+            case MULT_TOKEN:
+                type = Operation.OperationType.MUL_I;
+                break;
+            case DIVIDE_TOKEN:
+                type = Operation.OperationType.DIV_I;
+                break;
+            case LESS_TOKEN:
+                type = Operation.OperationType.LT;
+                break;
+            case LESS_EQUAL_TOKEN:
+                type = Operation.OperationType.LTE;
+                break;
+            case GREATER_TOKEN:
+                type = Operation.OperationType.GT;
+                break;
+            case GREATER_EQUAL_TOKEN:
+                type = Operation.OperationType.GTE;
+                break;
+            case EQUAL_TOKEN:
+                type = Operation.OperationType.EQUAL;
+                break;
+            case NOT_EQUAL_TOKEN:
+                type = Operation.OperationType.NOT_EQUAL;
+                break;
+            default:
+                throw new CodeGenerationException("Not a binary operator: " + TOKEN_TYPES[ast.getTokenRef(expr)]);
+        }
+
+        BasicBlock currBlock = func.getCurrBlock();
+        Operation newOper = new Operation(type, currBlock);
+        newOper.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, lhs));
+        newOper.setSrcOperand(1, new Operand(Operand.OperandType.REGISTER, rhs));
+        newOper.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, reg));
+        currBlock.appendOper(newOper);
+        return reg;
+    }
+
+    private int visitCall(int expr, Function func) throws Exception {
+        BasicBlock currBlock = func.getCurrBlock();
+
+        // Each argument is computed, then passed
+        int paramNum = 0;
+        for(int arg = ast.getChild0(expr); arg != NONE; arg = ast.getNext(arg)){
+            int value = visitExpression(arg, func);
+            Operation passOp = new Operation(Operation.OperationType.PASS, currBlock);
+            passOp.setSrcOperand(0, new Operand(Operand.OperandType.REGISTER, value));
+            passOp.addAttribute(new Attribute("PARAM_NUM", paramNum + ""));
+            currBlock.appendOper(passOp);
+            paramNum++;
+        }
+
+        Operation callOp = new Operation(Operation.OperationType.CALL, currBlock);
+        callOp.setSrcOperand(0, new Operand(Operand.OperandType.STRING, ast.getName(expr)));
+        callOp.addAttribute(new Attribute("numParams", paramNum + ""));
+        currBlock.appendOper(callOp);
+
+        // The result comes back in RetReg
+        int register = func.getNewRegNum();
+        Operation assignOp = new Operation(Operation.OperationType.ASSIGN, func.getCurrBlock());
+        assignOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, register));
+        assignOp.setSrcOperand(0, new Operand(Operand.OperandType.MACRO, "RetReg"));
+        func.getCurrBlock().appendOper(assignOp);
+        return register;
+    }
+
+    private int visitNum(int expr, Function func) {
+        int register = func.getNewRegNum();
+        Operation assignOp = new Operation(Operation.OperationType.ASSIGN, func.getCurrBlock());
+        assignOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, register));
+        assignOp.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, ast.getTokenRef(expr)));
+        func.getCurrBlock().appendOper(assignOp);
+        return register;
+    }
+
+    private int visitVar(int expr, Function func) throws Exception {
+        String name = ast.getName(expr);
+        BasicBlock currentBlock = func.getCurrBlock();
+
+        // Array elements are loaded into a new register
+        if(ast.getChild0(expr) != NONE){
+            Operation loadOp = new Operation(Operation.OperationType.LOAD_I, currentBlock);
+            setElementAddress(expr, loadOp, 0, func);
+            int rNew = func.getNewRegNum();
+            loadOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
+            currentBlock.appendOper(loadOp);
+            return rNew;
+        }
+
+        // A whole local or global array stands for its address
+        if(frameOffsets.containsKey(name)){
+            return visitArrayAddress(new Operand(Operand.OperandType.MACRO, "ESP"), frameOffsets.get(name), func);
+        }
+
+        // Locals already live in a register; an array param's register holds its address
+        HashMap<String, Integer> localTable = func.getTable();
+        if(localTable.containsKey(name)){
+            return localTable.get(name);
+        }
+
+        if(!symbolTable.containsKey(name)){
+            throw new Exception("Variable " + name + " doesn't exist.");
+        }
+        if(globalArrays.contains(name)){
+            return visitArrayAddress(new Operand(Operand.OperandType.STRING, name), 0, func);
+        }
+
+        // Globals are loaded into a new register
+        int rNew = func.getNewRegNum();
+        Operation loadOp = new Operation(Operation.OperationType.LOAD_I, currentBlock);
+        loadOp.setSrcOperand(0, new Operand(Operand.OperandType.STRING, name));
+        loadOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
+        currentBlock.appendOper(loadOp);
+        return rNew;
+    }
+
+    private int visitArrayAddress(Operand base, int displacement, Function func) {
+        int rNew = func.getNewRegNum();
+        Operation addrOp = new Operation(Operation.OperationType.LOAD_ADDR, func.getCurrBlock());
+        addrOp.setSrcOperand(0, base);
+        addrOp.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, displacement));
+        addrOp.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, rNew));
+        func.getCurrBlock().appendOper(addrOp);
+        return rNew;
+    }
+
+    // Sets the address of element var as oper's src operands first on:
+    // base, byte displacement, and index register (see VarExpression.setElementAddress)
+    private void setElementAddress(int var, Operation oper, int first, Function func) throws Exception {
+        String name = ast.getName(var);
+        int indexNode = ast.getChild0(var);
+        int displacement = 0;
+        Operand index = null;
+        if(ast.getKind(indexNode) == FlatAst.NUM){
+            displacement = 4 * ast.getTokenRef(indexNode);
+        } else {
+            index = new Operand(Operand.OperandType.REGISTER, visitExpression(indexNode, func));
+        }
+
+        if(frameOffsets.containsKey(name)){
+            oper.setSrcOperand(first, new Operand(Operand.OperandType.MACRO, "ESP"));
+            displacement += frameOffsets.get(name);
+        } else if(func.getTable().containsKey(name)){
+            oper.setSrcOperand(first, new Operand(Operand.OperandType.REGISTER, func.getTable().get(name)));
+        } else if(symbolTable.containsKey(name)){
+            oper.setSrcOperand(first, new Operand(Operand.OperandType.STRING, name));
+        } else {
+            throw new Exception("Variable " + name + " doesn't exist.");
+        }
+        oper.setSrcOperand(first + 1, new Operand(Operand.OperandType.INTEGER, displacement));
+        if(index != null){
+            oper.setSrcOperand(first + 2, index);
+        }
+    }
+}
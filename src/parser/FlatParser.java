@@ -0,0 +1,530 @@
+package parser;
+
+import scanner.IdentTable;
+import scanner.LineIndex;
+import scanner.Scanner;
+import scanner.Token;
+import scanner.Token.TokenType;
+
+public class FlatParser {
+    /*
+        Recursive descent parser that builds a FlatAst.
+
+        Same grammar, same parse functions and same error messages as
+        CMinusParser; each function returns a node index instead of an
+        object. Lists (decls, params, statements, args) are chained through
+        the nodes' next fields.
+
+        Usually created through CMinusParser.parseFlat(), which hands over
+        the parser's scanner and identifier table.
+     */
+
+    private static final int NONE = FlatAst.NONE;
+
+    private Scanner scanner;
+    private IdentTable identTable;
+    private FlatAst ast;
+
+    public FlatParser(Scanner scanner, IdentTable table) {
+        this.scanner = scanner;
+        identTable = table;
+        ast = new FlatAst(table);
+    }
+
+    /* Helper functions */
+    private boolean checkToken(TokenType token) {
+        return scanner.viewNextToken().getType() == token;
+    }
+    private Token matchToken(TokenType token) throws Exception {
+        int position = scanner.viewNextPosition();
+        Token nextToken = scanner.getNextToken();
+        if (nextToken.getType() != token) {
+            throw new Exception("Error: Unexpected token" + locate(position) + ". Was expecting " + token.toString() + " but got " + nextToken.toString());
+        }
+        return nextToken;
+    }
+    private String locate() {
+        return locate(scanner.viewNextPosition());
+    }
+    private String locate(int position) {
+        LineIndex lines = scanner.getLineIndex();
+        if (position < 0 || lines == null) {
+            return "";
+        }
+        return " (" + lines.describe(position) + ")";
+    }
+    private int nameRef(Token token) {
+        return identTable.intern((String) token.getData());
+    }
+    private boolean checkRelop() {
+        return checkToken(TokenType.GREATER_EQUAL_TOKEN)
+            || checkToken(TokenType.GREATER_TOKEN)
+            || checkToken(TokenType.EQUAL_TOKEN)
+            || checkToken(TokenType.NOT_EQUAL_TOKEN)
+            || checkToken(TokenType.LESS_EQUAL_TOKEN)
+            || checkToken(TokenType.LESS_TOKEN);
+    }
+    private boolean checkExpressionEnd() {
+        return checkToken(TokenType.SEMI_TOKEN)
+            || checkToken(TokenType.RIGHT_PAREN_TOKEN)
+            || checkToken(TokenType.RIGHT_BRACKET_TOKEN)
+            || checkToken(TokenType.COMMA_TOKEN);
+    }
+
+    /* Parse Functions */
+    public FlatAst parse() throws Exception {
+        /* program -> decl {decl} */
+        int first = parseDecl();
+        int last = first;
+
+        while (checkToken(TokenType.INT_TOKEN)
+            || checkToken(TokenType.VOID_TOKEN)) {
+            int decl = parseDecl();
+            ast.setNext(last, decl);
+            last = decl;
+        }
+
+        if (!checkToken(TokenType.EOF_TOKEN)) {
+            throw new Exception("Parse error in parseProgram(): expected end of file." + locate());
+        }
+
+        ast.setRoot(ast.add(FlatAst.PROGRAM, 0, first, NONE, NONE));
+        return ast;
+    }
+
+    private int parseDecl() throws Exception {
+        /* decl -> void ID fun-decl | int ID decl' */
+        if (checkToken(TokenType.VOID_TOKEN)) {
+            matchToken(TokenType.VOID_TOKEN);
+            int name = nameRef(matchToken(TokenType.IDENT_TOKEN));
+            return parseFunDecl(FlatAst.VOID_FUN_DECL, name);
+        }
+        else if (checkToken(TokenType.INT_TOKEN)) {
+            matchToken(TokenType.INT_TOKEN);
+            int name = nameRef(matchToken(TokenType.IDENT_TOKEN));
+            return parseDecl2(name);
+        }
+        throw new Exception("Error: parseDecl() expects int or void." + locate());
+    }
+
+    private int parseFunDecl(int kind, int name) throws Exception {
+        /* fun-decl → “(” params “)” compound-stmt */
+        matchToken(TokenType.LEFT_PAREN_TOKEN);
+        int params = parseParams();
+        matchToken(TokenType.RIGHT_PAREN_TOKEN);
+        int content = parseCompoundStmt();
+        return ast.add(kind, name, params, content, NONE);
+    }
+
+    private int parseDecl2(int name) throws Exception {
+        /* decl’ → var-decl | fun-decl */
+        if (checkToken(TokenType.LEFT_BRACKET_TOKEN)
+        || checkToken(TokenType.SEMI_TOKEN)) {
+            return parseVarDecl(name);
+        }
+        else if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            return parseFunDecl(FlatAst.FUN_DECL, name);
+        }
+        throw new Exception("Error: parseDecl2 expects ; [ or (" + locate());
+    }
+
+    private int parseVarDecl(int name) throws Exception {
+        /* var-decl → [ “[“ NUM “]” ] ; */
+        if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
+            matchToken(TokenType.LEFT_BRACKET_TOKEN);
+            int size = (int) matchToken(TokenType.NUM_TOKEN).getData();
+            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+            matchToken(TokenType.SEMI_TOKEN);
+            return ast.add(FlatAst.VAR_DECL, name, ast.add(FlatAst.NUM, size, NONE, NONE, NONE), NONE, NONE);
+        }
+        else if (checkToken(TokenType.SEMI_TOKEN)) {
+            matchToken(TokenType.SEMI_TOKEN);
+            return ast.add(FlatAst.VAR_DECL, name, NONE, NONE, NONE);
+        }
+        throw new Exception("Error: parseVarDecl expects ; or [" + locate());
+    }
+
+    private int parseParams() throws Exception {
+        /* params → param-list | void */
+        if (checkToken(TokenType.INT_TOKEN)) {
+            return parseParamList();
+        }
+        else if (checkToken(TokenType.VOID_TOKEN)) {
+            matchToken(TokenType.VOID_TOKEN);
+            return NONE;
+        }
+        else if (checkToken(TokenType.RIGHT_PAREN_TOKEN)) {
+            return NONE;
+        }
+        throw new Exception("Error: parseParams expects int or void" + locate());
+    }
+
+    private int parseParamList() throws Exception {
+        /* param-list → param {, param} */
+        int first = parseParam();
+        int last = first;
+
+        while (checkToken(TokenType.COMMA_TOKEN)) {
+            matchToken(TokenType.COMMA_TOKEN);
+            int param = parseParam();
+            ast.setNext(last, param);
+            last = param;
+        }
+
+        return first;
+    }
+
+    private int parseParam() throws Exception {
+        /* param → int ID [“[“ “]”] */
+        matchToken(TokenType.INT_TOKEN);
+        int name = nameRef(matchToken(TokenType.IDENT_TOKEN));
+
+        if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
+            matchToken(TokenType.LEFT_BRACKET_TOKEN);
+            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+            return ast.add(FlatAst.ARRAY_PARAM, name, NONE, NONE, NONE);
+        }
+        else if (checkToken(TokenType.COMMA_TOKEN) || checkToken(TokenType.RIGHT_PAREN_TOKEN)) {
+            return ast.add(FlatAst.PARAM, name, NONE, NONE, NONE);
+        }
+        throw new Exception("Error: parseParam expected ( ) or ," + locate());
+    }
+
+    private int parseCompoundStmt() throws Exception {
+        /* compound-stmt → “{“ local-declarations statement-list “}” */
+        matchToken(TokenType.LEFT_BRACE_TOKEN);
+        int localDecls = parseLocalDecls();
+        int statements = parseStmtList();
+        matchToken(TokenType.RIGHT_BRACE_TOKEN);
+
+        return ast.add(FlatAst.COMPOUND, 0, localDecls, statements, NONE);
+    }
+
+    private int parseLocalDecls() throws Exception {
+        /* local-declarations → {int ID var-decl} */
+        int first = NONE;
+        int last = NONE;
+
+        while (checkToken(TokenType.INT_TOKEN)) {
+            matchToken(TokenType.INT_TOKEN);
+            int name = nameRef(matchToken(TokenType.IDENT_TOKEN));
+            int decl = parseVarDecl(name);
+            if (last == NONE) {
+                first = decl;
+            } else {
+                ast.setNext(last, decl);
+            }
+            last = decl;
+        }
+
+        return first;
+    }
+
+    private int parseStmtList() throws Exception {
+        /* statement-list → {statement} */
+        int first = NONE;
+        int last = NONE;
+
+        while (checkToken(TokenType.IDENT_TOKEN)
+            || checkToken(TokenType.NUM_TOKEN)
+            || checkToken(TokenType.LEFT_PAREN_TOKEN)
+            || checkToken(TokenType.SEMI_TOKEN)
+            || checkToken(TokenType.IF_TOKEN)
+            || checkToken(TokenType.WHILE_TOKEN)
+            || checkToken(TokenType.RETURN_TOKEN)) {
+            int statement = parseStatement();
+            if (last == NONE) {
+                first = statement;
+            } else {
+                ast.setNext(last, statement);
+            }
+            last = statement;
+        }
+
+        return first;
+    }
+
+    private int parseStatement() throws Exception {
+        /* statement → expression-stmt | compound-stmt | selection-stmt | iteration-stmt | return-stmt */
+        if (checkToken(TokenType.IDENT_TOKEN)
+        || checkToken(TokenType.NUM_TOKEN)
+        || checkToken(TokenType.LEFT_PAREN_TOKEN)
+        || checkToken(TokenType.SEMI_TOKEN)) {
+            return parseExpressionStmt();
+        }
+        else if (checkToken(TokenType.LEFT_BRACE_TOKEN)) {
+            return parseCompoundStmt();
+        }
+        else if (checkToken(TokenType.IF_TOKEN)) {
+            return parseSelectionStmt();
+        }
+        else if (checkToken(TokenType.WHILE_TOKEN)) {
+            return parseIterationStmt();
+        }
+        else if (checkToken(TokenType.RETURN_TOKEN)) {
+            return parseReturnStmt();
+        }
+        throw new Exception("Error: parseStatement expects beginning of statement." + locate());
+    }
+
+    private int parseExpressionStmt() throws Exception {
+        /* expression-stmt → [expression] ; */
+        if (checkToken(TokenType.IDENT_TOKEN)
+        || checkToken(TokenType.NUM_TOKEN)
+        || checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            int expression = parseExpression();
+            matchToken(TokenType.SEMI_TOKEN);
+            return ast.add(FlatAst.EXPRESSION_STMT, 0, expression, NONE, NONE);
+        }
+        else if (checkToken(TokenType.SEMI_TOKEN)) {
+            matchToken(TokenType.SEMI_TOKEN);
+            return ast.add(FlatAst.EXPRESSION_STMT, 0, NONE, NONE, NONE);
+        }
+        throw new Exception("Error: parseExpressionStmt expected ID, NUM, (, or ;" + locate());
+    }
+
+    private int parseSelectionStmt() throws Exception {
+        /* selection-stmt → if “(“ expression “)” statement [else statement] */
+        matchToken(TokenType.IF_TOKEN);
+        matchToken(TokenType.LEFT_PAREN_TOKEN);
+        int condition = parseExpression();
+        matchToken(TokenType.RIGHT_PAREN_TOKEN);
+        int ifSequence = parseStatement();
+
+        int elseSequence = NONE;
+        if (checkToken(TokenType.ELSE_TOKEN)) {
+            matchToken(TokenType.ELSE_TOKEN);
+            elseSequence = parseStatement();
+        }
+
+        return ast.add(FlatAst.SELECTION, 0, condition, ifSequence, elseSequence);
+    }
+
+    private int parseIterationStmt() throws Exception {
+        /* iteration-stmt → while “(” expression “)” statement */
+        matchToken(TokenType.WHILE_TOKEN);
+        matchToken(TokenType.LEFT_PAREN_TOKEN);
+        int condition = parseExpression();
+        matchToken(TokenType.RIGHT_PAREN_TOKEN);
+        int activity = parseStatement();
+
+        return ast.add(FlatAst.ITERATION, 0, condition, activity, NONE);
+    }
+
+    private int parseReturnStmt() throws Exception {
+        /* return-stmt → return [expression] ; */
+        matchToken(TokenType.RETURN_TOKEN);
+
+        int value;
+        if (checkToken(TokenType.IDENT_TOKEN)
+        || checkToken(TokenType.NUM_TOKEN)
+        || checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            value = parseExpression();
+        } else if (checkToken(TokenType.SEMI_TOKEN)) {
+            value = NONE;
+        } else {
+            throw new Exception("Error: return statement expected ID, NUM, ( or ;" + locate());
+        }
+
+        matchToken(TokenType.SEMI_TOKEN);
+
+        return ast.add(FlatAst.RETURN, 0, value, NONE, NONE);
+    }
+
+    private int parseExpression() throws Exception {
+        /* expression → ID expression’ | NUM simple-expression’ | (expression) simple-expression’ */
+        if (checkToken(TokenType.IDENT_TOKEN)) {
+            int name = nameRef(scanner.getNextToken());
+            return parseExpression2(name);
+        }
+        else if (checkToken(TokenType.NUM_TOKEN)) {
+            int num = (int) scanner.getNextToken().getData();
+            return parseSimpleExpr2(ast.add(FlatAst.NUM, num, NONE, NONE, NONE));
+        }
+        else if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            matchToken(TokenType.LEFT_PAREN_TOKEN);
+            int expression = parseExpression();
+            matchToken(TokenType.RIGHT_PAREN_TOKEN);
+            return parseSimpleExpr2(expression);
+        }
+        throw new Exception("Syntax error: expression expects ID, NUM, or (." + locate());
+    }
+
+    private int parseExpression2(int name) throws Exception {
+        /* expression’ → = expression | "["expression"]" expression’’ | (args) simple-expression’ | simple-expression’ */
+        if (checkToken(TokenType.ASSIGN_TOKEN)) {
+            matchToken(TokenType.ASSIGN_TOKEN);
+            int lhs = ast.add(FlatAst.VAR, name, NONE, NONE, NONE);
+            int rhs = parseExpression();
+            return ast.add(FlatAst.ASSIGN, 0, lhs, rhs, NONE);
+        }
+        else if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
+            matchToken(TokenType.LEFT_BRACKET_TOKEN);
+            int index = parseExpression();
+            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+            return parseExpression3(ast.add(FlatAst.VAR, name, index, NONE, NONE));
+        }
+        else if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            return parseVarCall(name);
+        }
+        else if (checkToken(TokenType.MULT_TOKEN)
+            || checkToken(TokenType.DIVIDE_TOKEN)
+            || checkToken(TokenType.PLUS_TOKEN)
+            || checkToken(TokenType.MINUS_TOKEN)
+            || checkRelop()
+            || checkToken(TokenType.IDENT_TOKEN)
+            || checkToken(TokenType.NUM_TOKEN)) {
+            return parseSimpleExpr2(ast.add(FlatAst.VAR, name, NONE, NONE, NONE));
+        }
+        else if (checkExpressionEnd()) {
+            return ast.add(FlatAst.VAR, name, NONE, NONE, NONE);
+        }
+        throw new Exception("Syntax error: expression' expects = [ or (." + locate());
+    }
+
+    private int parseExpression3(int lhs) throws Exception {
+        /* expression’’ → = expression | simple-expression’ */
+        if (checkToken(TokenType.ASSIGN_TOKEN)) {
+            matchToken(TokenType.ASSIGN_TOKEN);
+            int rhs = parseExpression();
+            return ast.add(FlatAst.ASSIGN, 0, lhs, rhs, NONE);
+        }
+        else if (checkToken(TokenType.MULT_TOKEN)
+            || checkToken(TokenType.DIVIDE_TOKEN)
+            || checkToken(TokenType.PLUS_TOKEN)
+            || checkToken(TokenType.MINUS_TOKEN)
+            || checkRelop()) {
+            return parseSimpleExpr2(lhs);
+        }
+        else if (!checkExpressionEnd()) {
+            throw new Exception("Error: expression'' expects an operator." + locate());
+        }
+        return lhs;
+    }
+
+    private int parseSimpleExpr2(int lhs) throws Exception {
+        /* simple-expression’ → additive-expression’ [relop additive expression] */
+        int expression = lhs;
+
+        if (checkToken(TokenType.MULT_TOKEN)
+        || checkToken(TokenType.DIVIDE_TOKEN)
+        || checkToken(TokenType.PLUS_TOKEN)
+        || checkToken(TokenType.MINUS_TOKEN)) {
+            expression = parseAdditiveExpr2(lhs);
+        }
+        if (checkRelop()) {
+            TokenType op = scanner.getNextToken().getType();
+            int rhs = parseAdditiveExpr();
+            expression = ast.add(FlatAst.BINARY, op.ordinal(), expression, rhs, NONE);
+        }
+
+        if (!checkExpressionEnd()) {
+            throw new Exception("Error: simple-expression' expected ; ) ] or ," + locate());
+        }
+
+        return expression;
+    }
+
+    private int parseAdditiveExpr() throws Exception {
+        /* additive-expression → term {addop term} */
+        return parseAdditiveExpr2(parseFactor());
+    }
+
+    private int parseAdditiveExpr2(int lhs) throws Exception {
+        /* additive-expression’ → term’ {addop term} */
+        int expression = parseTerm2(lhs);
+
+        while (checkToken(TokenType.PLUS_TOKEN)
+            || checkToken(TokenType.MINUS_TOKEN)) {
+            TokenType op = scanner.getNextToken().getType();
+            int rhs = parseTerm2(parseFactor());
+            expression = ast.add(FlatAst.BINARY, op.ordinal(), expression, rhs, NONE);
+        }
+
+        return expression;
+    }
+
+    private int parseTerm2(int lhs) throws Exception {
+        /* term’ → {mulop factor} */
+        int expression = lhs;
+
+        while (checkToken(TokenType.MULT_TOKEN)
+            || checkToken(TokenType.DIVIDE_TOKEN)) {
+            TokenType op = scanner.getNextToken().getType();
+            int rhs = parseFactor();
+            expression = ast.add(FlatAst.BINARY, op.ordinal(), expression, rhs, NONE);
+        }
+
+        return expression;
+    }
+
+    private int parseFactor() throws Exception {
+        /* factor → “(” expression “)” | ID varcall | NUM */
+        if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            matchToken(TokenType.LEFT_PAREN_TOKEN);
+            int expression = parseExpression();
+            matchToken(TokenType.RIGHT_PAREN_TOKEN);
+            return expression;
+        }
+        else if (checkToken(TokenType.IDENT_TOKEN)) {
+            return parseVarCall(nameRef(scanner.getNextToken()));
+        }
+        else if (checkToken(TokenType.NUM_TOKEN)) {
+            int num = (int) scanner.getNextToken().getData();
+            return ast.add(FlatAst.NUM, num, NONE, NONE, NONE);
+        }
+        throw new Exception("Error: parseFactor expected ( ID or NUM" + locate());
+    }
+
+    private int parseVarCall(int name) throws Exception {
+        /* varcall → “(“ args “)” | “[“ expression “]” | ε */
+        if (checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            matchToken(TokenType.LEFT_PAREN_TOKEN);
+            int args = parseArgs();
+            matchToken(TokenType.RIGHT_PAREN_TOKEN);
+            return ast.add(FlatAst.CALL, name, args, NONE, NONE);
+        }
+        else if (checkToken(TokenType.LEFT_BRACKET_TOKEN)) {
+            matchToken(TokenType.LEFT_BRACKET_TOKEN);
+            int index = parseExpression();
+            matchToken(TokenType.RIGHT_BRACKET_TOKEN);
+            return ast.add(FlatAst.VAR, name, index, NONE, NONE);
+        }
+        else if (checkToken(TokenType.MULT_TOKEN)
+            || checkToken(TokenType.DIVIDE_TOKEN)
+            || checkToken(TokenType.PLUS_TOKEN)
+            || checkToken(TokenType.MINUS_TOKEN)
+            || checkRelop()
+            || checkExpressionEnd()) {
+            return ast.add(FlatAst.VAR, name, NONE, NONE, NONE);
+        }
+        throw new Exception("Error: parseVarCall expected ( [ ] ) ; , or an operator." + locate());
+    }
+
+    private int parseArgs() throws Exception {
+        /* args → arg-list | ε */
+        if (checkToken(TokenType.IDENT_TOKEN)
+        || checkToken(TokenType.NUM_TOKEN)
+        || checkToken(TokenType.LEFT_PAREN_TOKEN)) {
+            return parseArgList();
+        } else if (!checkToken(TokenType.RIGHT_PAREN_TOKEN)) {
+            throw new Exception("Error: parseArgs expects )" + locate());
+        }
+        return NONE;
+    }
+
+    private int parseArgList() throws Exception {
+        /* arg-list → expression {, expression} */
+        int first = parseExpression();
+        int last = first;
+
+        while (checkToken(TokenType.COMMA_TOKEN)) {
+            matchToken(TokenType.COMMA_TOKEN);
+            int arg = parseExpression();
+            ast.setNext(last, arg);
+            last = arg;
+        }
+
+        return first;
+    }
+}
@@ -8,10 +8,14 @@
 
     Design the output format so that it can be easily 
     understood and easily read back in.
+
+    output.ast is the tree for people to read, output.astbin
+    the same tree in a binary form that readTree() loads back.
 */
 
 package parser;
 
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileNotFoundException;
@@ -24,9 +28,15 @@ public class Main {
 
         // Create parser
         CMinusParser myParser = new CMinusParser("parser/input.txt");
+        myParser.program = myParser.parse();
         myParser.printTree(outputFile);
 
         // Close output file
         outputFile.close();
+
+        // Write the machine-readable tree
+        FileOutputStream treeFile = new FileOutputStream("parser/output.astbin");
+        myParser.writeTree(myParser.program, treeFile);
+        treeFile.close();
     }
 }
@@ -1,6 +1,8 @@
 package parser;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import parser.CMinusParser.Program;
 
@@ -8,5 +10,7 @@ public interface Parser {
     public Program parse() throws Exception;
     public void printTree(FileWriter outputProgram) throws IOException;
     public void printAST(Program root) throws IOException;
+    public void writeTree(Program root, OutputStream out) throws IOException;
+    public Program readTree(InputStream in) throws IOException;
 }
 
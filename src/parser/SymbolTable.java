@@ -0,0 +1,180 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class SymbolTable {
+    /*
+        Scope stack for the semantic pass (CMinusParser.Program.analyze()).
+
+        Every declaration gets a Symbol. Globals are numbered in order of
+        declaration, and each function's params and locals are numbered
+        from 0 (their slot). A name maps to the Symbol of its innermost
+        declaration in scope; a Symbol remembers the one it shadows, so
+        leaving a scope puts the outer declarations back. Looking a name up
+        is one hash lookup, however deep the scopes are.
+
+        Functions are Symbols in the global scope too, with their return
+        type and param types. The runtime functions (input, output,
+        putchar, getchar) are declared outside the global scope, so a
+        program can declare its own.
+
+        The pass stores each variable's Symbol on its VarExpression, so
+        lowering needs no lookups by name at all.
+     */
+
+    public enum Type { INT, ARRAY, VOID }
+
+    public static final class Symbol {
+        private final String name;
+        private final Type type;
+        private final boolean global;
+        private final int slot;
+        // Depth of the scope it was declared in; -1 for the runtime functions
+        private final int depth;
+        // Param types of a function, null for a variable
+        private Type[] paramTypes;
+        // The declaration of the same name this one hides, while it is in scope
+        private Symbol shadowed;
+        // Register of a param or local, set when its declaration is lowered
+        private int regNum = -1;
+        // Where a local array starts in its function's stack frame, set the same way
+        private int frameOffset = -1;
+
+        Symbol(String name, Type type, boolean global, int slot, int depth) {
+            this.name = name;
+            this.type = type;
+            this.global = global;
+            this.slot = slot;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+        // A variable's type, or a function's return type
+        public Type getType() {
+            return type;
+        }
+        public boolean isGlobal() {
+            return global;
+        }
+        public boolean isFunction() {
+            return paramTypes != null;
+        }
+        public Type[] getParamTypes() {
+            return paramTypes;
+        }
+        public int getSlot() {
+            return slot;
+        }
+        public int getRegNum() {
+            return regNum;
+        }
+        public void setRegNum(int regNum) {
+            this.regNum = regNum;
+        }
+        public int getFrameOffset() {
+            return frameOffset;
+        }
+        public void setFrameOffset(int frameOffset) {
+            this.frameOffset = frameOffset;
+        }
+    }
+
+    private static final Type[] NO_PARAMS = new Type[0];
+
+    // Innermost declaration of each name in scope
+    private HashMap<String, Symbol> bindings = new HashMap<String, Symbol>();
+    // Symbols declared in the open scopes, innermost last, and where each scope starts in it
+    private ArrayList<Symbol> declared = new ArrayList<Symbol>();
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
+    private int globalCount = 0;
+    private int localCount = 0;
+    // The function whose body is being checked
+    private Symbol function;
+
+    public SymbolTable() {
+        declareRuntime("input", Type.INT, NO_PARAMS);
+        declareRuntime("output", Type.VOID, new Type[] {Type.INT});
+        declareRuntime("putchar", Type.INT, new Type[] {Type.INT});
+        declareRuntime("getchar", Type.INT, NO_PARAMS);
+    }
+
+    private void declareRuntime(String name, Type returnType, Type[] paramTypes) {
+        Symbol symbol = new Symbol(name, returnType, true, -1, -1);
+        symbol.paramTypes = paramTypes;
+        bindings.put(name, symbol);
+    }
+
+    // Opens a function's scope; its slots start again from 0
+    public void enterFunction(Symbol function) {
+        this.function = function;
+        localCount = 0;
+        enterScope();
+    }
+
+    public void exitFunction() {
+        exitScope();
+        function = null;
+    }
+
+    public Symbol getFunction() {
+        return function;
+    }
+
+    public void enterScope() {
+        if (depth == scopeStarts.length) {
+            int[] newStarts = new int[depth * 2];
+            System.arraycopy(scopeStarts, 0, newStarts, 0, depth);
+            scopeStarts = newStarts;
+        }
+        scopeStarts[depth++] = declared.size();
+    }
+
+    public void exitScope() {
+        int start = scopeStarts[--depth];
+        for (int i = declared.size() - 1; i >= start; i--) {
+            Symbol symbol = declared.remove(i);
+            if (symbol.shadowed == null) {
+                bindings.remove(symbol.name);
+            } else {
+                bindings.put(symbol.name, symbol.shadowed);
+            }
+        }
+    }
+
+    // Declares a variable in the innermost scope: a global outside any function, otherwise a local
+    public Symbol declare(String name, Type type) throws Exception {
+        Symbol symbol = (depth == 0)
+            ? new Symbol(name, type, true, globalCount++, depth)
+            : new Symbol(name, type, false, localCount++, depth);
+        bind(symbol);
+        return symbol;
+    }
+
+    // Declares a function, which is always global
+    public Symbol declareFunction(String name, Type returnType, Type[] paramTypes) throws Exception {
+        Symbol symbol = new Symbol(name, returnType, true, -1, depth);
+        symbol.paramTypes = paramTypes;
+        bind(symbol);
+        return symbol;
+    }
+
+    private void bind(Symbol symbol) throws Exception {
+        Symbol outer = bindings.get(symbol.name);
+        if (outer != null && outer.depth == depth) {
+            throw new Exception(symbol.name + " is already declared.");
+        }
+        symbol.shadowed = outer;
+        bindings.put(symbol.name, symbol);
+        declared.add(symbol);
+    }
+
+    // The declaration name refers to here, or null if there isn't one
+    public Symbol lookup(String name) {
+        return bindings.get(name);
+    }
+}
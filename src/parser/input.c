@@ -19,7 +19,7 @@ void printInt(int x) {
     putDigit(y);
 }
 
-void checkGuess(int guess){
+int checkGuess(int guess){
 	int response;
 	putchar (103);
 	putchar (117);
@@ -0,0 +1,477 @@
+package scanner;
+
+import scanner.CMinusScanner.StateType;
+import scanner.Token.TokenType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+class ByteLexer {
+    /*
+        The allocation-free core shared by the byte buffer scanners.
+
+        Each scan call finds the next token in [pos, limit), leaves its
+        offsets in tokenStart/tokenEnd and returns its type. Identifiers
+        that spell a keyword come back as the keyword's type. Nothing is
+        allocated: callers ask for identId() or numberValue() when they
+        need the lexeme.
+
+        The input is read as UTF-8. Anything outside of ASCII is decoded to
+        a code point and classified with Character.isLetter/isDigit, the
+        same way CMinusScanner classifies the chars its reader hands it.
+        A reader hands over a code point above U+FFFF as two surrogate
+        chars, so such a character is read as two as well: its high
+        surrogate covers the first two bytes, its low surrogate the last two.
+
+        Runs of white space and comment bodies are skipped in bulk rather
+        than a character at a time: spaces and comment text are checked
+        eight bytes at a time with a getLong(). A comment body can only end
+        at a '*', and no byte of a multi-byte UTF-8 character is '*', so
+        jumping to the next '*' byte never skips anything the DFA needed.
+     */
+
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long STARS = 0x2a2a2a2a2a2a2a2aL;
+    private static final long LOW_SEVEN_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+    ByteBuffer inBuffer;
+    int limit;
+    int pos;
+
+    // Offsets of the last token scanned (end is exclusive)
+    int tokenStart;
+    int tokenEnd;
+
+    // The DFA state scanTable() starts in. When more input follows limit
+    // (endOfInput is false), scanTable() stops at limit and returns null
+    // instead of finishing the token, leaving the state it stopped in here.
+    int state = LexerTables.START;
+    boolean endOfInput = true;
+
+    // Off, the scanners step through white space and comments one character at a time
+    boolean fastSkip = true;
+    private final boolean bigEndian;
+
+    ByteLexer(ByteBuffer buffer, int start, int end) {
+        inBuffer = buffer;
+        pos = start;
+        limit = end;
+        bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    TokenType scanSwitch() {
+        TokenType currentToken = TokenType.ERROR_TOKEN;
+        StateType state = StateType.START;
+
+        // mark is where the current character starts, so we can step back over it
+        int mark = pos;
+        int c;
+
+        tokenStart = pos;
+        while(state != StateType.DONE) {
+            mark = pos;
+            c = readChar();
+
+            switch(state){
+                case START:
+                    tokenStart = mark;
+                    if(isDigit(c)){
+                        state = StateType.INNUM;
+                    } else if (isLetter(c)){
+                        state = StateType.INID;
+                    } else if (c == '!'){
+                        state = StateType.INNOT_EQUAL;
+                    } else if (c == '>'){
+                        state = StateType.INGREATER;
+                    } else if (c == '<'){
+                        state = StateType.INLESS;
+                    } else if (c == '='){
+                        state = StateType.INEQUAL;
+                    } else if (c == '/'){
+                        state = StateType.INDIVIDE;
+                    } else if (c == -1){
+                        currentToken = TokenType.EOF_TOKEN;
+                        state = StateType.DONE;
+                    } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r'){
+                        // white space: nothing happens
+                        if(fastSkip){
+                            pos = skipSpace(pos);
+                        }
+                    } else {
+                        state = StateType.DONE;
+                        currentToken = singleCharToken(c);
+                    }
+                    break;
+                case INID:
+                    if(isLetter(c)){
+                        // keep going
+                    } else if (isDigit(c)){
+                        state = StateType.INERROR;
+                    } else {
+                        state = StateType.DONE;
+                        currentToken = TokenType.IDENT_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INNUM:
+                    if(isDigit(c)){
+                        // keep going
+                    } else if (isLetter(c)){
+                        state = StateType.INERROR;
+                    } else {
+                        state = StateType.DONE;
+                        currentToken = TokenType.NUM_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INDIVIDE:
+                    if(c == '*'){
+                        state = StateType.INCOMMENT;
+                    } else {
+                        state = StateType.DONE;
+                        currentToken = TokenType.DIVIDE_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INCOMMENT:
+                    if(c == '*'){
+                        state = StateType.INEND_COMMENT;
+                    } else if (c == -1){
+                        // unterminated comment: nothing left to scan
+                        state = StateType.DONE;
+                        currentToken = TokenType.EOF_TOKEN;
+                        tokenStart = mark;
+                    } else if (fastSkip){
+                        pos = skipCommentBody(pos);
+                    }
+                    break;
+                case INEND_COMMENT:
+                    if(c == '/'){
+                        state = StateType.START;
+                    } else {
+                        state = StateType.INCOMMENT;
+                        if(fastSkip){
+                            pos = skipCommentBody(pos);
+                        }
+                    }
+                    break;
+                case INLESS:
+                    state = StateType.DONE;
+                    if(c == '='){
+                        currentToken = TokenType.LESS_EQUAL_TOKEN;
+                    } else {
+                        currentToken = TokenType.LESS_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INGREATER:
+                    state = StateType.DONE;
+                    if(c == '='){
+                        currentToken = TokenType.GREATER_EQUAL_TOKEN;
+                    } else {
+                        currentToken = TokenType.GREATER_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INEQUAL:
+                    state = StateType.DONE;
+                    if(c == '='){
+                        currentToken = TokenType.EQUAL_TOKEN;
+                    } else {
+                        currentToken = TokenType.ASSIGN_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INNOT_EQUAL:
+                    state = StateType.DONE;
+                    if(c == '='){
+                        currentToken = TokenType.NOT_EQUAL_TOKEN;
+                    } else {
+                        currentToken = TokenType.ERROR_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case INERROR:
+                    // Same as CMinusScanner: run to the end of something like abc1234
+                    if(!isDigit(c) && !isLetter(c)){
+                        state = StateType.DONE;
+                        currentToken = TokenType.ERROR_TOKEN;
+                        pos = mark;
+                    }
+                    break;
+                case DONE:
+                default:
+                    // Should never happen
+                    state = StateType.DONE;
+                    currentToken = TokenType.ERROR_TOKEN;
+                    break;
+            }
+        }
+        tokenEnd = pos;
+
+        return resolveKeyword(currentToken);
+    }
+
+    TokenType scanTable() {
+        int[][] transitions = LexerTables.TRANSITIONS;
+        byte[] charClass = LexerTables.CHAR_CLASS;
+        int state = this.state;
+        int action;
+
+        tokenStart = pos;
+        while(true) {
+            int mark = pos;
+            int cc;
+            if(pos >= limit){
+                if(!endOfInput){
+                    this.state = state;
+                    return null;
+                }
+                cc = LexerTables.CC_EOF;
+            } else {
+                int b = inBuffer.get(pos);
+                if(b >= 0){
+                    pos++;
+                    cc = charClass[b];
+                } else {
+                    cc = LexerTables.classOf(readChar());
+                }
+            }
+
+            // Skipped white space and comments are not part of the token
+            if(state == LexerTables.START){
+                tokenStart = mark;
+            }
+
+            action = transitions[state][cc];
+            if(action >= LexerTables.ACCEPT){
+                if((action & LexerTables.PUSHBACK) != 0){
+                    pos = mark;
+                }
+                break;
+            }
+            state = action;
+
+            if(state == LexerTables.INCOMMENT){
+                if(fastSkip){
+                    pos = skipCommentBody(pos);
+                }
+            } else if (cc == LexerTables.CC_SPACE && pos < limit && inBuffer.get(pos) <= ' ' && fastSkip){
+                // Only START stays put on white space, and a single space is not worth a call
+                pos = skipSpace(pos);
+            }
+        }
+        tokenEnd = pos;
+        this.state = LexerTables.START;
+
+        TokenType currentToken = LexerTables.TOKEN_TYPES[action & LexerTables.VALUE_MASK];
+        if(currentToken == TokenType.EOF_TOKEN){
+            tokenStart = tokenEnd;
+        }
+        return resolveKeyword(currentToken);
+    }
+
+    // Offset of the first byte at or after p that is not white space, or limit
+    private int skipSpace(int p) {
+        while(p < limit){
+            int b = inBuffer.get(p);
+            if(b == ' '){
+                // Indentation usually comes in long runs of spaces
+                while(p + 8 <= limit && inBuffer.getLong(p) == SPACES){
+                    p += 8;
+                }
+                if(p >= limit || inBuffer.get(p) != ' '){
+                    continue;
+                }
+            } else if (b != '\n' && b != '\t' && b != '\r'){
+                return p;
+            }
+            p++;
+        }
+        return p;
+    }
+
+    // Offset of the next '*' at or after p, or limit
+    private int skipCommentBody(int p) {
+        while(p + 8 <= limit){
+            // Turns each byte that is '*' into 0x80 and every other byte into 0
+            long word = inBuffer.getLong(p) ^ STARS;
+            long found = ~(((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word | LOW_SEVEN_BITS);
+            if(found != 0){
+                int index = bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found);
+                return p + (index >>> 3);
+            }
+            p += 8;
+        }
+        while(p < limit && inBuffer.get(p) != '*'){
+            p++;
+        }
+        return p;
+    }
+
+    // Identifiers that spell a keyword become that keyword
+    private TokenType resolveKeyword(TokenType currentToken) {
+        if(currentToken == TokenType.IDENT_TOKEN){
+            TokenType keyword = Keywords.lookup(inBuffer, tokenStart, tokenEnd - tokenStart);
+            if(keyword != null){
+                return keyword;
+            }
+        }
+        return currentToken;
+    }
+
+    // Id of the identifier just scanned
+    int identId(IdentTable table) {
+        return table.intern(inBuffer, tokenStart, tokenEnd - tokenStart);
+    }
+
+    // Value of the number just scanned
+    int numberValue() {
+        return numberValue(tokenStart, tokenEnd);
+    }
+
+    // Reads the character at pos and moves past it; returns -1 at the end of the buffer
+    private int readChar() {
+        if(pos >= limit){
+            return -1;
+        }
+        int b = inBuffer.get(pos) & 0xff;
+        if(b < 0x80){
+            pos++;
+            return b;
+        }
+        return readMultiByteChar(b);
+    }
+
+    // Decodes a UTF-8 sequence starting with lead byte b; malformed input comes back as U+FFFD
+    private int readMultiByteChar(int b) {
+        int length;
+        int codePoint;
+        if((b & 0xe0) == 0xc0){
+            length = 2;
+            codePoint = b & 0x1f;
+        } else if ((b & 0xf0) == 0xe0){
+            length = 3;
+            codePoint = b & 0x0f;
+        } else if ((b & 0xf8) == 0xf0){
+            codePoint = supplementaryAt(pos);
+            if(codePoint < 0){
+                pos++;
+                return 0xfffd;
+            }
+            pos += 2;
+            return Character.highSurrogate(codePoint);
+        } else {
+            // A continuation byte: the second half of a character above U+FFFF, or malformed
+            codePoint = (pos >= 2) ? supplementaryAt(pos - 2) : -1;
+            if(codePoint < 0){
+                pos++;
+                return 0xfffd;
+            }
+            pos += 2;
+            return Character.lowSurrogate(codePoint);
+        }
+        if(pos + length > limit){
+            pos++;
+            return 0xfffd;
+        }
+        for(int i = 1; i < length; i++){
+            int next = inBuffer.get(pos + i) & 0xff;
+            if((next & 0xc0) != 0x80){
+                pos++;
+                return 0xfffd;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3f);
+        }
+        pos += length;
+        return codePoint;
+    }
+
+    // The code point of a 4 byte UTF-8 sequence starting at p, or -1 if there isn't a valid one
+    private int supplementaryAt(int p) {
+        if(p + 4 > limit){
+            return -1;
+        }
+        int codePoint = inBuffer.get(p) & 0xff;
+        if((codePoint & 0xf8) != 0xf0){
+            return -1;
+        }
+        codePoint &= 0x07;
+        for(int i = 1; i < 4; i++){
+            int next = inBuffer.get(p + i) & 0xff;
+            if((next & 0xc0) != 0x80){
+                return -1;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3f);
+        }
+        if(codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT){
+            return -1;
+        }
+        return codePoint;
+    }
+
+    private static boolean isDigit(int c) {
+        if(c < 0x80){
+            return c >= '0' && c <= '9';
+        }
+        return Character.isDigit(c);
+    }
+
+    private static boolean isLetter(int c) {
+        if(c < 0x80){
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+        return Character.isLetter(c);
+    }
+
+    private static TokenType singleCharToken(int c) {
+        switch(c){
+            case '+':
+                return TokenType.PLUS_TOKEN;
+            case '-':
+                return TokenType.MINUS_TOKEN;
+            case '*':
+                return TokenType.MULT_TOKEN;
+            case ';':
+                return TokenType.SEMI_TOKEN;
+            case ',':
+                return TokenType.COMMA_TOKEN;
+            case '(':
+                return TokenType.LEFT_PAREN_TOKEN;
+            case ')':
+                return TokenType.RIGHT_PAREN_TOKEN;
+            case '[':
+                return TokenType.LEFT_BRACKET_TOKEN;
+            case ']':
+                return TokenType.RIGHT_BRACKET_TOKEN;
+            case '{':
+                return TokenType.LEFT_BRACE_TOKEN;
+            case '}':
+                return TokenType.RIGHT_BRACE_TOKEN;
+            default:
+                return TokenType.ERROR_TOKEN;
+        }
+    }
+
+    private String lexeme(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = inBuffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Same result as Integer.parseInt on the lexeme, without building the String first
+    private int numberValue(int start, int end) {
+        int value = 0;
+        for(int i = start; i < end; i++){
+            int b = inBuffer.get(i);
+            if(b < '0' || b > '9' || value > (Integer.MAX_VALUE - 9) / 10){
+                // non-ASCII digits, or close enough to overflow that parseInt should decide
+                return Integer.parseInt(lexeme(start, end));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
@@ -8,12 +8,34 @@ public class CMinusScanner implements Scanner {
     
     private BufferedReader inFile;
     private Token nextToken;
+    private IdentTable identTable;
+    
+    // Chars consumed so far, and where each line starts, for token positions
+    private int offset;
+    private LineIndex lineIndex = new LineIndex();
+    
+    // Characters of the current identifier or number
+    private char[] data = new char[64];
+    private int dataLength;
     
     public CMinusScanner (BufferedReader file) throws IOException {
+        this(file, new IdentTable());
+    }
+    
+    public CMinusScanner (BufferedReader file, IdentTable table) throws IOException {
         inFile = file;
+        identTable = table;
         nextToken = scanToken();
     }
     
+    public IdentTable getIdentTable(){
+        return identTable;
+    }
+    
+    public LineIndex getLineIndex(){
+        return lineIndex;
+    }
+    
     public Token getNextToken () {
         Token returnToken = nextToken;
         if(nextToken.getType() != TokenType.EOF_TOKEN){
@@ -51,26 +73,35 @@ public class CMinusScanner implements Scanner {
         
         // Keep track of the current character, and previous characters for data if needed
         char c;
-        String data = "";
+        dataLength = 0;
+        
+        // Offset of the current char, and of the first char of the token
+        int charStart = offset;
+        int tokenStart = offset;
 
         // Loop through states (based on DFA)
         while(state != StateType.DONE) {
             // Mark place before moving
             inFile.mark(1);
+            charStart = offset;
             
             // Get next character, place as c
             int charValue = inFile.read();
             c = (char)charValue;
+            if(charValue != -1){
+                offset++;
+            }
             
             // Loop through all possible states
             switch(state){
                 // Start state: go to DONE for single-character tokens, go to an intermediate state for multiple-character tokens
                 case START:
+                    tokenStart = charStart;
                     if(Character.isDigit(c)){
-                        data += c;
+                        appendData(c);
                         state = StateType.INNUM;
                     } else if (Character.isLetter(c)){
-                        data += c;
+                        appendData(c);
                         state = StateType.INID;
                     } else if (c == '!'){
                         state = StateType.INNOT_EQUAL;
@@ -86,7 +117,10 @@ public class CMinusScanner implements Scanner {
                         currentToken = TokenType.EOF_TOKEN;
                         state = StateType.DONE;
                     } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r'){
-                        // white space: nothing happens
+                        // white space: nothing happens, apart from noting where lines start
+                        if(c == '\n'){
+                            lineIndex.addLineStart(offset);
+                        }
                     } else {
                         state = StateType.DONE;
                         switch(c){
@@ -128,24 +162,24 @@ public class CMinusScanner implements Scanner {
                     break;
                 case INID:
                     if(Character.isLetter(c)){
-                        data += c;
+                        appendData(c);
                     } else if (Character.isDigit(c)){
                         state = StateType.INERROR;
                     } else {
                         state = StateType.DONE;
                         currentToken = TokenType.IDENT_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case INNUM:
                     if(Character.isDigit(c)){
-                        data += c;
+                        appendData(c);
                     } else if (Character.isLetter(c)){
                         state = StateType.INERROR;
                     } else {
                         state = StateType.DONE;
                         currentToken = TokenType.NUM_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case INDIVIDE:
@@ -154,12 +188,14 @@ public class CMinusScanner implements Scanner {
                     } else {
                         state = StateType.DONE;
                         currentToken = TokenType.DIVIDE_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case INCOMMENT:
                     if(c == '*'){
                         state = StateType.INEND_COMMENT;
+                    } else if (c == '\n'){
+                        lineIndex.addLineStart(offset);
                     }
                     break;
                 case INEND_COMMENT:
@@ -167,6 +203,9 @@ public class CMinusScanner implements Scanner {
                         state = StateType.START;
                     } else {
                         state = StateType.INCOMMENT;
+                        if(c == '\n'){
+                            lineIndex.addLineStart(offset);
+                        }
                     }
                     break;
                 case INLESS:
@@ -175,7 +214,7 @@ public class CMinusScanner implements Scanner {
                         currentToken = TokenType.LESS_EQUAL_TOKEN;
                     } else {
                         currentToken = TokenType.LESS_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     } 
                     break;
                 case INGREATER:
@@ -184,7 +223,7 @@ public class CMinusScanner implements Scanner {
                         currentToken = TokenType.GREATER_EQUAL_TOKEN;
                     } else {
                         currentToken = TokenType.GREATER_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case INEQUAL:
@@ -193,7 +232,7 @@ public class CMinusScanner implements Scanner {
                         currentToken = TokenType.EQUAL_TOKEN;
                     } else {
                         currentToken = TokenType.ASSIGN_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     } 
                     break;
                 case INNOT_EQUAL:
@@ -202,7 +241,7 @@ public class CMinusScanner implements Scanner {
                         currentToken = TokenType.NOT_EQUAL_TOKEN;
                     } else {
                         currentToken = TokenType.ERROR_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case INERROR:
@@ -210,7 +249,7 @@ public class CMinusScanner implements Scanner {
                     if(!Character.isDigit(c) && !Character.isLetter(c)){
                         state = StateType.DONE;
                         currentToken = TokenType.ERROR_TOKEN;
-                        inFile.reset();
+                        pushBack(charStart);
                     }
                     break;
                 case DONE:
@@ -222,42 +261,35 @@ public class CMinusScanner implements Scanner {
             }
         }
         
-        // Create the token to return 
-        Token returnToken = new Token(currentToken);
-        
-        // Check if an identifier is a keyword
+        // Identifiers that are keywords become keyword tokens, the rest are interned
         if(currentToken == TokenType.IDENT_TOKEN){
-            switch(data){
-                case "else":
-                    returnToken = new Token(TokenType.ELSE_TOKEN);
-                    break;
-                case "if":
-                    returnToken = new Token(TokenType.IF_TOKEN);
-                    break;
-                case "return":
-                    returnToken = new Token(TokenType.RETURN_TOKEN);
-                    break;
-                case "void":
-                    returnToken = new Token(TokenType.VOID_TOKEN);
-                    break;
-                case "while":
-                    returnToken = new Token(TokenType.WHILE_TOKEN);
-                    break;
-                case "int":
-                    returnToken = new Token(TokenType.INT_TOKEN);
-                    break;
+            TokenType keyword = Keywords.lookup(data, 0, dataLength);
+            if(keyword != null){
+                return new Token(keyword, null, tokenStart);
             }
+            return new Token(currentToken, identTable.getName(identTable.intern(data, 0, dataLength)), tokenStart);
         }
         
-        // If our token is a num or identifier, it needs data
-        if(returnToken.getType() == TokenType.NUM_TOKEN){
-            returnToken.setData(Integer.parseInt(data));
-        }
-        if(returnToken.getType() == TokenType.IDENT_TOKEN){
-            returnToken.setData(data);
+        // Numbers need their value as data
+        if(currentToken == TokenType.NUM_TOKEN){
+            return new Token(currentToken, Integer.parseInt(new String(data, 0, dataLength)), tokenStart);
         }
         
-        return returnToken;
+        return new Token(currentToken, null, tokenStart);
+    }
+    
+    // Steps back over the char that started at charStart
+    private void pushBack(int charStart) throws IOException {
+        inFile.reset();
+        offset = charStart;
+    }
+    
+    private void appendData(char c) {
+        if(dataLength == data.length){
+            char[] newData = new char[dataLength * 2];
+            System.arraycopy(data, 0, newData, 0, dataLength);
+            data = newData;
+        }
+        data[dataLength++] = c;
     }
 }
-
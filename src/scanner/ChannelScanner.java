@@ -0,0 +1,176 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+public class ChannelScanner implements Scanner {
+    /*
+        Scanner that reads its input from a channel (a pipe, stdin, a
+        socket) through one fixed-size buffer, so memory use does not grow
+        with the input.
+
+        The buffer is refilled whenever the lexer runs out of bytes. Bytes
+        the lexer is done with are dropped and whatever it still needs is
+        moved to the front, then the rest of the buffer is filled from the
+        channel. The lexer stops at the end of the bytes read so far and
+        says which DFA state it stopped in:
+            - START, INCOMMENT or INEND_COMMENT: it is between tokens or in
+              a comment, so no bytes need to be kept and lexing simply
+              carries on in that state with the new bytes
+            - anything else: a token was cut off at the end of the buffer,
+              so its bytes are kept and it is scanned again from START
+              once more input is in
+
+        A single token longer than the whole buffer makes the buffer grow,
+        so memory is bounded by the longest token, not by the input.
+
+        The channel must be blocking: a read that returns no bytes would
+        otherwise have to be retried in a busy loop. A SelectableChannel in
+        non-blocking mode is rejected with an IllegalArgumentException.
+
+        Token positions are offsets from the start of the stream. Lines are
+        not tracked (that would take memory per line), so getLineIndex()
+        returns null.
+     */
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int END_COMMENT = CMinusScanner.StateType.INEND_COMMENT.ordinal();
+
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private ByteLexer lexer;
+    private IdentTable identTable;
+    private Token nextToken;
+    // Stream offset of buffer index 0
+    private int base;
+    // End of the bytes read into the buffer; the lexer's limit stops short of a split character
+    private int filled;
+
+    public ChannelScanner(ReadableByteChannel channel) throws IOException {
+        this(channel, new IdentTable(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelScanner(ReadableByteChannel channel, IdentTable table) throws IOException {
+        this(channel, table, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelScanner(ReadableByteChannel channel, IdentTable table, int bufferSize) throws IOException {
+        if(channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()){
+            throw new IllegalArgumentException("ChannelScanner needs a blocking channel");
+        }
+        this.channel = channel;
+        identTable = table;
+        buffer = ByteBuffer.allocateDirect(Math.max(16, bufferSize));
+        lexer = new ByteLexer(buffer, 0, 0);
+        lexer.endOfInput = false;
+        base = 0;
+        filled = 0;
+        nextToken = scanToken();
+    }
+
+    // Scanner has no checked exceptions, so read errors past the first token come out unchecked
+    public Token getNextToken() {
+        Token returnToken = nextToken;
+        if(nextToken.getType() != TokenType.EOF_TOKEN){
+            try {
+                nextToken = scanToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return returnToken;
+    }
+
+    public Token viewNextToken() {
+        return nextToken;
+    }
+
+    public IdentTable getIdentTable() {
+        return identTable;
+    }
+
+    private Token scanToken() throws IOException {
+        TokenType currentToken = lexer.scanTable();
+        while(currentToken == null){
+            refill();
+            currentToken = lexer.scanTable();
+        }
+
+        int position = base + lexer.tokenStart;
+        if(currentToken == TokenType.IDENT_TOKEN){
+            return new Token(currentToken, identTable.getName(lexer.identId(identTable)), position);
+        }
+        if(currentToken == TokenType.NUM_TOKEN){
+            return new Token(currentToken, lexer.numberValue(), position);
+        }
+        return new Token(currentToken, null, position);
+    }
+
+    // Drops the bytes the lexer is done with and reads more after the rest
+    private void refill() throws IOException {
+        int keep;
+        int state = lexer.state;
+        if(state == LexerTables.START || state == LexerTables.INCOMMENT || state == END_COMMENT){
+            keep = lexer.pos;
+        } else {
+            // Scan the cut off token again once the rest of it is in
+            keep = lexer.tokenStart;
+            lexer.state = LexerTables.START;
+        }
+
+        // Move the kept bytes (and any read but not yet lexed) to the front
+        int kept = filled - keep;
+        if(keep > 0){
+            ByteBuffer tail = buffer.duplicate();
+            tail.position(keep).limit(filled);
+            buffer.clear();
+            buffer.put(tail);
+            base += keep;
+        }
+        if(kept == buffer.capacity()){
+            ByteBuffer bigger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.position(0).limit(kept);
+            bigger.put(buffer);
+            buffer = bigger;
+            lexer.inBuffer = buffer;
+        }
+
+        buffer.limit(buffer.capacity()).position(kept);
+        int read = 0;
+        while(read == 0){
+            read = channel.read(buffer);
+        }
+        filled = (read < 0) ? kept : buffer.position();
+
+        // Lexing picks up at the first kept byte
+        lexer.pos = 0;
+        lexer.tokenStart = 0;
+        if(read < 0){
+            lexer.endOfInput = true;
+            lexer.limit = filled;
+        } else {
+            lexer.limit = completeCharsEnd(filled);
+        }
+    }
+
+    // End of the last whole UTF-8 character in [0, end), so none is split between reads
+    private int completeCharsEnd(int end) {
+        for(int i = end - 1; i >= 0 && i >= end - 4; i--){
+            int b = buffer.get(i) & 0xff;
+            if(b < 0x80){
+                return end;
+            }
+            if(b >= 0xc0){
+                // Lead byte: is its sequence all there?
+                int length = (b >= 0xf0) ? 4 : (b >= 0xe0) ? 3 : 2;
+                return (i + length <= end) ? end : i;
+            }
+        }
+        return end;
+    }
+}
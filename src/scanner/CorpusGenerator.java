@@ -0,0 +1,229 @@
+package scanner;
+
+import java.util.Random;
+
+public class CorpusGenerator {
+    /*
+        Generates synthetic C- programs for benchmarking the scanners.
+
+        The output is a C- program CMinusParser accepts: every variable is
+        declared globally, followed by functions whose bodies are random
+        statements. Names declared together (a function's params, a
+        block's locals) are distinct, so the program also passes the
+        semantic checks. What it looks like is tuned with:
+            identDensity  - chance that an operand is a variable or a call
+                            rather than a number (0 to 1)
+            commentRatio  - share of the output that is inside comments
+                            (0 to 1)
+            nesting       - how deep if/while/compound statements go
+            identCount    - how many distinct variable names there are
+
+        The same seed and settings always give the same program.
+     */
+
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+    private static final String[] RELATIONS = {" < ", " <= ", " > ", " >= ", " == ", " != "};
+    private static final String[] COMMENT_WORDS = {
+        "the", "value", "is", "checked", "before", "loop", "index", "returns",
+        "result", "of", "each", "call", "keep", "this", "in", "sync", "with"
+    };
+
+    private Random random;
+    private double identDensity = 0.5;
+    private double commentRatio = 0.1;
+    private int nesting = 3;
+    private int identCount = 64;
+
+    private StringBuilder out;
+    private int commentChars;
+    private int functionCount;
+
+    public CorpusGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    public void setIdentDensity(double identDensity) {
+        this.identDensity = identDensity;
+    }
+
+    public void setCommentRatio(double commentRatio) {
+        this.commentRatio = commentRatio;
+    }
+
+    public void setNesting(int nesting) {
+        this.nesting = nesting;
+    }
+
+    public void setIdentCount(int identCount) {
+        this.identCount = Math.max(1, identCount);
+    }
+
+    // A program of at least size characters (all ASCII, so also bytes)
+    public String generate(int size) {
+        out = new StringBuilder(size + 1024);
+        commentChars = 0;
+        functionCount = 0;
+
+        for(int i = 0; i < identCount; i++){
+            out.append("int ").append(name(i)).append(";\n");
+        }
+        out.append('\n');
+        while(out.length() < size){
+            function();
+        }
+        out.append("void main(void) {\n    ").append(functionName(0)).append("(1, 2);\n}\n");
+        return out.toString();
+    }
+
+    private void function() {
+        maybeComment(0);
+        int first = random.nextInt(identCount);
+        int second = distinct(random.nextInt(identCount), first, first);
+        out.append("int ").append(functionName(functionCount++)).append("(int ")
+                .append(name(first)).append(", int ").append(name(second)).append(") {\n");
+        declarations(1);
+        int statements = 3 + random.nextInt(6);
+        for(int i = 0; i < statements; i++){
+            statement(1, nesting);
+        }
+        indent(1);
+        out.append("return ").append(expression(2)).append(";\n}\n\n");
+    }
+
+    private void declarations(int depth) {
+        int count = 1 + random.nextInt(3);
+        int first = -1;
+        int second = -1;
+        for(int i = 0; i < count; i++){
+            int index = distinct(random.nextInt(identCount), first, second);
+            indent(depth);
+            out.append("int ").append(name(index)).append(";\n");
+            if(i == 0){
+                first = index;
+            } else {
+                second = index;
+            }
+        }
+    }
+
+    // index, or the next name after it that isn't taken; names declared together must differ
+    private static int distinct(int index, int taken, int alsoTaken) {
+        while(index == taken || index == alsoTaken){
+            index++;
+        }
+        return index;
+    }
+
+    private void statement(int depth, int levelsLeft) {
+        maybeComment(depth);
+        int kind = (levelsLeft > 0) ? random.nextInt(5) : 0;
+        indent(depth);
+        switch(kind){
+            case 1:
+                out.append("if (").append(condition()).append(")\n");
+                body(depth, levelsLeft - 1);
+                if(random.nextBoolean()){
+                    indent(depth);
+                    out.append("else\n");
+                    body(depth, levelsLeft - 1);
+                }
+                break;
+            case 2:
+                out.append("while (").append(condition()).append(")\n");
+                body(depth, levelsLeft - 1);
+                break;
+            default:
+                out.append(variable()).append(" = ").append(expression(2)).append(";\n");
+                break;
+        }
+    }
+
+    // Body of an if or while: a single statement or a block
+    private void body(int depth, int levelsLeft) {
+        if(random.nextBoolean()){
+            statement(depth + 1, levelsLeft);
+            return;
+        }
+        indent(depth);
+        out.append("{\n");
+        declarations(depth + 1);
+        int statements = 1 + random.nextInt(4);
+        for(int i = 0; i < statements; i++){
+            statement(depth + 1, levelsLeft);
+        }
+        indent(depth);
+        out.append("}\n");
+    }
+
+    private String condition() {
+        return expression(1) + RELATIONS[random.nextInt(RELATIONS.length)] + expression(1);
+    }
+
+    private String expression(int terms) {
+        // CMinusParser doesn't take an operator after a call that starts an expression
+        StringBuilder expr = new StringBuilder(operand(false));
+        int count = random.nextInt(terms + 1);
+        for(int i = 0; i < count; i++){
+            expr.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(operand(true));
+        }
+        return expr.toString();
+    }
+
+    private String operand(boolean allowCall) {
+        if(random.nextDouble() >= identDensity){
+            return Integer.toString(random.nextInt(1000));
+        }
+        if(allowCall && functionCount > 0 && random.nextInt(8) == 0){
+            return functionName(random.nextInt(functionCount)) + "(" + variable() + ", " + random.nextInt(100) + ")";
+        }
+        return variable();
+    }
+
+    // Adds a comment if the output has less than its share of comment text
+    private void maybeComment(int depth) {
+        if(commentRatio <= 0 || commentChars >= commentRatio * out.length()){
+            return;
+        }
+        int begin = out.length();
+        indent(depth);
+        out.append("/*");
+        int lines = 1 + random.nextInt(4);
+        for(int line = 0; line < lines; line++){
+            if(line > 0){
+                out.append('\n');
+                indent(depth);
+                out.append(" *");
+            }
+            int words = 4 + random.nextInt(8);
+            for(int i = 0; i < words; i++){
+                out.append(' ').append(COMMENT_WORDS[random.nextInt(COMMENT_WORDS.length)]);
+            }
+        }
+        out.append(" */\n");
+        commentChars += out.length() - begin;
+    }
+
+    private void indent(int depth) {
+        for(int i = 0; i < depth; i++){
+            out.append("    ");
+        }
+    }
+
+    private String variable() {
+        return name(random.nextInt(identCount));
+    }
+
+    private static String functionName(int index) {
+        return "fn" + name(index);
+    }
+
+    // C- identifiers are letters only, so count in base 26; no keyword starts with x
+    private static String name(int index) {
+        StringBuilder name = new StringBuilder("x");
+        do {
+            name.append((char) ('a' + index % 26));
+            index /= 26;
+        } while(index > 0);
+        return name.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class IdentTable {
+    /*
+        Per-compilation identifier table.
+
+        Every distinct identifier is stored once and handed out as a stable
+        integer id (0, 1, 2, ... in order of first appearance) along with
+        one canonical String. Scanners intern straight out of their input
+        buffers, so an identifier that was seen before costs a hash and a
+        compare, not a new String.
+
+        Because every IDENT_TOKEN with the same name carries the same String
+        object, the HashMaps downstream (the parser's SymbolTable, the
+        Function tables) hit the identity check in String.equals and the
+        cached String hash code.
+     */
+
+    private String[] names;
+    private int[] hashes;
+    // Open addressing table of id + 1; 0 marks an empty slot
+    private int[] slots;
+    private int count;
+
+    public IdentTable() {
+        names = new String[64];
+        hashes = new int[64];
+        slots = new int[128];
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    // Id of an identifier that has already been interned, or -1
+    public int getId(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for(int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask){
+            int id = slots[slot] - 1;
+            if(hashes[id] == hash && names[id].equals(name)){
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    public int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for(; slots[slot] != 0; slot = (slot + 1) & mask){
+            int id = slots[slot] - 1;
+            if(hashes[id] == hash && names[id].equals(name)){
+                return id;
+            }
+        }
+        return add(slot, hash, name);
+    }
+
+    public int intern(char[] buf, int start, int length) {
+        // Same hash as String.hashCode so both intern methods agree
+        int hash = 0;
+        for(int i = 0; i < length; i++){
+            hash = 31 * hash + buf[start + i];
+        }
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for(; slots[slot] != 0; slot = (slot + 1) & mask){
+            int id = slots[slot] - 1;
+            if(hashes[id] == hash && matches(names[id], buf, start, length)){
+                return id;
+            }
+        }
+        return add(slot, hash, new String(buf, start, length));
+    }
+
+    // Interns length bytes of UTF-8 starting at absolute offset start
+    public int intern(ByteBuffer buf, int start, int length) {
+        int hash = 0;
+        for(int i = 0; i < length; i++){
+            int b = buf.get(start + i);
+            if(b < 0){
+                // Not plain ASCII, so chars and bytes don't line up
+                byte[] bytes = new byte[length];
+                for(int j = 0; j < length; j++){
+                    bytes[j] = buf.get(start + j);
+                }
+                return intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+            hash = 31 * hash + b;
+        }
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for(; slots[slot] != 0; slot = (slot + 1) & mask){
+            int id = slots[slot] - 1;
+            if(hashes[id] == hash && matches(names[id], buf, start, length)){
+                return id;
+            }
+        }
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = (char) buf.get(start + i);
+        }
+        return add(slot, hash, new String(chars));
+    }
+
+    private int add(int slot, int hash, String name) {
+        if(count == names.length){
+            String[] newNames = new String[count * 2];
+            int[] newHashes = new int[count * 2];
+            System.arraycopy(names, 0, newNames, 0, count);
+            System.arraycopy(hashes, 0, newHashes, 0, count);
+            names = newNames;
+            hashes = newHashes;
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        // Keep the table at most half full
+        if(count * 2 > slots.length){
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int size) {
+        slots = new int[size];
+        int mask = size - 1;
+        for(int id = 0; id < count; id++){
+            int slot = hashes[id] & mask;
+            while(slots[slot] != 0){
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static boolean matches(String name, char[] buf, int start, int length) {
+        if(name.length() != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(name.charAt(i) != buf[start + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, ByteBuffer buf, int start, int length) {
+        if(name.length() != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(name.charAt(i) != buf.get(start + i)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class IncrementalLexer {
+    /*
+        Re-lexes a TokenStream after a text edit without scanning the
+        whole file again.
+
+        Every token end is a checkpoint: scanTable() always goes back to
+        the START state there, so lexing can resume from it. An edit only
+        changes tokens whose scan read an edited byte, so the tokens that
+        end well before the edit are kept as they are and lexing restarts
+        in START at the end of the last of them.
+
+        From there the new text is lexed until a new token ends past the
+        inserted text at the same place (shifted by the edit) as an old
+        token. Both scans are then in START in front of the same bytes, so
+        the rest of the old tokens are copied over with their starts
+        shifted instead of being lexed again.
+
+        Offsets and lengths are bytes, like the token starts. The new
+        stream shares the old stream's IdentTable, so identifiers keep
+        their ids across edits; new identifiers are added to the end.
+     */
+
+    // A token's scan can look one character past its end, and a UTF-8 character is up to 4 bytes
+    private static final int LOOKAHEAD = 4;
+
+    private IncrementalLexer() {
+    }
+
+    public static TokenStream relex(TokenStream previous, int offset, int deletedLength, String insertedText) {
+        return relex(previous, offset, deletedLength, insertedText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TokenStream relex(TokenStream previous, int offset, int deletedLength, byte[] inserted) {
+        ByteBuffer oldSource = previous.getSource();
+        int begin = oldSource.position();
+        int oldEnd = oldSource.limit();
+        if(offset < begin || deletedLength < 0 || offset + deletedLength > oldEnd){
+            throw new IndexOutOfBoundsException("Edit at " + offset + " deleting " + deletedLength
+                    + " bytes is outside of [" + begin + ", " + oldEnd + ")");
+        }
+        int shift = inserted.length - deletedLength;
+        ByteBuffer newSource = applyEdit(oldSource, offset, deletedLength, inserted);
+
+        // Keep every token whose scan finished before reaching the edit
+        int kept = 0;
+        while(kept < previous.size() && tokenEnd(previous, kept) + LOOKAHEAD <= offset){
+            kept++;
+        }
+        int restart = (kept == 0) ? begin : tokenEnd(previous, kept - 1);
+
+        IdentTable table = previous.getIdentTable();
+        TokenStream tokens = new TokenStream(Math.max(16, previous.size() + inserted.length / 4), table);
+        tokens.setSource(newSource);
+        tokens.addRange(previous, 0, kept, 0);
+
+        ByteLexer lexer = new ByteLexer(newSource, restart, newSource.limit());
+        int editEnd = offset + inserted.length;
+        // Next old token that could end where a new one does
+        int old = kept;
+        TokenType type;
+        do {
+            type = lexer.scanTable();
+            int tokenValue = 0;
+            if(type == TokenType.IDENT_TOKEN){
+                tokenValue = lexer.identId(table);
+            } else if (type == TokenType.NUM_TOKEN){
+                tokenValue = lexer.numberValue();
+            }
+            tokens.add(type.ordinal(), lexer.tokenStart, lexer.tokenEnd - lexer.tokenStart, tokenValue);
+
+            if(type != TokenType.EOF_TOKEN && lexer.tokenEnd >= editEnd){
+                int oldPosition = lexer.tokenEnd - shift;
+                while(old < previous.size() && tokenEnd(previous, old) < oldPosition){
+                    old++;
+                }
+                if(old < previous.size() && tokenEnd(previous, old) == oldPosition
+                        && previous.getKind(old) != TokenType.EOF_TOKEN.ordinal()){
+                    // Back in step with the old stream
+                    tokens.addRange(previous, old + 1, previous.size(), shift);
+                    return tokens;
+                }
+            }
+        } while(type != TokenType.EOF_TOKEN);
+
+        return tokens;
+    }
+
+    private static int tokenEnd(TokenStream tokens, int index) {
+        return tokens.getStart(index) + tokens.getLength(index);
+    }
+
+    // A copy of source with the edit made; bytes before its position keep their offsets
+    private static ByteBuffer applyEdit(ByteBuffer source, int offset, int deletedLength, byte[] inserted) {
+        int oldEnd = source.limit();
+        byte[] bytes = new byte[oldEnd + inserted.length - deletedLength];
+        ByteBuffer before = source.duplicate();
+        before.position(0).limit(offset);
+        before.get(bytes, 0, offset);
+        System.arraycopy(inserted, 0, bytes, offset, inserted.length);
+        ByteBuffer after = source.duplicate();
+        after.position(offset + deletedLength).limit(oldEnd);
+        after.get(bytes, offset + inserted.length, oldEnd - offset - deletedLength);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(source.position());
+        return buffer;
+    }
+}
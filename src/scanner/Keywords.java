@@ -0,0 +1,75 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.nio.ByteBuffer;
+
+public final class Keywords {
+    /*
+        Keyword lookup with a perfect hash on (length, first character).
+
+        The six C- keywords all differ in either their length or their
+        first character, and ((first >> 2) + length * 3) & 7 sends each of
+        them to its own slot. A lookup hashes, then compares the one
+        candidate in that slot, so identifiers never have to be turned into
+        a String just to find out they are not keywords.
+     */
+
+    private Keywords() {
+    }
+
+    private static final int SLOTS = 8;
+    private static final char[][] SLOT_WORDS = new char[SLOTS][];
+    private static final TokenType[] SLOT_TYPES = new TokenType[SLOTS];
+
+    static {
+        add("else", TokenType.ELSE_TOKEN);
+        add("if", TokenType.IF_TOKEN);
+        add("int", TokenType.INT_TOKEN);
+        add("return", TokenType.RETURN_TOKEN);
+        add("void", TokenType.VOID_TOKEN);
+        add("while", TokenType.WHILE_TOKEN);
+    }
+
+    private static void add(String word, TokenType type) {
+        int slot = hash(word.length(), word.charAt(0));
+        if(SLOT_WORDS[slot] != null){
+            throw new IllegalStateException("Keywords: hash collision on " + word);
+        }
+        SLOT_WORDS[slot] = word.toCharArray();
+        SLOT_TYPES[slot] = type;
+    }
+
+    private static int hash(int length, int first) {
+        return ((first >> 2) + length * 3) & (SLOTS - 1);
+    }
+
+    // Keyword token type for buf[start, start + length), or null if it is an identifier
+    public static TokenType lookup(char[] buf, int start, int length) {
+        int slot = hash(length, buf[start]);
+        char[] word = SLOT_WORDS[slot];
+        if(word == null || word.length != length){
+            return null;
+        }
+        for(int i = 0; i < length; i++){
+            if(buf[start + i] != word[i]){
+                return null;
+            }
+        }
+        return SLOT_TYPES[slot];
+    }
+
+    // Same as above, for length bytes of a buffer starting at absolute offset start
+    public static TokenType lookup(ByteBuffer buf, int start, int length) {
+        int slot = hash(length, buf.get(start));
+        char[] word = SLOT_WORDS[slot];
+        if(word == null || word.length != length){
+            return null;
+        }
+        for(int i = 0; i < length; i++){
+            if(buf.get(start + i) != word[i]){
+                return null;
+            }
+        }
+        return SLOT_TYPES[slot];
+    }
+}
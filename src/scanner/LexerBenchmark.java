@@ -0,0 +1,208 @@
+package scanner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+public class LexerBenchmark {
+    /*
+        Throughput benchmark for the scanners.
+
+        Usage: java scanner.LexerBenchmark [name=value ...]
+            file=F          repeat the C- file F instead of generating input
+            size=MB         megabytes of input (default 16)
+            idents=D        generated operands that are identifiers, 0-1 (default 0.5)
+            comments=R      share of generated text in comments, 0-1 (default 0.1)
+            nesting=N       statement nesting depth (default 3)
+            seed=S          generator seed (default 1)
+            iterations=N    timed runs per scanner, after as many warm-up runs (default 10)
+            only=NAME       run just the scanners whose name contains NAME
+
+        For each scanner this prints the best time, bytes/sec, tokens/sec
+        and the bytes allocated per token by the benchmark thread (read
+        from the JVM's per-thread allocation counter, so the parallel
+        lexer's worker threads are not counted). Run it before and after a
+        scanner change on the same settings to catch regressions.
+
+        The skip/ runs lex without keeping any tokens, with and without
+        ByteLexer's bulk skipping of white space and comments.
+     */
+
+    // Null on JVMs that don't count allocations per thread
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounter();
+
+    private String fileName;
+    private int megabytes = 16;
+    private double identDensity = 0.5;
+    private double commentRatio = 0.1;
+    private int nesting = 3;
+    private long seed = 1;
+    private int iterations = 10;
+    private String only = "";
+
+    public static void main(String[] args) throws IOException {
+        LexerBenchmark benchmark = new LexerBenchmark();
+        for(String arg : args){
+            benchmark.setOption(arg);
+        }
+        benchmark.run();
+    }
+
+    private void setOption(String arg) {
+        int equals = arg.indexOf('=');
+        if(equals < 0){
+            throw new IllegalArgumentException("Expected name=value, got " + arg);
+        }
+        String name = arg.substring(0, equals);
+        String value = arg.substring(equals + 1);
+        switch(name){
+            case "file":
+                fileName = value;
+                break;
+            case "size":
+                megabytes = Integer.parseInt(value);
+                break;
+            case "idents":
+                identDensity = Double.parseDouble(value);
+                break;
+            case "comments":
+                commentRatio = Double.parseDouble(value);
+                break;
+            case "nesting":
+                nesting = Integer.parseInt(value);
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "iterations":
+                iterations = Integer.parseInt(value);
+                break;
+            case "only":
+                only = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + name);
+        }
+    }
+
+    private void run() throws IOException {
+        byte[] source = input();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(source.length);
+        buffer.put(source).flip();
+
+        if(fileName != null){
+            System.out.println("Input: " + source.length + " bytes, " + fileName + " repeated");
+        } else {
+            System.out.printf(Locale.ROOT, "Input: %d bytes generated, idents=%.2f comments=%.2f nesting=%d seed=%d%n",
+                    source.length, identDensity, commentRatio, nesting, seed);
+        }
+        System.out.printf(Locale.ROOT, "%-14s %10s %10s %12s %12s%n", "scanner", "ms", "MB/s", "Mtokens/s", "bytes/token");
+
+        time("cminus", source.length, () -> count(new CMinusScanner(new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8)))));
+        time("mapped/switch", source.length, () -> count(new MappedScanner(buffer.duplicate(), MappedScanner.Engine.SWITCH)));
+        time("mapped/table", source.length, () -> count(new MappedScanner(buffer.duplicate(), MappedScanner.Engine.TABLE)));
+        time("channel", source.length, () -> count(new ChannelScanner(Channels.newChannel(
+                new ByteArrayInputStream(source)))));
+        time("stream", source.length, () -> TokenStream.tokenize(buffer.duplicate(), new IdentTable()).size());
+        time("parallel", source.length, () -> ParallelLexer.tokenize(buffer.duplicate(), new IdentTable()).size());
+        time("skip/char", source.length, () -> lexOnly(buffer, false));
+        time("skip/word", source.length, () -> lexOnly(buffer, true));
+    }
+
+    private byte[] input() throws IOException {
+        int size = megabytes << 20;
+        if(fileName == null){
+            CorpusGenerator generator = new CorpusGenerator(seed);
+            generator.setIdentDensity(identDensity);
+            generator.setCommentRatio(commentRatio);
+            generator.setNesting(nesting);
+            return generator.generate(size).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        // The file repeated back to back, separated by newlines
+        byte[] file = Files.readAllBytes(Paths.get(fileName));
+        int copies = Math.max(1, size / (file.length + 1));
+        byte[] source = new byte[copies * (file.length + 1)];
+        for(int i = 0; i < copies; i++){
+            System.arraycopy(file, 0, source, i * (file.length + 1), file.length);
+            source[i * (file.length + 1) + file.length] = '\n';
+        }
+        return source;
+    }
+
+    interface Lex {
+        int run() throws IOException;
+    }
+
+    private void time(String name, int bytes, Lex lex) throws IOException {
+        if(!name.contains(only)){
+            return;
+        }
+
+        // Warm up
+        int tokens = 0;
+        for(int i = 0; i < iterations; i++){
+            tokens = lex.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        for(int i = 0; i < iterations; i++){
+            long allocatedBefore = allocatedBytes();
+            long begin = System.nanoTime();
+            lex.run();
+            best = Math.min(best, System.nanoTime() - begin);
+            allocated += allocatedBytes() - allocatedBefore;
+        }
+        double seconds = best / 1e9;
+        String perToken = (ALLOCATIONS == null) ? "n/a"
+                : String.format(Locale.ROOT, "%.1f", (double) allocated / iterations / tokens);
+        System.out.printf(Locale.ROOT, "%-14s %10.2f %10.1f %12.2f %12s%n",
+                name, best / 1e6, bytes / seconds / (1 << 20), tokens / seconds / 1e6, perToken);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean){
+            return (com.sun.management.ThreadMXBean) threads;
+        }
+        return null;
+    }
+
+    // Bytes allocated so far by this thread
+    private static long allocatedBytes() {
+        if(ALLOCATIONS == null){
+            return 0;
+        }
+        return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static int count(Scanner scanner) {
+        int tokens = 1;
+        while(scanner.getNextToken().getType() != Token.TokenType.EOF_TOKEN){
+            tokens++;
+        }
+        return tokens;
+    }
+
+    // Number of tokens in buffer, found with the table engine
+    private static int lexOnly(ByteBuffer buffer, boolean fastSkip) {
+        ByteLexer lexer = new ByteLexer(buffer, buffer.position(), buffer.limit());
+        lexer.fastSkip = fastSkip;
+        int tokens = 1;
+        while(lexer.scanTable() != Token.TokenType.EOF_TOKEN){
+            tokens++;
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,192 @@
+package scanner;
+
+import scanner.CMinusScanner.StateType;
+import scanner.Token.TokenType;
+
+public final class LexerTables {
+    /*
+        The CMinusScanner DFA compiled into dense tables.
+
+        Every input character is first mapped to a character class, then
+        TRANSITIONS[state][class] says what to do next. States are the
+        ordinals of CMinusScanner.StateType. An entry is either:
+            - the next state, when the character is consumed and we keep going
+            - ACCEPT | token type ordinal, when the token is finished
+            - ACCEPT | PUSHBACK | token type ordinal, when the token is finished
+              but the character belongs to the next token
+
+        ASCII characters are classified with a 128-entry table. Anything
+        else goes through classOf(), which falls back to
+        Character.isLetter/isDigit like CMinusScanner does.
+     */
+
+    private LexerTables() {
+    }
+
+    // Character classes. Every single-character token gets its own class so
+    // the START row can accept it directly.
+    public static final int CC_OTHER = 0;
+    public static final int CC_LETTER = 1;
+    public static final int CC_DIGIT = 2;
+    public static final int CC_SPACE = 3;
+    public static final int CC_BANG = 4;
+    public static final int CC_LESS = 5;
+    public static final int CC_GREATER = 6;
+    public static final int CC_EQUAL = 7;
+    public static final int CC_SLASH = 8;
+    public static final int CC_STAR = 9;
+    public static final int CC_PLUS = 10;
+    public static final int CC_MINUS = 11;
+    public static final int CC_SEMI = 12;
+    public static final int CC_COMMA = 13;
+    public static final int CC_LEFT_PAREN = 14;
+    public static final int CC_RIGHT_PAREN = 15;
+    public static final int CC_LEFT_BRACKET = 16;
+    public static final int CC_RIGHT_BRACKET = 17;
+    public static final int CC_LEFT_BRACE = 18;
+    public static final int CC_RIGHT_BRACE = 19;
+    public static final int CC_EOF = 20;
+    public static final int NUM_CLASSES = 21;
+
+    // States, as StateType ordinals
+    public static final int START = StateType.START.ordinal();
+    public static final int INCOMMENT = StateType.INCOMMENT.ordinal();
+    public static final int NUM_STATES = StateType.values().length;
+
+    // Flags on a transition entry; the low byte is a state or a token type ordinal
+    public static final int ACCEPT = 0x100;
+    public static final int PUSHBACK = 0x200;
+    public static final int VALUE_MASK = 0xff;
+
+    public static final byte[] CHAR_CLASS = new byte[128];
+    public static final int[][] TRANSITIONS = new int[NUM_STATES][NUM_CLASSES];
+    public static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    static {
+        for(int c = 'a'; c <= 'z'; c++){
+            CHAR_CLASS[c] = CC_LETTER;
+            CHAR_CLASS[c - 'a' + 'A'] = CC_LETTER;
+        }
+        for(int c = '0'; c <= '9'; c++){
+            CHAR_CLASS[c] = CC_DIGIT;
+        }
+        CHAR_CLASS[' '] = CC_SPACE;
+        CHAR_CLASS['\t'] = CC_SPACE;
+        CHAR_CLASS['\n'] = CC_SPACE;
+        CHAR_CLASS['\r'] = CC_SPACE;
+        CHAR_CLASS['!'] = CC_BANG;
+        CHAR_CLASS['<'] = CC_LESS;
+        CHAR_CLASS['>'] = CC_GREATER;
+        CHAR_CLASS['='] = CC_EQUAL;
+        CHAR_CLASS['/'] = CC_SLASH;
+        CHAR_CLASS['*'] = CC_STAR;
+        CHAR_CLASS['+'] = CC_PLUS;
+        CHAR_CLASS['-'] = CC_MINUS;
+        CHAR_CLASS[';'] = CC_SEMI;
+        CHAR_CLASS[','] = CC_COMMA;
+        CHAR_CLASS['('] = CC_LEFT_PAREN;
+        CHAR_CLASS[')'] = CC_RIGHT_PAREN;
+        CHAR_CLASS['['] = CC_LEFT_BRACKET;
+        CHAR_CLASS[']'] = CC_RIGHT_BRACKET;
+        CHAR_CLASS['{'] = CC_LEFT_BRACE;
+        CHAR_CLASS['}'] = CC_RIGHT_BRACE;
+
+        // START: go to an intermediate state for multiple-character tokens,
+        // accept single-character tokens right away
+        fill(StateType.START, accept(TokenType.ERROR_TOKEN));
+        set(StateType.START, CC_LETTER, StateType.INID);
+        set(StateType.START, CC_DIGIT, StateType.INNUM);
+        set(StateType.START, CC_SPACE, StateType.START);
+        set(StateType.START, CC_BANG, StateType.INNOT_EQUAL);
+        set(StateType.START, CC_LESS, StateType.INLESS);
+        set(StateType.START, CC_GREATER, StateType.INGREATER);
+        set(StateType.START, CC_EQUAL, StateType.INEQUAL);
+        set(StateType.START, CC_SLASH, StateType.INDIVIDE);
+        TRANSITIONS[START][CC_STAR] = accept(TokenType.MULT_TOKEN);
+        TRANSITIONS[START][CC_PLUS] = accept(TokenType.PLUS_TOKEN);
+        TRANSITIONS[START][CC_MINUS] = accept(TokenType.MINUS_TOKEN);
+        TRANSITIONS[START][CC_SEMI] = accept(TokenType.SEMI_TOKEN);
+        TRANSITIONS[START][CC_COMMA] = accept(TokenType.COMMA_TOKEN);
+        TRANSITIONS[START][CC_LEFT_PAREN] = accept(TokenType.LEFT_PAREN_TOKEN);
+        TRANSITIONS[START][CC_RIGHT_PAREN] = accept(TokenType.RIGHT_PAREN_TOKEN);
+        TRANSITIONS[START][CC_LEFT_BRACKET] = accept(TokenType.LEFT_BRACKET_TOKEN);
+        TRANSITIONS[START][CC_RIGHT_BRACKET] = accept(TokenType.RIGHT_BRACKET_TOKEN);
+        TRANSITIONS[START][CC_LEFT_BRACE] = accept(TokenType.LEFT_BRACE_TOKEN);
+        TRANSITIONS[START][CC_RIGHT_BRACE] = accept(TokenType.RIGHT_BRACE_TOKEN);
+        TRANSITIONS[START][CC_EOF] = accept(TokenType.EOF_TOKEN);
+
+        fill(StateType.INID, pushback(TokenType.IDENT_TOKEN));
+        set(StateType.INID, CC_LETTER, StateType.INID);
+        set(StateType.INID, CC_DIGIT, StateType.INERROR);
+
+        fill(StateType.INNUM, pushback(TokenType.NUM_TOKEN));
+        set(StateType.INNUM, CC_DIGIT, StateType.INNUM);
+        set(StateType.INNUM, CC_LETTER, StateType.INERROR);
+
+        fill(StateType.INDIVIDE, pushback(TokenType.DIVIDE_TOKEN));
+        set(StateType.INDIVIDE, CC_STAR, StateType.INCOMMENT);
+
+        // An unterminated comment ends the token stream instead of looping
+        fill(StateType.INCOMMENT, StateType.INCOMMENT.ordinal());
+        set(StateType.INCOMMENT, CC_STAR, StateType.INEND_COMMENT);
+        TRANSITIONS[StateType.INCOMMENT.ordinal()][CC_EOF] = accept(TokenType.EOF_TOKEN);
+
+        fill(StateType.INEND_COMMENT, StateType.INCOMMENT.ordinal());
+        set(StateType.INEND_COMMENT, CC_SLASH, StateType.START);
+
+        fill(StateType.INLESS, pushback(TokenType.LESS_TOKEN));
+        TRANSITIONS[StateType.INLESS.ordinal()][CC_EQUAL] = accept(TokenType.LESS_EQUAL_TOKEN);
+
+        fill(StateType.INGREATER, pushback(TokenType.GREATER_TOKEN));
+        TRANSITIONS[StateType.INGREATER.ordinal()][CC_EQUAL] = accept(TokenType.GREATER_EQUAL_TOKEN);
+
+        fill(StateType.INEQUAL, pushback(TokenType.ASSIGN_TOKEN));
+        TRANSITIONS[StateType.INEQUAL.ordinal()][CC_EQUAL] = accept(TokenType.EQUAL_TOKEN);
+
+        fill(StateType.INNOT_EQUAL, pushback(TokenType.ERROR_TOKEN));
+        TRANSITIONS[StateType.INNOT_EQUAL.ordinal()][CC_EQUAL] = accept(TokenType.NOT_EQUAL_TOKEN);
+
+        // abc1234 is a single error token
+        fill(StateType.INERROR, pushback(TokenType.ERROR_TOKEN));
+        set(StateType.INERROR, CC_LETTER, StateType.INERROR);
+        set(StateType.INERROR, CC_DIGIT, StateType.INERROR);
+
+        // Should never happen
+        fill(StateType.DONE, accept(TokenType.ERROR_TOKEN));
+    }
+
+    // Character class of a character, or CC_EOF for -1
+    public static int classOf(int c) {
+        if(c < 0){
+            return CC_EOF;
+        }
+        if(c < 128){
+            return CHAR_CLASS[c];
+        }
+        if(Character.isLetter(c)){
+            return CC_LETTER;
+        }
+        if(Character.isDigit(c)){
+            return CC_DIGIT;
+        }
+        return CC_OTHER;
+    }
+
+    private static int accept(TokenType type) {
+        return ACCEPT | type.ordinal();
+    }
+
+    private static int pushback(TokenType type) {
+        return ACCEPT | PUSHBACK | type.ordinal();
+    }
+
+    private static void fill(StateType state, int entry) {
+        for(int cc = 0; cc < NUM_CLASSES; cc++){
+            TRANSITIONS[state.ordinal()][cc] = entry;
+        }
+    }
+
+    private static void set(StateType state, int charClass, StateType next) {
+        TRANSITIONS[state.ordinal()][charClass] = next.ordinal();
+    }
+}
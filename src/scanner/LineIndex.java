@@ -0,0 +1,78 @@
+package scanner;
+
+import java.nio.ByteBuffer;
+
+public class LineIndex {
+    /*
+        Offsets at which each line of a source file starts.
+
+        Scanners only record a single int offset per token. When someone
+        actually needs a line and column (an error message, say) the
+        offset is looked up here with a binary search. The index is built
+        once per file, either by the scanner as it passes newlines or in
+        one pass over a buffer.
+
+        Lines and columns are 1-based; columns count the units of the
+        offsets (chars for CMinusScanner, bytes for the buffer scanners).
+     */
+
+    private int[] lineStarts;
+    private int count;
+
+    public LineIndex() {
+        lineStarts = new int[64];
+        // Line 1 starts at offset 0 unless build() says otherwise
+        count = 1;
+    }
+
+    // Index of all line starts in the buffer's [position, limit), using absolute buffer offsets
+    public static LineIndex build(ByteBuffer buffer) {
+        LineIndex index = new LineIndex();
+        int start = buffer.position();
+        int end = buffer.limit();
+        index.lineStarts[0] = start;
+        for(int i = start; i < end; i++){
+            if(buffer.get(i) == '\n'){
+                index.addLineStart(i + 1);
+            }
+        }
+        return index;
+    }
+
+    // Records that a new line starts at offset; offsets must be added in increasing order
+    public void addLineStart(int offset) {
+        if(count == lineStarts.length){
+            int[] newStarts = new int[count * 2];
+            System.arraycopy(lineStarts, 0, newStarts, 0, count);
+            lineStarts = newStarts;
+        }
+        lineStarts[count++] = offset;
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    public int getLine(int offset) {
+        // Last line start that is <= offset
+        int low = 0;
+        int high = count - 1;
+        while(low < high){
+            int mid = (low + high + 1) >>> 1;
+            if(lineStarts[mid] <= offset){
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    public int getColumn(int offset) {
+        return offset - lineStarts[getLine(offset) - 1] + 1;
+    }
+
+    public String describe(int offset) {
+        return "line " + getLine(offset) + ", column " + getColumn(offset);
+    }
+}
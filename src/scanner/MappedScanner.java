@@ -0,0 +1,120 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class MappedScanner implements Scanner {
+    /*
+        Scanner that works directly over a (memory-mapped) ByteBuffer.
+
+        Runs the same DFA as CMinusScanner, but instead of building each
+        lexeme one character at a time it only remembers where the token
+        starts and ends in the buffer. The lexeme is only turned into a
+        String (or an int) once the token is finished, and only for
+        identifiers and numbers.
+
+        The scanning itself is done by ByteLexer.
+
+        Two engines run the DFA: SWITCH walks the states with the same
+        switch as CMinusScanner, TABLE looks each step up in LexerTables.
+     */
+
+    public enum Engine {
+        SWITCH,
+        TABLE
+    }
+
+    private ByteLexer lexer;
+    private Engine engine;
+    private IdentTable identTable;
+    private Token nextToken;
+    private LineIndex lineIndex;
+
+    public MappedScanner (String fileName) throws IOException {
+        this(mapFile(fileName), Engine.SWITCH);
+    }
+
+    public MappedScanner (String fileName, Engine engine) throws IOException {
+        this(mapFile(fileName), engine, new IdentTable());
+    }
+
+    public MappedScanner (String fileName, Engine engine, IdentTable table) throws IOException {
+        this(mapFile(fileName), engine, table);
+    }
+
+    public MappedScanner (ByteBuffer buffer) {
+        this(buffer, Engine.SWITCH);
+    }
+
+    public MappedScanner (ByteBuffer buffer, Engine engine) {
+        this(buffer, engine, new IdentTable());
+    }
+
+    public MappedScanner (ByteBuffer buffer, Engine engine, IdentTable table) {
+        lexer = new ByteLexer(buffer, buffer.position(), buffer.limit());
+        this.engine = engine;
+        identTable = table;
+        nextToken = scanToken();
+    }
+
+    // Map the whole file read-only; the mapping stays valid after the channel is closed
+    public static ByteBuffer mapFile (String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public Token getNextToken () {
+        Token returnToken = nextToken;
+        if(nextToken.getType() != TokenType.EOF_TOKEN){
+            nextToken = scanToken();
+        }
+        return returnToken;
+    }
+    public Token viewNextToken(){
+        return nextToken;
+    }
+
+    public IdentTable getIdentTable(){
+        return identTable;
+    }
+
+    // Built the first time a position has to be turned into a line and column
+    public LineIndex getLineIndex(){
+        if(lineIndex == null){
+            lineIndex = LineIndex.build(lexer.inBuffer);
+        }
+        return lineIndex;
+    }
+
+    // Buffer offsets of the token returned by viewNextToken()
+    public int getTokenStart(){
+        return lexer.tokenStart;
+    }
+    public int getTokenEnd(){
+        return lexer.tokenEnd;
+    }
+
+    private Token scanToken() {
+        TokenType currentToken;
+        if(engine == Engine.TABLE){
+            currentToken = lexer.scanTable();
+        } else {
+            currentToken = lexer.scanSwitch();
+        }
+
+        // Only identifiers and numbers need to look at their lexeme
+        if(currentToken == TokenType.IDENT_TOKEN){
+            return new Token(currentToken, identTable.getName(lexer.identId(identTable)), lexer.tokenStart);
+        }
+        if(currentToken == TokenType.NUM_TOKEN){
+            return new Token(currentToken, lexer.numberValue(), lexer.tokenStart);
+        }
+        return new Token(currentToken, null, lexer.tokenStart);
+    }
+}
+
@@ -0,0 +1,180 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class ParallelLexer {
+    /*
+        Builds a TokenStream for a large file by lexing chunks of it on a
+        ForkJoinPool.
+
+        Chunks are cut right after a white space byte. The only thing a
+        chunk needs from the one before it is the DFA state at the cut,
+        and after white space that is always START (between tokens) or
+        INCOMMENT (inside a comment). So every chunk is lexed twice, once
+        from each of those states, and the results are stitched together
+        in order: the first chunk really starts in START, and each chunk's
+        end state picks which run of the next chunk to keep.
+
+        Every run interns into its own IdentTable. Stitching re-interns the
+        ids in token order, so the ids (and everything else) come out the
+        same as TokenStream.tokenize() on the whole file.
+     */
+
+    // Below this size, splitting up the work costs more than it saves
+    public static final int DEFAULT_MIN_PARALLEL_SIZE = 1 << 20;
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private ParallelLexer() {
+    }
+
+    public static TokenStream tokenize(String fileName, IdentTable table) throws IOException {
+        return tokenize(MappedScanner.mapFile(fileName), table);
+    }
+
+    public static TokenStream tokenize(ByteBuffer buffer, IdentTable table) {
+        // Every chunk is lexed twice, so this only pays off with more than one worker
+        if(buffer.remaining() < DEFAULT_MIN_PARALLEL_SIZE || ForkJoinPool.getCommonPoolParallelism() < 2){
+            return TokenStream.tokenize(buffer, table);
+        }
+        return tokenize(buffer, table, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public static TokenStream tokenize(ByteBuffer buffer, IdentTable table, int chunkSize, ForkJoinPool pool) {
+        List<Chunk> chunks = split(buffer, chunkSize);
+        if(chunks.size() == 1){
+            return TokenStream.tokenize(buffer, table);
+        }
+        pool.invoke(new LexChunks(chunks, 0, chunks.size()));
+
+        int capacity = 16;
+        for(Chunk chunk : chunks){
+            capacity += chunk.fromStart.tokens.size();
+        }
+        TokenStream tokens = new TokenStream(capacity, table);
+        tokens.setSource(buffer);
+
+        int state = LexerTables.START;
+        for(Chunk chunk : chunks){
+            Run run = (state == LexerTables.START) ? chunk.fromStart : chunk.fromComment;
+            if(run.error != null){
+                throw run.error;
+            }
+            tokens.addAll(run.tokens);
+            state = run.endState;
+        }
+        return tokens;
+    }
+
+    // Cuts [position, limit) into chunks of about chunkSize bytes, each ending in white space
+    private static List<Chunk> split(ByteBuffer buffer, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = buffer.position();
+        int end = buffer.limit();
+        while(start < end){
+            int cut = start + chunkSize;
+            while(cut < end && !isSpace(buffer.get(cut - 1))){
+                cut++;
+            }
+            if(cut >= end){
+                cut = end;
+            }
+            chunks.add(new Chunk(buffer, start, cut, cut == end));
+            start = cut;
+        }
+        if(chunks.isEmpty()){
+            chunks.add(new Chunk(buffer, start, end, true));
+        }
+        return chunks;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        final int start;
+        final int end;
+        final boolean last;
+        Run fromStart;
+        Run fromComment;
+
+        Chunk(ByteBuffer buffer, int start, int end, boolean last) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.last = last;
+        }
+
+        void lex() {
+            fromStart = new Run(this, LexerTables.START);
+            fromComment = new Run(this, LexerTables.INCOMMENT);
+        }
+    }
+
+    // The tokens of one chunk, lexed as if the chunk started in startState
+    private static final class Run {
+        TokenStream tokens;
+        int endState;
+        // Thrown only if this run ends up being used
+        RuntimeException error;
+
+        Run(Chunk chunk, int startState) {
+            IdentTable table = new IdentTable();
+            tokens = new TokenStream(Math.max(16, (chunk.end - chunk.start) / 4), table);
+            ByteLexer lexer = new ByteLexer(chunk.buffer, chunk.start, chunk.end);
+            lexer.state = startState;
+            lexer.endOfInput = chunk.last;
+
+            try {
+                TokenType type = lexer.scanTable();
+                while(type != null){
+                    int tokenValue = 0;
+                    if(type == TokenType.IDENT_TOKEN){
+                        tokenValue = lexer.identId(table);
+                    } else if (type == TokenType.NUM_TOKEN){
+                        tokenValue = lexer.numberValue();
+                    }
+                    tokens.add(type.ordinal(), lexer.tokenStart, lexer.tokenEnd - lexer.tokenStart, tokenValue);
+                    if(type == TokenType.EOF_TOKEN){
+                        break;
+                    }
+                    type = lexer.scanTable();
+                }
+            } catch (NumberFormatException e) {
+                error = e;
+            }
+            endState = lexer.state;
+        }
+    }
+
+    private static final class LexChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+
+        LexChunks(List<Chunk> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from == 1){
+                chunks.get(from).lex();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LexChunks(chunks, from, mid), new LexChunks(chunks, mid, to));
+        }
+    }
+}
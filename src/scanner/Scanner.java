@@ -3,4 +3,14 @@ package scanner;
 public interface Scanner {
     public Token getNextToken();
     public Token viewNextToken();
+    
+    // Line starts of the source, for turning Token positions into line/column; null if not tracked
+    public default LineIndex getLineIndex() {
+        return null;
+    }
+    
+    // Position of the token viewNextToken() returns, -1 if unknown
+    public default int viewNextPosition() {
+        return viewNextToken().getPosition();
+    }
 }
\ No newline at end of file
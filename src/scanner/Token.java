@@ -37,14 +37,21 @@ public class Token {
     
     private TokenType tokenType;
     private Object tokenData;
+    // Offset of the token in its source, -1 if unknown; the scanner's LineIndex turns it into line/column
+    private int position;
     
     public Token (TokenType type){
         this(type, null);
     }
     
     public Token(TokenType type, Object data){
+        this(type, data, -1);
+    }
+    
+    public Token(TokenType type, Object data, int offset){
         tokenType = type;
         tokenData = data;
+        position = offset;
     }
     
     public TokenType getType (){
@@ -59,6 +66,10 @@ public class Token {
         tokenData = data;
     }
     
+    public int getPosition (){
+        return position;
+    }
+    
     public String toString (){
         String returnString = "";
         
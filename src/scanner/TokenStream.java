@@ -0,0 +1,304 @@
+package scanner;
+
+import scanner.Token.TokenType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TokenStream {
+    /*
+        A whole file scanned up front into parallel primitive arrays.
+
+        Token i has kind[i] (a TokenType ordinal), start[i] and length[i]
+        (byte offsets into the source) and value[i], which is the
+        IdentTable id for identifiers, the number for NUM_TOKEN and 0 for
+        everything else. The last token is always EOF_TOKEN.
+
+        cursor() walks the arrays through the Scanner interface. The
+        Token objects it hands out are shared: one per token type, one
+        per identifier id and one per distinct number, so parsing from a
+        cursor does not allocate per token. Shared tokens carry no
+        position; getStart() and getLineIndex() locate token i instead.
+     */
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private byte[] kind;
+    private int[] start;
+    private int[] length;
+    private int[] value;
+    private int count;
+    private IdentTable identTable;
+    private ByteBuffer source;
+    private LineIndex lineIndex;
+
+    TokenStream(int capacity, IdentTable table) {
+        kind = new byte[capacity];
+        start = new int[capacity];
+        length = new int[capacity];
+        value = new int[capacity];
+        count = 0;
+        identTable = table;
+    }
+
+    public static TokenStream tokenize(String fileName, IdentTable table) throws IOException {
+        return tokenize(MappedScanner.mapFile(fileName), table);
+    }
+
+    public static TokenStream tokenize(ByteBuffer buffer, IdentTable table) {
+        // Real code averages well over 4 bytes a token, so this rarely has to grow
+        int capacity = Math.max(16, buffer.remaining() / 4);
+        TokenStream tokens = new TokenStream(capacity, table);
+        tokens.source = buffer;
+        ByteLexer lexer = new ByteLexer(buffer, buffer.position(), buffer.limit());
+
+        TokenType type;
+        do {
+            type = lexer.scanTable();
+            int tokenValue = 0;
+            if(type == TokenType.IDENT_TOKEN){
+                tokenValue = lexer.identId(table);
+            } else if (type == TokenType.NUM_TOKEN){
+                tokenValue = lexer.numberValue();
+            }
+            tokens.add(type.ordinal(), lexer.tokenStart, lexer.tokenEnd - lexer.tokenStart, tokenValue);
+        } while(type != TokenType.EOF_TOKEN);
+
+        return tokens;
+    }
+
+    void add(int tokenKind, int tokenStart, int tokenLength, int tokenValue) {
+        if(count == kind.length){
+            grow(count * 2);
+        }
+        kind[count] = (byte) tokenKind;
+        start[count] = tokenStart;
+        length[count] = tokenLength;
+        value[count] = tokenValue;
+        count++;
+    }
+
+    // Appends all of other's tokens; identifier ids are re-interned into this stream's table
+    void addAll(TokenStream other) {
+        if(count + other.count > kind.length){
+            grow(Math.max(count + other.count, count * 2));
+        }
+        System.arraycopy(other.kind, 0, kind, count, other.count);
+        System.arraycopy(other.start, 0, start, count, other.count);
+        System.arraycopy(other.length, 0, length, count, other.count);
+        System.arraycopy(other.value, 0, value, count, other.count);
+
+        // Map the other table's ids in token order, so ids still follow first appearance
+        int[] idMap = new int[other.identTable.size()];
+        Arrays.fill(idMap, -1);
+        int identKind = TokenType.IDENT_TOKEN.ordinal();
+        for(int i = count; i < count + other.count; i++){
+            if(kind[i] == identKind){
+                int otherId = value[i];
+                if(idMap[otherId] < 0){
+                    idMap[otherId] = identTable.intern(other.identTable.getName(otherId));
+                }
+                value[i] = idMap[otherId];
+            }
+        }
+        count += other.count;
+    }
+
+    // Appends other's tokens [from, to) with their starts moved by shift; both must share a table
+    void addRange(TokenStream other, int from, int to, int shift) {
+        int n = to - from;
+        if(count + n > kind.length){
+            grow(Math.max(count + n, count * 2));
+        }
+        System.arraycopy(other.kind, from, kind, count, n);
+        System.arraycopy(other.length, from, length, count, n);
+        System.arraycopy(other.value, from, value, count, n);
+        for(int i = 0; i < n; i++){
+            start[count + i] = other.start[from + i] + shift;
+        }
+        count += n;
+    }
+
+    ByteBuffer getSource() {
+        return source;
+    }
+
+    void setSource(ByteBuffer buffer) {
+        source = buffer;
+    }
+
+    private void grow(int newCapacity) {
+        byte[] newKind = new byte[newCapacity];
+        int[] newStart = new int[newCapacity];
+        int[] newLength = new int[newCapacity];
+        int[] newValue = new int[newCapacity];
+        System.arraycopy(kind, 0, newKind, 0, count);
+        System.arraycopy(start, 0, newStart, 0, count);
+        System.arraycopy(length, 0, newLength, 0, count);
+        System.arraycopy(value, 0, newValue, 0, count);
+        kind = newKind;
+        start = newStart;
+        length = newLength;
+        value = newValue;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public TokenType getType(int index) {
+        return TOKEN_TYPES[kind[index]];
+    }
+
+    public int getKind(int index) {
+        return kind[index];
+    }
+
+    public int getStart(int index) {
+        return start[index];
+    }
+
+    public int getLength(int index) {
+        return length[index];
+    }
+
+    public int getValue(int index) {
+        return value[index];
+    }
+
+    public IdentTable getIdentTable() {
+        return identTable;
+    }
+
+    // Built the first time a position has to be turned into a line and column
+    public LineIndex getLineIndex() {
+        if(lineIndex == null){
+            lineIndex = LineIndex.build(source);
+        }
+        return lineIndex;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public class Cursor implements Scanner {
+        private int index;
+        private Token[] typeTokens;
+        private Token[] identTokens;
+        // Open addressing cache of NUM tokens, keyed by value
+        private int[] numKeys;
+        private Token[] numTokens;
+        private int numCount;
+
+        public Cursor() {
+            index = 0;
+            typeTokens = new Token[TOKEN_TYPES.length];
+            for(int i = 0; i < TOKEN_TYPES.length; i++){
+                typeTokens[i] = new Token(TOKEN_TYPES[i]);
+            }
+            identTokens = new Token[Math.max(16, identTable.size())];
+            numKeys = new int[64];
+            numTokens = new Token[64];
+            numCount = 0;
+        }
+
+        // Index of the token viewNextToken() returns
+        public int getIndex() {
+            return index;
+        }
+
+        public int viewNextKind() {
+            return kind[index];
+        }
+
+        public Token getNextToken() {
+            Token returnToken = tokenAt(index);
+            if(index < count - 1){
+                index++;
+            }
+            return returnToken;
+        }
+
+        public Token viewNextToken() {
+            return tokenAt(index);
+        }
+
+        public int viewNextPosition() {
+            return start[index];
+        }
+
+        public LineIndex getLineIndex() {
+            return TokenStream.this.getLineIndex();
+        }
+
+        private Token tokenAt(int i) {
+            int tokenKind = kind[i];
+            if(tokenKind == TokenType.IDENT_TOKEN.ordinal()){
+                return identToken(value[i]);
+            }
+            if(tokenKind == TokenType.NUM_TOKEN.ordinal()){
+                return numToken(value[i]);
+            }
+            return typeTokens[tokenKind];
+        }
+
+        private Token identToken(int id) {
+            if(id >= identTokens.length){
+                Token[] newTokens = new Token[Math.max(id + 1, identTokens.length * 2)];
+                System.arraycopy(identTokens, 0, newTokens, 0, identTokens.length);
+                identTokens = newTokens;
+            }
+            Token token = identTokens[id];
+            if(token == null){
+                token = new Token(TokenType.IDENT_TOKEN, identTable.getName(id));
+                identTokens[id] = token;
+            }
+            return token;
+        }
+
+        private Token numToken(int num) {
+            int mask = numKeys.length - 1;
+            int slot = numSlot(num, mask);
+            while(numTokens[slot] != null){
+                if(numKeys[slot] == num){
+                    return numTokens[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            Token token = new Token(TokenType.NUM_TOKEN, num);
+            numKeys[slot] = num;
+            numTokens[slot] = token;
+            numCount++;
+
+            // Keep the cache at most half full
+            if(numCount * 2 > numKeys.length){
+                growNumCache();
+            }
+            return token;
+        }
+
+        private int numSlot(int num, int mask) {
+            int hash = num * 0x9e3779b9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private void growNumCache() {
+            int[] oldKeys = numKeys;
+            Token[] oldTokens = numTokens;
+            numKeys = new int[oldKeys.length * 2];
+            numTokens = new Token[oldKeys.length * 2];
+            int mask = numKeys.length - 1;
+            for(int i = 0; i < oldKeys.length; i++){
+                if(oldTokens[i] != null){
+                    int slot = numSlot(oldKeys[i], mask);
+                    while(numTokens[slot] != null){
+                        slot = (slot + 1) & mask;
+                    }
+                    numKeys[slot] = oldKeys[i];
+                    numTokens[slot] = oldTokens[i];
+                }
+            }
+        }
+    }
+}
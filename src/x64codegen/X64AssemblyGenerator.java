@@ -77,7 +77,7 @@ public class X64AssemblyGenerator {
 			break;
 
 		    case JMP:
-			int tgt = ((Integer) currOper.getSrcOperand(0).getValue()).intValue();
+			int tgt = currOper.getSrcOperand(0).getBlockNum();
 			outFile.println("\tjmp\t" + func.getName() + "_bb" + tgt);
 			break;
 
@@ -85,191 +85,67 @@ public class X64AssemblyGenerator {
 			outFile.print("\tpushl\t");
 			Operand src = currOper.getSrcOperand(0);
 			if (src.getType() == Operand.OperandType.REGISTER) {
-			    outFile.println("%" + ((String) src.getValue()));
+			    outFile.println("%" + src.getName());
 			} else {
-			    outFile.println("$" + ((Integer) src.getValue()).intValue());
+			    outFile.println("$" + src.getImmediate());
 			}
 			break;
 
 		    case CALL:
 			outFile.println("\tcall\t"
-				+ ((String) currOper.getSrcOperand(0).getValue()));
+				+ currOper.getSrcOperand(0).getName());
 			break;
 
 		    case LOAD_I:
 		    case X64_LOAD_Q:
 
-			boolean stackArrayOp = false;
-			if (currOper.getSrcOperand(0).getValue() == "ESP") {
-			    stackArrayOp = true;
-			    outFile.println("\tcltq");
-			}
-
-			// movl  (%ebx), %eax   or   movl   a, %eax  or movl 4(%eax), %ebx
+			// movl  a(%RIP), %eax   or   movl 8(%RSP,%RBX,4), %eax
 			outFile.print("\tmovl\t");
-			Operand src0 = currOper.getSrcOperand(0);
-			Operand src1 = currOper.getSrcOperand(1);
-
-			// only used for stack loads (local arrays)
-			Operand src2 = currOper.getSrcOperand(2);
-
-			if (src0.getType() == Operand.OperandType.STRING) {
-			    outFile.print(((String) currOper.getSrcOperand(0).getValue()));
-			    if (src1 != null) {
-				if (src1.getType() == Operand.OperandType.INTEGER) {
-				    if (((Integer) src1.getValue()).intValue() != 0) {
-					outFile.print("+" + ((Integer) src1.getValue()).intValue());
-				    } else {
-					outFile.print("(%RIP)");
-				    }
-				} else if (src1.getType() == Operand.OperandType.MACRO) {
-				    outFile.print("(%" + src1.getValue() + ")");
-				} else {
-				    throw new X86CodegenException("assembleLoad: unexpected src1");
-				}
-			    } else {
-				outFile.print("(%RIP)");
-			    }
-			} else if (src0.getType() == Operand.OperandType.MACRO) {
-			    if (src1 != null) {
-				if (src1.getType() == Operand.OperandType.INTEGER) {
-				    if (((Integer) src1.getValue()).intValue() != 0) {
-					outFile.print(((Integer) src1.getValue()).intValue());
-				    }
-				    if (stackArrayOp) {
-					outFile.print("(%"
-						+ ((String) convertTo64BitRegName((String)currOper.getSrcOperand(0).getValue())));
-					if (src2 != null) {
-					    if (src2.getType() == Operand.OperandType.MACRO) {
-						outFile.print(",%" + convertTo64BitRegName((String) currOper.getSrcOperand(2).getValue()));
-					    } else {
-						throw new X86CodegenException(
-							"assembleLoad: unexpected src2");
-					    }
-					}
-				    } else {
-					outFile.print("(%"
-						+ ((String) currOper.getSrcOperand(0).getValue()));
-					if (src2 != null) {
-					    if (src2.getType() == Operand.OperandType.MACRO) {
-						outFile.print(",%" + currOper.getSrcOperand(2).getValue());
-					    } else {
-						throw new X86CodegenException(
-							"assembleLoad: unexpected src2");
-					    }
-					}
-				    }
-				    outFile.print(")");
-
-				} else if (src1.getType() == Operand.OperandType.MACRO) {
-				    outFile.print("(%"
-					    + ((String) currOper.getSrcOperand(0).getValue()));
-				    outFile.print(",%" + currOper.getSrcOperand(2).getValue());
-				    outFile.print(")");
-				} else {
-				    throw new X86CodegenException("assembleLoad: unexpected src1");
-				}
-			    } else {
-				outFile.print("(%"
-					+ ((String) currOper.getSrcOperand(0).getValue())
-					+ ")");
-			    }
-			} else {
-			    throw new X86CodegenException("assembleLoad: unexpected src0");
-			}
+			printAddress(currOper, 0);
 			outFile.println(", %"
-				+ ((String) currOper.getDestOperand(0).getValue()));
+				+ currOper.getDestOperand(0).getName());
 			break;
 
 		    case STORE_I:
 		    case X64_STORE_Q:
 
-			// movl   %ebx, (%eax)  or  movl $2, (%eax)  or movl %eax, a
-			// or movl %ebx, 8(%eax)   or movl %ebx, 8(a)
-			stackArrayOp = false;
-			if (currOper.getSrcOperand(1).getValue() == "ESP") {
-			    stackArrayOp = true;
-			    outFile.println("\tcltq");
-			}
-
+			// movl   %ebx, (%RAX)  or  movl $2, a(%RIP)  or movl %ebx, 8(%RSP,%RCX,4)
 			outFile.print("\tmovl\t");
-			src0 = currOper.getSrcOperand(0);
+			Operand src0 = currOper.getSrcOperand(0);
 			if (src0.getType() == Operand.OperandType.INTEGER) {
-			    outFile.print("$" + ((Integer) src0.getValue()).intValue()
+			    outFile.print("$" + src0.getImmediate()
 				    + ", ");
 			} else {
-			    outFile.print("%" + ((String) src0.getValue()) + ", ");
-			}
-			src1 = currOper.getSrcOperand(1);
-			src2 = currOper.getSrcOperand(2);
-			Operand src3 = currOper.getSrcOperand(3);
-
-			if (src1.getType() == Operand.OperandType.MACRO) {
-
-			    if (src2 != null) {
-				if (src2.getType() == Operand.OperandType.INTEGER) {
-				    if (((Integer) src2.getValue()).intValue() != 0) {
-					outFile.print(((Integer) src2.getValue()).intValue());
-				    }
-				    if (stackArrayOp) {
-					outFile.print("(%"
-						+ ((String) convertTo64BitRegName((String) src1.getValue())));
-					if (src3 != null) {
-					    if (src3.getType() == Operand.OperandType.MACRO) {
-						outFile.print(",%" + convertTo64BitRegName((String) currOper.getSrcOperand(3).getValue()));
-					    } else {
-						throw new X86CodegenException(
-							"assembleStore: unexpected src3");
-					    }
-					}
-					outFile.println(")");
-				    } else {
-					outFile.print("(%"
-						+ ((String) src1.getValue()));
-					if (src3 != null) {
-					    if (src3.getType() == Operand.OperandType.MACRO) {
-						outFile.print(",%" + currOper.getSrcOperand(3).getValue());
-					    } else {
-						throw new X86CodegenException(
-							"assembleStore: unexpected src3");
-					    }
-					}
-					outFile.println(")");
-				    }
-				} else {
-				    throw new X86CodegenException(
-					    "assembleStore: unexpected src2");
-				}
-			    }
-			} // else is global
-			else {
-			    outFile.print(((String) src1.getValue()));
-			    if (src2 != null) {
-				if (src2.getType() == Operand.OperandType.INTEGER) {
-				    if (((Integer) src2.getValue()).intValue() != 0) {
-					outFile.println("+" + ((Integer) src2.getValue()).intValue());
-				    } else {
-					outFile.println("(%RIP)");
-				    }
-				} else if (src2.getType() == Operand.OperandType.MACRO) {
-				    outFile.println("(%" + src2.getValue() + ")");
-				} else {
-				    throw new X86CodegenException(
-					    "assembleStore: unexpected src2");
-				}
-			    } else {
-				outFile.println("(%RIP)");
-			    }
+			    outFile.print("%" + src0.getName() + ", ");
 			}
+			printAddress(currOper, 1);
+			outFile.println();
+			break;
+
+		    case LOAD_ADDR:
+
+			// leaq  a(%RIP), %RAX   or   leaq 16(%RSP), %RAX
+			outFile.print("\tleaq\t");
+			printAddress(currOper, 0);
+			outFile.println(", %" + convertTo64BitRegName(currOper.getDestOperand(0).getName()));
+			break;
+
+		    case X64_MOV_Q:
+
+			// movq  %RDI, %RBX   (an address)
+			outFile.println("\tmovq\t%"
+				+ convertTo64BitRegName(currOper.getSrcOperand(0).getName())
+				+ ", %"
+				+ convertTo64BitRegName(currOper.getDestOperand(0).getName()));
 			break;
 
 		    case X86_PUSH:
 			outFile.print("\tpushq\t");
 			src0 = currOper.getSrcOperand(0);
 			if (src0.getType() == Operand.OperandType.INTEGER) {
-			    outFile.println("$" + ((Integer) src0.getValue()).intValue());
+			    outFile.println("$" + src0.getImmediate());
 			} else {
-			    String regName = convertTo64BitRegName((String) src0.getValue());
+			    String regName = convertTo64BitRegName(src0.getName());
 			    outFile.println("%" + regName);
 			}
 			break;
@@ -278,9 +154,9 @@ public class X64AssemblyGenerator {
 			outFile.print("\tpopq\t");
 			Operand dest0 = currOper.getDestOperand(0);
 			if (dest0.getType() == Operand.OperandType.INTEGER) {
-			    outFile.println("$" + ((Integer) dest0.getValue()).intValue());
+			    outFile.println("$" + dest0.getImmediate());
 			} else {
-			    String regName = convertTo64BitRegName((String) dest0.getValue());
+			    String regName = convertTo64BitRegName(dest0.getName());
 			    outFile.println("%" + regName);
 			}
 			break;
@@ -292,28 +168,28 @@ public class X64AssemblyGenerator {
 			outFile.print("\tmovl\t");
 			src0 = currOper.getSrcOperand(0);
 			if (src0.getType() == Operand.OperandType.INTEGER) {
-			    outFile.print("$" + ((Integer) src0.getValue()).intValue());
+			    outFile.print("$" + src0.getImmediate());
 			} else {
-			    outFile.print("%" + ((String) src0.getValue()));
+			    outFile.print("%" + src0.getName());
 			}
 			outFile.println(", %"
-				+ ((String) currOper.getDestOperand(0).getValue()));
+				+ currOper.getDestOperand(0).getName());
 			break;
 
 		    case X86_CMP:
 			outFile.print("\tcmpl\t");
-			src1 = currOper.getSrcOperand(1);
+			Operand src1 = currOper.getSrcOperand(1);
 			if (src1.getType() == Operand.OperandType.INTEGER) {
-			    outFile.print("$" + ((Integer) src1.getValue()).intValue()
+			    outFile.print("$" + src1.getImmediate()
 				    + ", ");
 			} else {
-			    outFile.print("%" + ((String) src1.getValue()) + ", ");
+			    outFile.print("%" + src1.getName() + ", ");
 			}
 			src0 = currOper.getSrcOperand(0);
 			if (src0.getType() == Operand.OperandType.INTEGER) {
-			    outFile.println("$" + ((Integer) src0.getValue()).intValue());
+			    outFile.println("$" + src0.getImmediate());
 			} else {
-			    outFile.println("%" + ((String) src0.getValue()));
+			    outFile.println("%" + src0.getName());
 			}
 			break;
 
@@ -346,6 +222,45 @@ public class X64AssemblyGenerator {
 	}
     }
 
+    // prints the address of a memory oper, whose src operands from first on
+    // are base, displacement and index:  a+8(%RIP)  or  8(%RSP,%RBX,4)
+    // addresses are 64 bits, so the regs in them are too; an index reg was
+    // written as 32 bits, which zeroes its top half
+    private void printAddress(Operation oper, int first) {
+	Operand base = oper.getSrcOperand(first);
+	Operand disp = oper.getSrcOperand(first + 1);
+	Operand index = oper.getSrcOperand(first + 2);
+	int offset = 0;
+	if (disp != null) {
+	    if (disp.getType() != Operand.OperandType.INTEGER) {
+		throw new X86CodegenException("assembler: unexpected displacement");
+	    }
+	    offset = disp.getImmediate();
+	}
+
+	if (base.getType() == Operand.OperandType.STRING) {
+	    if (index != null) {
+		throw new X86CodegenException("assembler: global can't have an index reg");
+	    }
+	    outFile.print(base.getName());
+	    if (offset != 0) {
+		outFile.print("+" + offset);
+	    }
+	    outFile.print("(%RIP)");
+	} else if (base.getType() == Operand.OperandType.MACRO) {
+	    if (offset != 0) {
+		outFile.print(offset);
+	    }
+	    outFile.print("(%" + convertTo64BitRegName(base.getName()));
+	    if (index != null) {
+		outFile.print(",%" + convertTo64BitRegName(index.getName()) + ",4");
+	    }
+	    outFile.print(")");
+	} else {
+	    throw new X86CodegenException("assembler: unexpected address base");
+	}
+    }
+
     private String convertTo64BitRegName(String name) {
 	if (name.equalsIgnoreCase("EAX")) {
 	    return "RAX";
@@ -404,9 +319,9 @@ public class X64AssemblyGenerator {
 
 	Operand src1 = oper.getSrcOperand(1);
 	if (src1.getType() == Operand.OperandType.INTEGER) {
-	    outFile.print("$" + ((Integer) src1.getValue()).intValue());
+	    outFile.print("$" + src1.getImmediate());
 	} else {
-	    String src1Str = (String) src1.getValue();
+	    String src1Str = src1.getName();
 	    if (oper.getType() == Operation.OperationType.X64_ADD_Q
 		    || oper.getType() == Operation.OperationType.X64_SUB_Q) {
 		src1Str = convertTo64BitRegName(src1Str);
@@ -416,9 +331,9 @@ public class X64AssemblyGenerator {
 	outFile.print(", ");
 	Operand src0 = oper.getSrcOperand(0);
 	if (src0.getType() == Operand.OperandType.INTEGER) {
-	    outFile.println("$" + ((Integer) src0.getValue()).intValue());
+	    outFile.println("$" + src0.getImmediate());
 	} else {
-	    String src0Str = (String) src0.getValue();
+	    String src0Str = src0.getName();
 	    if (oper.getType() == Operation.OperationType.X64_ADD_Q
 		    || oper.getType() == Operation.OperationType.X64_SUB_Q) {
 		src0Str = convertTo64BitRegName(src0Str);
@@ -455,7 +370,7 @@ public class X64AssemblyGenerator {
 		throw new X86CodegenException("assembleBranch: bad oper type");
 	}
 	outFile.println(oper.getBlock().getFunc().getName() + "_bb"
-		+ ((Integer) oper.getSrcOperand(0).getValue()).intValue());
+		+ oper.getSrcOperand(0).getBlockNum());
     }
 
     private void peepholeOpti(Function func) {
@@ -473,7 +388,8 @@ public class X64AssemblyGenerator {
 		// be unable to follow its next ptr at end of loop
 		nextOper = currOper.getNextOper();
 		if ((currOper.getType() != Operation.OperationType.ASSIGN)
-			&& (currOper.getType() != Operation.OperationType.X86_MOV)) {
+			&& (currOper.getType() != Operation.OperationType.X86_MOV)
+			&& (currOper.getType() != Operation.OperationType.X64_MOV_Q)) {
 		    continue;
 		}
 		if (currOper.getDestOperand(0).getType() != Operand.OperandType.MACRO) {
@@ -482,8 +398,8 @@ public class X64AssemblyGenerator {
 		if (currOper.getSrcOperand(0).getType() != Operand.OperandType.MACRO) {
 		    continue;
 		}
-		String dest = (String) currOper.getDestOperand(0).getValue();
-		String src = (String) currOper.getSrcOperand(0).getValue();
+		String dest = currOper.getDestOperand(0).getName();
+		String src = currOper.getSrcOperand(0).getName();
 		if (dest.compareTo(src) == 0) {
 		    currBlock.removeOper(currOper);
 		}
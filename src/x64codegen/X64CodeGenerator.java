@@ -1,5 +1,7 @@
 package x64codegen;
 
+import java.util.HashSet;
+
 import lowlevel.*;
 
 public class X64CodeGenerator {
@@ -7,6 +9,8 @@ public class X64CodeGenerator {
 
     private static final int FIRST_PARAM_OFFSET = 4;
     private CodeItem firstItem;
+    // regs of the function being converted that hold an address (64 bits)
+    private HashSet<Integer> addressRegs;
 
     public X64CodeGenerator(CodeItem first) {
         firstItem = first;
@@ -28,6 +32,8 @@ public class X64CodeGenerator {
                 continue;
             }
             Function func = (Function) currItem;
+            // keep RSP 16-byte aligned relative to entry; frame holds local arrays
+            func.setFrameSize((func.getFrameSize() + 15) & ~15);
             for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
                     currBlock = currBlock.getNextBlock()) {
                 if ((currBlock.getFirstOper() != null) &&
@@ -65,7 +71,7 @@ public class X64CodeGenerator {
             Operation oper3 = new Operation(Operation.OperationType.X64_SUB_Q, block);
             Operand src0 = new Operand(Operand.OperandType.MACRO, "RSP");
             oper3.setSrcOperand(0, src0);
-            Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(frameSize));
+            Operand src1 = new Operand(Operand.OperandType.INTEGER, frameSize);
             oper3.setSrcOperand(1, src1);
             Operand dest0 = new Operand(Operand.OperandType.MACRO, "RSP");
             oper3.setDestOperand(0, dest0);
@@ -87,11 +93,13 @@ public class X64CodeGenerator {
                 currParam = currParam.getNextParam()) {
             String name = currParam.getName();
             int regNum = ((Integer) func.getTable().get(name)).intValue();
-            Operation assignOper = new Operation(Operation.OperationType.ASSIGN, block);
+            // an array param is an address, so needs all 64 bits of the reg
+            Operation assignOper = new Operation(currParam.getIsArray()
+                    ? Operation.OperationType.X64_MOV_Q : Operation.OperationType.ASSIGN, block);
             String passRegName = getX64PassRegNameFromNum(paramNum);
             Operand src0 = new Operand(Operand.OperandType.MACRO, passRegName);
             assignOper.setSrcOperand(0, src0);
-            Operand dest0 = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+            Operand dest0 = new Operand(Operand.OperandType.REGISTER, regNum);
             assignOper.setDestOperand(0, dest0);
             if (currOper == null) {
                 block.insertFirst(assignOper);
@@ -138,7 +146,7 @@ public class X64CodeGenerator {
             oper3 = new Operation(Operation.OperationType.X64_ADD_Q, block);
             Operand src0 = new Operand(Operand.OperandType.MACRO, "RSP");
             oper3.setSrcOperand(0, src0);
-            Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(frameSize));
+            Operand src1 = new Operand(Operand.OperandType.INTEGER, frameSize);
             oper3.setSrcOperand(1, src1);
             Operand dest0 = new Operand(Operand.OperandType.MACRO, "RSP");
             oper3.setDestOperand(0, dest0);
@@ -159,23 +167,23 @@ public class X64CodeGenerator {
                 for (Operation currOper = currBlock.getFirstOper(); currOper != null;
                         currOper = currOper.getNextOper()) {
 
-                    for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+                    for (int i = 0; i < currOper.destCount(); i++) {
                         Operand currOperand = currOper.getDestOperand(i);
                         if ((currOperand != null) &&
                                 (currOperand.getType() == Operand.OperandType.MACRO)) {
-                            if (((String) currOperand.getValue()).compareTo("RetReg") == 0) {
-                                currOperand.setValue(new String("EAX"));
+                            if (currOperand.getName().compareTo("RetReg") == 0) {
+                                currOper.setDestOperand(i, new Operand(Operand.OperandType.MACRO, "EAX"));
                             }
                         }
                     }
 
                     // update for uses
-                    for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+                    for (int i = 0; i < currOper.srcCount(); i++) {
                         Operand currOperand = currOper.getSrcOperand(i);
                         if ((currOperand != null) &&
                                 (currOperand.getType() == Operand.OperandType.MACRO)) {
-                            if (((String) currOperand.getValue()).compareTo("RetReg") == 0) {
-                                currOperand.setValue(new String("EAX"));
+                            if (currOperand.getName().compareTo("RetReg") == 0) {
+                                currOper.setSrcOperand(i, new Operand(Operand.OperandType.MACRO, "EAX"));
                             }
                         }
                     }
@@ -191,6 +199,7 @@ public class X64CodeGenerator {
                 continue;
             }
             Function func = (Function) currItem;
+            addressRegs = findAddressRegs(func);
             for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
                     currBlock = currBlock.getNextBlock()) {
                 for (Operation currOper = currBlock.getFirstOper(); currOper != null;
@@ -233,9 +242,14 @@ public class X64CodeGenerator {
                         case FUNC_ENTRY:
                         case FUNC_EXIT:
                         case RETURN:
-                        case JMP:
                         case LOAD_I:
+                            x64ConvertMemoryOper(currOper, 0);
+                            break;
                         case STORE_I:
+                            x64ConvertMemoryOper(currOper, 1);
+                            break;
+                        case JMP:
+                        case LOAD_ADDR:
                         case X86_PUSH:
                         case X86_POP:
                         case X86_MOV:
@@ -252,6 +266,7 @@ public class X64CodeGenerator {
                         case X64_SUB_Q:
                         case X64_LOAD_Q:
                         case X64_STORE_Q:
+                        case X64_MOV_Q:
                             break;
                         default:
                             throw new X64CodegenException("convertOper: unexpected op type");
@@ -262,8 +277,57 @@ public class X64CodeGenerator {
     }
 
     public void x64ConvertAssignOper(Operation oper) {
-        // Simply change to a MOV oper
-        oper.setType(Operation.OperationType.X86_MOV);
+        // Simply change to a MOV oper; a quad MOV if it moves an address
+        oper.setType(x64GetMovType(oper.getSrcOperand(0)));
+    }
+
+    private Operation.OperationType x64GetMovType(Operand src) {
+        if (src.getType() == Operand.OperandType.REGISTER
+                && addressRegs.contains(src.getRegNum())) {
+            return Operation.OperationType.X64_MOV_Q;
+        }
+        return Operation.OperationType.X86_MOV;
+    }
+
+    // the regs holding addresses: LoadAddr results and array params
+    private HashSet<Integer> findAddressRegs(Function func) {
+        HashSet<Integer> regs = new HashSet<Integer>();
+        for (FuncParam currParam = func.getfirstParam(); currParam != null;
+                currParam = currParam.getNextParam()) {
+            if (currParam.getIsArray()) {
+                regs.add(func.getTable().get(currParam.getName()));
+            }
+        }
+        for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
+                currBlock = currBlock.getNextBlock()) {
+            for (Operation currOper = currBlock.getFirstOper(); currOper != null;
+                    currOper = currOper.getNextOper()) {
+                if (currOper.getType() == Operation.OperationType.LOAD_ADDR) {
+                    regs.add(currOper.getDestOperand(0).getRegNum());
+                }
+            }
+        }
+        return regs;
+    }
+
+    // Memory opers address [base + disp + 4*index], from src operand first on.
+    // x64 can't index off a global RIP-relative, so a global array with an
+    // index gets its address loaded into a reg first:
+    // R1 = a[R2]  =>  R3 = &a; R1 = [R3 + 4*R2]
+    private void x64ConvertMemoryOper(Operation oper, int first) {
+        Operand base = oper.getSrcOperand(first);
+        if (base.getType() != Operand.OperandType.STRING
+                || oper.getSrcOperand(first + 2) == null) {
+            return;
+        }
+        BasicBlock block = oper.getBlock();
+        int regNum = block.getFunc().getNewRegNum();
+        Operation addr = new Operation(Operation.OperationType.LOAD_ADDR, block);
+        addr.setSrcOperand(0, base);
+        addr.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER, 0));
+        addr.setDestOperand(0, new Operand(Operand.OperandType.REGISTER, regNum));
+        block.insertOperBefore(oper, addr);
+        oper.setSrcOperand(first, new Operand(Operand.OperandType.REGISTER, regNum));
     }
 
     // note: no changes made for x64
@@ -282,7 +346,7 @@ public class X64CodeGenerator {
             Operand src = new Operand(oper.getSrcOperand(0));
             mov.setSrcOperand(0, src);
             int regNum = block.getFunc().getNewRegNum();
-            Operand dest = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+            Operand dest = new Operand(Operand.OperandType.REGISTER, regNum);
             mov.setDestOperand(0, dest);
             block.insertOperBefore(oper, mov);
 
@@ -308,7 +372,7 @@ public class X64CodeGenerator {
             // first dest = 0
             Operation newOper = new Operation(Operation.OperationType.X86_MOV, block);
             newOper.setDestOperand(0, new Operand(oper.getDestOperand(0)));
-            newOper.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(0)));
+            newOper.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 0));
             block.insertOperBefore(cmp, newOper);
             // have  dest=0; flags=cmp; now need jump
             // first need then and post blocks
@@ -323,31 +387,19 @@ public class X64CodeGenerator {
             Operand flags = new Operand(Operand.OperandType.MACRO, "Flags");
             newBranch.setSrcOperand(0,
                     new Operand(Operand.OperandType.BLOCK,
-                    new Integer(post.getBlockNum())));
+                    post.getBlockNum()));
             newBranch.setSrcOperand(1, flags);
             block.insertOperAfter(cmp, newBranch);
             Operation setZero = new Operation(Operation.OperationType.X86_MOV, then);
             setZero.setDestOperand(0, new Operand(oper.getDestOperand(0)));
-            setZero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(1)));
+            setZero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 1));
             then.appendOper(setZero);
             // now, need to move any operations from after then compare into the post block
             Operation next;
             for (Operation curr = oldBranch; curr != null; curr = next) {
-                // splice out curr
-                Operation prev = curr.getPrevOper();
-                if (prev == null) {
-                    block.setFirstOper(curr.getNextOper());
-                }
-                else {
-                    prev.setNextOper(curr.getNextOper());
-                }
+                // move curr through removeOper/appendOper, which keep the def-use chains
                 next = curr.getNextOper();
-                if (next == null) {
-                    block.setLastOper(prev);
-                }
-                else {
-                    next.setPrevOper(curr.getPrevOper());
-                }
+                block.removeOper(curr);
                 curr.setPrevOper(null);
                 curr.setNextOper(null);
                 post.appendOper(curr);
@@ -388,7 +440,7 @@ public class X64CodeGenerator {
             Operand src = new Operand(oper.getSrcOperand(0));
             mov.setSrcOperand(0, src);
             int regNum = block.getFunc().getNewRegNum();
-            Operand dest = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+            Operand dest = new Operand(Operand.OperandType.REGISTER, regNum);
             mov.setDestOperand(0, dest);
             block.insertOperBefore(oper, mov);
 
@@ -469,7 +521,7 @@ public class X64CodeGenerator {
         if (parmNum < 6) {
             // need move into MACRO reg from pass reg
             BasicBlock currBlock = oper.getBlock();
-            Operation mov = new Operation(Operation.OperationType.X86_MOV, currBlock);
+            Operation mov = new Operation(x64GetMovType(oper.getSrcOperand(0)), currBlock);
             Operand src = new Operand(oper.getSrcOperand(0));
             mov.setSrcOperand(0, src);
             String macroName = getX64PassRegNameFromNum(parmNum);
@@ -503,7 +555,7 @@ public class X64CodeGenerator {
             int regNum = block.getFunc().getNewRegNum();
             preMov2.setDestOperand(0,
                     new Operand(Operand.OperandType.REGISTER,
-                    new Integer(regNum)));
+                    regNum));
             block.insertOperBefore(oper, preMov2);
             oper.setSrcOperand(1, new Operand(preMov2.getDestOperand(0)));
         }
@@ -526,7 +578,7 @@ public class X64CodeGenerator {
         oper.setType(Operation.OperationType.X86_DIV_I);
         // first, zero EDX
         Operation zero = new Operation(Operation.OperationType.X86_MOV, block);
-        zero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(0)));
+        zero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 0));
         zero.setDestOperand(0, new Operand(Operand.OperandType.MACRO, "EDX"));
         block.insertOperBefore(oper, zero);
         // again, src0 must be EAX
@@ -541,7 +593,7 @@ public class X64CodeGenerator {
             int regNum = block.getFunc().getNewRegNum();
             preMov2.setDestOperand(0,
                     new Operand(Operand.OperandType.REGISTER,
-                    new Integer(regNum)));
+                    regNum));
             block.insertOperBefore(oper, preMov2);
             oper.setSrcOperand(1, new Operand(preMov2.getDestOperand(0)));
         }
@@ -570,16 +622,16 @@ public class X64CodeGenerator {
             throw new X64CodegenException("convertSub: dest is null");
         }
         if (dest.getType() == Operand.OperandType.REGISTER) {
-            int destReg = ((Integer) oper.getDestOperand(0).getValue()).intValue();
+            int destReg = oper.getDestOperand(0).getRegNum();
             // if dest == src0, no mod required
             if (oper.getSrcOperand(0).getType() == Operand.OperandType.REGISTER) {
-                if (destReg == ((Integer) oper.getSrcOperand(0).getValue()).intValue()) {
+                if (destReg == oper.getSrcOperand(0).getRegNum()) {
                     return;
                 }
             }
             // if src1 == dest, then swap src0 and src1
             if ((oper.getSrcOperand(1).getType() == Operand.OperandType.REGISTER) &&
-                    (destReg == ((Integer) oper.getSrcOperand(1).getValue()).intValue())) {
+                    (destReg == oper.getSrcOperand(1).getRegNum())) {
                 Operand temp = oper.getSrcOperand(0);
                 oper.setSrcOperand(0, oper.getSrcOperand(1));
                 oper.setSrcOperand(1, temp);
@@ -587,16 +639,16 @@ public class X64CodeGenerator {
             }
         }
         else if (dest.getType() == Operand.OperandType.MACRO) {
-            String destMacro = (String) oper.getDestOperand(0).getValue();
+            String destMacro = oper.getDestOperand(0).getName();
             // if dest == src0, no mod required
             if (oper.getSrcOperand(0).getType() == Operand.OperandType.MACRO) {
-                if (destMacro.equals((String) oper.getSrcOperand(0).getValue())) {
+                if (destMacro.equals(oper.getSrcOperand(0).getName())) {
                     return;
                 }
             }
             // if src1 == dest, then swap src0 and src1
             if ((oper.getSrcOperand(1).getType() == Operand.OperandType.MACRO) &&
-                    (destMacro.equals((String) oper.getSrcOperand(1).getValue()))) {
+                    (destMacro.equals(oper.getSrcOperand(1).getName()))) {
                 Operand temp = oper.getSrcOperand(0);
                 oper.setSrcOperand(0, oper.getSrcOperand(1));
                 oper.setSrcOperand(1, temp);
@@ -629,19 +681,19 @@ public class X64CodeGenerator {
             throw new X64CodegenException("convertSub: dest is null");
         }
         if (dest.getType() == Operand.OperandType.REGISTER) {
-            int destReg = ((Integer) oper.getDestOperand(0).getValue()).intValue();
+            int destReg = oper.getDestOperand(0).getRegNum();
             // if dest == src0, no mod required
             if (oper.getSrcOperand(0).getType() == Operand.OperandType.REGISTER) {
-                if (destReg == ((Integer) oper.getSrcOperand(0).getValue()).intValue()) {
+                if (destReg == oper.getSrcOperand(0).getRegNum()) {
                     return;
                 }
             }
         }
         else if (dest.getType() == Operand.OperandType.MACRO) {
-            String destMacro = (String) oper.getDestOperand(0).getValue();
+            String destMacro = oper.getDestOperand(0).getName();
             // if dest == src0, no mod required
             if (oper.getSrcOperand(0).getType() == Operand.OperandType.MACRO) {
-                if (destMacro.equals((String) oper.getSrcOperand(0).getValue())) {
+                if (destMacro.equals(oper.getSrcOperand(0).getName())) {
                     return;
                 }
             }
@@ -692,7 +744,7 @@ public class X64CodeGenerator {
                         new Operation(Operation.OperationType.X64_ADD_Q, currBlock);
                 Operand src0 = new Operand(Operand.OperandType.MACRO, "RSP");
                 newOper.setSrcOperand(0, src0);
-                Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(offset));
+                Operand src1 = new Operand(Operand.OperandType.INTEGER, offset);
                 newOper.setSrcOperand(1, src1);
                 Operand dest0 = new Operand(Operand.OperandType.MACRO, "RSP");
                 newOper.setDestOperand(0, dest0);
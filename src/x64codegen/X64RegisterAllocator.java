@@ -119,12 +119,16 @@ public class X64RegisterAllocator {
                 // check all dests before delete
                 boolean canDelete = true;
                 boolean foundRegDest = false;
-                for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+                for (int i = 0; i < currOper.destCount(); i++) {
                     Operand currOperand = currOper.getDestOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.REGISTER)) {
                         foundRegDest = true;
-                        int regNum = ((Integer) currOperand.getValue()).intValue();
+                        int regNum = currOperand.getRegNum();
+                        // a reg nothing reads is dead wherever it is defined
+                        if (func.getUses(regNum).isEmpty()) {
+                            continue;
+                        }
                         Operation subsequentOper;
                         if (currOper.getNextOper() == null) {
                             BasicBlock nextBlock = currBlock.getNextBlock();
@@ -354,11 +358,11 @@ public class X64RegisterAllocator {
             for (Operation currOper = currBlock.getLastOper(); currOper != null;
                     currOper = currOper.getPrevOper()) {
 
-                for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+                for (int i = 0; i < currOper.destCount(); i++) {
                     Operand currOperand = currOper.getDestOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.MACRO)) {
-                        int regNum = getNumFromMacro(currOperand.getValue());
+                        int regNum = getNumFromMacro(currOperand.getName());
                         if (regNum > 0) {
                             currentLiveness.remove(regNum);
                         }
@@ -378,11 +382,11 @@ public class X64RegisterAllocator {
 //                }
 
                 // update for uses
-                for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+                for (int i = 0; i < currOper.srcCount(); i++) {
                     Operand currOperand = currOper.getSrcOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.MACRO)) {
-                        int regNum = getNumFromMacro(currOperand.getValue());
+                        int regNum = getNumFromMacro(currOperand.getName());
                         currentLiveness.add(regNum);
                     }
                 }
@@ -425,8 +429,8 @@ public class X64RegisterAllocator {
 	}
 		
 		
-    private int getNumFromMacro(Object macro) {
-        // we are passed an Object (which should be a String).  We need to convert
+    private int getNumFromMacro(String mac) {
+        // we are passed the name of a MACRO register.  We need to convert
         // it to an int physical reg num using following code:  Note caller save
         // used first
         //  1. EAX
@@ -459,12 +463,6 @@ public class X64RegisterAllocator {
 
         int returnVal;
 
-        if (!(macro instanceof String)) {
-            throw new X86CodegenException("RegAlloc: bad macro value");
-        }
-
-        String mac = (String) macro;
-
         if (mac.compareTo("EAX") == 0 || mac.compareTo("RAX") == 0) {
             returnVal = 1;
         }
@@ -649,11 +647,11 @@ public class X64RegisterAllocator {
             for (Operation currOper = currBlock.getFirstOper(); currOper != null;
                     currOper = currOper.getNextOper()) {
 
-                for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+                for (int i = 0; i < currOper.destCount(); i++) {
                     Operand currOperand = currOper.getDestOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.REGISTER)) {
-                        int regNum = ((Integer) currOperand.getValue()).intValue();
+                        int regNum = currOperand.getRegNum();
                         if (regMap[regNum] > 0) {
                             currOper.setDestOperand(i, new Operand(Operand.OperandType.MACRO,
                                     getMacroNameFromNum(regMap[regNum])));
@@ -662,11 +660,11 @@ public class X64RegisterAllocator {
                 }
 
                 // update for uses
-                for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+                for (int i = 0; i < currOper.srcCount(); i++) {
                     Operand currOperand = currOper.getSrcOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.REGISTER)) {
-                        int regNum = ((Integer) currOperand.getValue()).intValue();
+                        int regNum = currOperand.getRegNum();
                         if (regMap[regNum] > 0) {
                             currOper.setSrcOperand(i, new Operand(Operand.OperandType.MACRO,
                                     getMacroNameFromNum(regMap[regNum])));
@@ -789,12 +787,13 @@ public class X64RegisterAllocator {
                         if (currOper.getSrcOperand(0).getType() != Operand.OperandType.MACRO) {
                             continue;
                         }
-                        if (((String) currOper.getSrcOperand(0).getValue()).compareTo("ESP") != 0) {
+                        if (currOper.getSrcOperand(0).getName().compareTo("ESP") != 0) {
                             continue;
                         }
                         int oldOffset =
-                                ((Integer) currOper.getSrcOperand(1).getValue()).intValue();
-                        currOper.getSrcOperand(1).setValue(new Integer(oldOffset + fudgeFactor));
+                                currOper.getSrcOperand(1).getImmediate();
+                        currOper.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER,
+                                oldOffset + fudgeFactor));
                     }
                 }
             }
@@ -869,7 +868,7 @@ public class X64RegisterAllocator {
             for (Operation currOper = currBlock.getFirstOper(); currOper != null;
                     currOper = currOper.getNextOper()) {
 
-                for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+                for (int i = 0; i < currOper.destCount(); i++) {
                     Operand currOperand = currOper.getDestOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.REGISTER)) {
@@ -879,7 +878,7 @@ public class X64RegisterAllocator {
                 }
 
                 // update for uses
-                for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+                for (int i = 0; i < currOper.srcCount(); i++) {
                     Operand currOperand = currOper.getSrcOperand(i);
                     if ((currOperand != null) &&
                             (currOperand.getType() == Operand.OperandType.REGISTER)) {
@@ -77,8 +77,7 @@ public class X86AssemblyGenerator {
             break;
 
           case JMP:
-            int tgt = ( (Integer) currOper.getSrcOperand(0).getValue()).
-                intValue();
+            int tgt = currOper.getSrcOperand(0).getBlockNum();
             outFile.println("\tjmp\t" + func.getName() + "_bb" + tgt);
             break;
 
@@ -86,162 +85,61 @@ public class X86AssemblyGenerator {
             outFile.print("\tpushl\t");
             Operand src = currOper.getSrcOperand(0);
             if (src.getType() == Operand.OperandType.REGISTER) {
-              outFile.println("%" + ( (String) src.getValue()));
+              outFile.println("%" + src.getName());
             }
             else {
-              outFile.println("$" + ( (Integer) src.getValue()).intValue());
+              outFile.println("$" + src.getImmediate());
             }
             break;
 
           case CALL:
             outFile.println("\tcall\t" +
-                            ( (String) currOper.getSrcOperand(0).getValue()));
+                            currOper.getSrcOperand(0).getName());
             break;
 
           case LOAD_I:
 
-            // movl  (%ebx), %eax   or   movl   a, %eax  or movl 4(%eax), %ebx
+            // movl  (%ebx), %eax   or   movl   a, %eax  or movl 4(%esp,%ebx,4), %ebx
             outFile.print("\tmovl\t");
-            Operand src0 = currOper.getSrcOperand(0);
-            Operand src1 = currOper.getSrcOperand(1);
-
-            // only used for stack loads (local arrays)
-            Operand src2 = currOper.getSrcOperand(2);
-
-            if (src0.getType() == Operand.OperandType.STRING) {
-              outFile.print( ( (String) currOper.getSrcOperand(0).getValue()));
-              if (src1 != null) {
-                if (src1.getType() == Operand.OperandType.INTEGER) {
-                  if ( ( (Integer) src1.getValue()).intValue() != 0) {
-                    outFile.print("+" + ( (Integer) src1.getValue()).intValue());
-                  }
-                }
-                else if (src1.getType() == Operand.OperandType.MACRO) {
-                  outFile.print("(%" + src1.getValue() + ")");
-                }
-                else {
-                  throw new X86CodegenException("assembleLoad: unexpected src1");
-                }
-              }
-            }
-            else if (src0.getType() == Operand.OperandType.MACRO) {
-              if (src1 != null) {
-                if (src1.getType() == Operand.OperandType.INTEGER) {
-                  if ( ( (Integer) src1.getValue()).intValue() != 0) {
-                    outFile.print( ( (Integer) src1.getValue()).intValue());
-                  }
-                  outFile.print("(%" +
-                                ( (String) currOper.getSrcOperand(0).getValue()));
-                  if (src2 != null) {
-                    if (src2.getType() == Operand.OperandType.MACRO) {
-                      outFile.print(",%" + currOper.getSrcOperand(2).getValue());
-                    }
-                    else {
-                      throw new X86CodegenException(
-                          "assembleLoad: unexpected src2");
-                    }
-                  }
-                  outFile.print(")");
-
-                }
-                else if (src1.getType() == Operand.OperandType.MACRO) {
-                  outFile.print("(%" +
-                                ( (String) currOper.getSrcOperand(0).getValue()));
-                  outFile.print(",%" + currOper.getSrcOperand(2).getValue());
-                  outFile.print(")");
-                }
-                else {
-                  throw new X86CodegenException("assembleLoad: unexpected src1");
-                }
-              }
-              else {
-                outFile.print("(%" +
-                              ( (String) currOper.getSrcOperand(0).getValue()) +
-                              ")");
-              }
-            }
-            else {
-              throw new X86CodegenException("assembleLoad: unexpected src0");
-            }
+            printAddress(currOper, 0);
             outFile.println(", %" +
-                            ( (String) currOper.getDestOperand(0).getValue()));
+                            currOper.getDestOperand(0).getName());
             break;
 
           case STORE_I:
 
             // movl   %ebx, (%eax)  or  movl $2, (%eax)  or movl %eax, a
-            // or movl %ebx, 8(%eax)   or movl %ebx, 8(a)
+            // or movl %ebx, 8(%eax)   or movl %ebx, a(,%ecx,4)
             outFile.print("\tmovl\t");
-            src0 = currOper.getSrcOperand(0);
+            Operand src0 = currOper.getSrcOperand(0);
             if (src0.getType() == Operand.OperandType.INTEGER) {
-              outFile.print("$" + ( (Integer) src0.getValue()).intValue() +
+              outFile.print("$" + src0.getImmediate() +
                             ", ");
             }
             else {
-              outFile.print("%" + ( (String) src0.getValue()) + ", ");
-            }
-            src1 = currOper.getSrcOperand(1);
-            src2 = currOper.getSrcOperand(2);
-            Operand src3 = currOper.getSrcOperand(3);
-
-            if (src1.getType() == Operand.OperandType.MACRO) {
-
-              if (src2 != null) {
-                if (src2.getType() == Operand.OperandType.INTEGER) {
-                  if ( ( (Integer) src2.getValue()).intValue() != 0) {
-                    outFile.print( ( (Integer) src2.getValue()).intValue());
-                  }
-                  outFile.print("(%" +
-                                  ( (String) src1.getValue()));
-                  if (src3 != null) {
-                    if (src3.getType() == Operand.OperandType.MACRO) {
-                      outFile.print(",%" + currOper.getSrcOperand(3).getValue());
-                    }
-                    else {
-                      throw new X86CodegenException(
-                          "assembleStore: unexpected src3");
-                    }
-                  }
-                  outFile.println(")");
-                }
-                else {
-                  throw new X86CodegenException(
-                      "assembleStore: unexpected src2");
-                }
-              }
-            }
-            // else is global
-            else {
-              outFile.print( ( (String) src1.getValue()));
-              if (src2 != null) {
-                if (src2.getType() == Operand.OperandType.INTEGER) {
-                  if ( ( (Integer) src2.getValue()).intValue() != 0) {
-                    outFile.println("+" + ( (Integer) src2.getValue()).intValue());
-                  }
-                  else {
-                    outFile.println();
-                  }
-                }
-                else if (src2.getType() == Operand.OperandType.MACRO) {
-                  outFile.println("(%" + src2.getValue() + ")");
-                }
-
-                else {
-                  throw new X86CodegenException(
-                      "assembleStore: unexpected src2");
-                }
-              }
+              outFile.print("%" + src0.getName() + ", ");
             }
+            printAddress(currOper, 1);
+            outFile.println();
+            break;
+
+          case LOAD_ADDR:
+
+            // leal  a, %eax   or   leal 16(%esp), %eax
+            outFile.print("\tleal\t");
+            printAddress(currOper, 0);
+            outFile.println(", %" +
+                            currOper.getDestOperand(0).getName());
             break;
 
           case X86_PUSH:
             outFile.print("\tpushl\t");
             src0 = currOper.getSrcOperand(0);
             if (src0.getType() == Operand.OperandType.INTEGER) {
-              outFile.println("$" + ( (Integer) src0.getValue()).intValue());
+              outFile.println("$" + src0.getImmediate());
             }
             else {
-              outFile.println("%" + ( (String) src0.getValue()));
+              outFile.println("%" + src0.getName());
             }
             break;
 
@@ -249,10 +147,10 @@ public class X86AssemblyGenerator {
             outFile.print("\tpopl\t");
             Operand dest0 = currOper.getDestOperand(0);
             if (dest0.getType() == Operand.OperandType.INTEGER) {
-              outFile.println("$" + ( (Integer) dest0.getValue()).intValue());
+              outFile.println("$" + dest0.getImmediate());
             }
             else {
-              outFile.println("%" + ( (String) dest0.getValue()));
+              outFile.println("%" + dest0.getName());
             }
             break;
 
@@ -263,31 +161,31 @@ public class X86AssemblyGenerator {
             outFile.print("\tmovl\t");
             src0 = currOper.getSrcOperand(0);
             if (src0.getType() == Operand.OperandType.INTEGER) {
-              outFile.print("$" + ( (Integer) src0.getValue()).intValue());
+              outFile.print("$" + src0.getImmediate());
             }
             else {
-              outFile.print("%" + ( (String) src0.getValue()));
+              outFile.print("%" + src0.getName());
             }
             outFile.println(", %" +
-                            ( (String) currOper.getDestOperand(0).getValue()));
+                            currOper.getDestOperand(0).getName());
             break;
 
           case X86_CMP:
             outFile.print("\tcmpl\t");
-            src1 = currOper.getSrcOperand(1);
+            Operand src1 = currOper.getSrcOperand(1);
             if (src1.getType() == Operand.OperandType.INTEGER) {
-              outFile.print("$" + ( (Integer) src1.getValue()).intValue() +
+              outFile.print("$" + src1.getImmediate() +
                             ", ");
             }
             else {
-              outFile.print("%" + ( (String) src1.getValue()) + ", ");
+              outFile.print("%" + src1.getName() + ", ");
             }
             src0 = currOper.getSrcOperand(0);
             if (src0.getType() == Operand.OperandType.INTEGER) {
-              outFile.println("$" + ( (Integer) src0.getValue()).intValue());
+              outFile.println("$" + src0.getImmediate());
             }
             else {
-              outFile.println("%" + ( (String) src0.getValue()));
+              outFile.println("%" + src0.getName());
             }
             break;
 
@@ -320,6 +218,44 @@ public class X86AssemblyGenerator {
     }
   }
 
+  // prints the address of a memory oper, whose src operands from first on
+  // are base, displacement and index:  a+8  or  a(,%ebx,4)  or  8(%esp,%ebx,4)
+  private void printAddress(Operation oper, int first) {
+    Operand base = oper.getSrcOperand(first);
+    Operand disp = oper.getSrcOperand(first + 1);
+    Operand index = oper.getSrcOperand(first + 2);
+    int offset = 0;
+    if (disp != null) {
+      if (disp.getType() != Operand.OperandType.INTEGER) {
+        throw new X86CodegenException("assembler: unexpected displacement");
+      }
+      offset = disp.getImmediate();
+    }
+
+    if (base.getType() == Operand.OperandType.STRING) {
+      outFile.print(base.getName());
+      if (offset != 0) {
+        outFile.print("+" + offset);
+      }
+      if (index != null) {
+        outFile.print("(,%" + index.getName() + ",4)");
+      }
+    }
+    else if (base.getType() == Operand.OperandType.MACRO) {
+      if (offset != 0) {
+        outFile.print(offset);
+      }
+      outFile.print("(%" + base.getName());
+      if (index != null) {
+        outFile.print(",%" + index.getName() + ",4");
+      }
+      outFile.print(")");
+    }
+    else {
+      throw new X86CodegenException("assembler: unexpected address base");
+    }
+  }
+
   private void assembleArithmetic(Operation oper) {
 
     if (oper.getType() == Operation.OperationType.ADD_I) {
@@ -340,18 +276,18 @@ public class X86AssemblyGenerator {
 
     Operand src1 = oper.getSrcOperand(1);
     if (src1.getType() == Operand.OperandType.INTEGER) {
-      outFile.print("$" + ( (Integer) src1.getValue()).intValue());
+      outFile.print("$" + src1.getImmediate());
     }
     else {
-      outFile.print("%" + ( (String) src1.getValue()));
+      outFile.print("%" + src1.getName());
     }
     outFile.print(", ");
     Operand src0 = oper.getSrcOperand(0);
     if (src0.getType() == Operand.OperandType.INTEGER) {
-      outFile.println("$" + ( (Integer) src0.getValue()).intValue());
+      outFile.println("$" + src0.getImmediate());
     }
     else {
-      outFile.println("%" + ( (String) src0.getValue()));
+      outFile.println("%" + src0.getName());
     }
 
   }
@@ -384,7 +320,7 @@ public class X86AssemblyGenerator {
         throw new X86CodegenException("assembleBranch: bad oper type");
     }
     outFile.println(oper.getBlock().getFunc().getName() + "_bb" +
-                    ( (Integer) oper.getSrcOperand(0).getValue()).intValue());
+                    oper.getSrcOperand(0).getBlockNum());
   }
 
   private void peepholeOpti(Function func) {
@@ -411,8 +347,8 @@ public class X86AssemblyGenerator {
         if (currOper.getSrcOperand(0).getType() != Operand.OperandType.MACRO) {
           continue;
         }
-        String dest = (String) currOper.getDestOperand(0).getValue();
-        String src = (String) currOper.getSrcOperand(0).getValue();
+        String dest = currOper.getDestOperand(0).getName();
+        String src = currOper.getSrcOperand(0).getName();
         if (dest.compareTo(src) == 0) {
           currBlock.removeOper(currOper);
         }
@@ -7,6 +7,8 @@ public class X86CodeGenerator {
   private static final int FIRST_PARAM_OFFSET = 4;
 
   private CodeItem firstItem;
+  // bytes of params pushed for calls not yet made, at the oper being converted
+  private int pushedBytes;
 
   public X86CodeGenerator(CodeItem first) {
     firstItem = first;
@@ -80,7 +82,7 @@ public class X86CodeGenerator {
       Operation oper3 = new Operation(Operation.OperationType.SUB_I, block);
       Operand src0 = new Operand(Operand.OperandType.MACRO, "ESP");
       oper3.setSrcOperand(0, src0);
-      Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(frameSize));
+      Operand src1 = new Operand(Operand.OperandType.INTEGER, frameSize);
       oper3.setSrcOperand(1, src1);
       Operand dest0 = new Operand(Operand.OperandType.MACRO, "ESP");
       oper3.setDestOperand(0, dest0);
@@ -95,7 +97,8 @@ public class X86CodeGenerator {
     // now move params from memory into register
 
     Function func = block.getFunc();
-    int paramOffset = FIRST_PARAM_OFFSET ;
+    // params are above the return address and the frame (local arrays)
+    int paramOffset = FIRST_PARAM_OFFSET + frameSize;
     for (FuncParam currParam = func.getfirstParam(); currParam != null;
          currParam = currParam.getNextParam()) {
       String name = currParam.getName();
@@ -103,9 +106,9 @@ public class X86CodeGenerator {
       Operation loadOper = new Operation(Operation.OperationType.LOAD_I, block);
       Operand src0 = new Operand(Operand.OperandType.MACRO, "ESP");
       loadOper.setSrcOperand(0, src0);
-      Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(paramOffset));
+      Operand src1 = new Operand(Operand.OperandType.INTEGER, paramOffset);
       loadOper.setSrcOperand(1, src1);
-      Operand dest0 = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+      Operand dest0 = new Operand(Operand.OperandType.REGISTER, regNum);
       loadOper.setDestOperand(0, dest0);
       if (currOper == null) {
         block.insertFirst(loadOper);
@@ -134,7 +137,7 @@ public class X86CodeGenerator {
       oper3 = new Operation(Operation.OperationType.ADD_I, block);
       Operand src0 = new Operand(Operand.OperandType.MACRO, "ESP");
       oper3.setSrcOperand(0, src0);
-      Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(frameSize));
+      Operand src1 = new Operand(Operand.OperandType.INTEGER, frameSize);
       oper3.setSrcOperand(1, src1);
       Operand dest0 = new Operand(Operand.OperandType.MACRO, "ESP");
       oper3.setDestOperand(0, dest0);
@@ -178,23 +181,23 @@ public class X86CodeGenerator {
         for (Operation currOper = currBlock.getFirstOper(); currOper != null;
              currOper = currOper.getNextOper()) {
 
-          for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+          for (int i = 0; i < currOper.destCount(); i++) {
             Operand currOperand = currOper.getDestOperand(i);
             if ( (currOperand != null) &&
                 (currOperand.getType() == Operand.OperandType.MACRO)) {
-              if ( ( (String) currOperand.getValue()).compareTo("RetReg") == 0) {
-                currOperand.setValue(new String("EAX"));
+              if (currOperand.getName().compareTo("RetReg") == 0) {
+                currOper.setDestOperand(i, new Operand(Operand.OperandType.MACRO, "EAX"));
               }
             }
           }
 
           // update for uses
-          for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+          for (int i = 0; i < currOper.srcCount(); i++) {
             Operand currOperand = currOper.getSrcOperand(i);
             if ( (currOperand != null) &&
                 (currOperand.getType() == Operand.OperandType.MACRO)) {
-              if ( ( (String) currOperand.getValue()).compareTo("RetReg") == 0) {
-                currOperand.setValue(new String("EAX"));
+              if (currOperand.getName().compareTo("RetReg") == 0) {
+                currOper.setSrcOperand(i, new Operand(Operand.OperandType.MACRO, "EAX"));
               }
             }
           }
@@ -210,6 +213,7 @@ public class X86CodeGenerator {
         continue;
       }
       Function func = (Function) currItem;
+      pushedBytes = 0;
       for (BasicBlock currBlock = func.getFirstBlock(); currBlock != null;
            currBlock = currBlock.getNextBlock()) {
         for (Operation currOper = currBlock.getFirstOper(); currOper != null;
@@ -232,6 +236,7 @@ public class X86CodeGenerator {
               break;
             case PASS:
               x86ConvertPassOper(currOper);
+              pushedBytes += 4;
               break;
             case MUL_I:
               x86ConvertMulOper(currOper);
@@ -254,7 +259,12 @@ public class X86CodeGenerator {
             case RETURN:
             case JMP:
             case LOAD_I:
+            case LOAD_ADDR:
+              x86ConvertStackAddress(currOper, 0);
+              break;
             case STORE_I:
+              x86ConvertStackAddress(currOper, 1);
+              break;
             case X86_PUSH:
             case X86_POP:
             case X86_MOV:
@@ -296,7 +306,7 @@ public class X86CodeGenerator {
       Operand src = new Operand(oper.getSrcOperand(0));
       mov.setSrcOperand(0, src);
       int regNum = block.getFunc().getNewRegNum();
-      Operand dest = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+      Operand dest = new Operand(Operand.OperandType.REGISTER, regNum);
       mov.setDestOperand(0, dest);
       block.insertOperBefore(oper, mov);
 
@@ -322,7 +332,7 @@ public class X86CodeGenerator {
       // first dest = 0
       Operation newOper = new Operation(Operation.OperationType.X86_MOV, block);
       newOper.setDestOperand(0, new Operand(oper.getDestOperand(0)));
-      newOper.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(0)));
+      newOper.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 0));
       block.insertOperBefore(cmp, newOper);
       // have  dest=0; flags=cmp; now need jump
       // first need then and post blocks
@@ -337,31 +347,19 @@ public class X86CodeGenerator {
       Operand flags = new Operand(Operand.OperandType.MACRO, "Flags");
       newBranch.setSrcOperand(0,
                               new Operand(Operand.OperandType.BLOCK,
-                                          new Integer(post.getBlockNum())));
+                                          post.getBlockNum()));
       newBranch.setSrcOperand(1, flags);
       block.insertOperAfter(cmp, newBranch);
       Operation setZero = new Operation(Operation.OperationType.X86_MOV, then);
       setZero.setDestOperand(0, new Operand(oper.getDestOperand(0)));
-      setZero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(1)));
+      setZero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 1));
       then.appendOper(setZero);
       // now, need to move any operations from after then compare into the post block
       Operation next;
       for (Operation curr = oldBranch; curr != null; curr = next) {
-        // splice out curr
-        Operation prev = curr.getPrevOper();
-        if (prev == null) {
-          block.setFirstOper(curr.getNextOper());
-        }
-        else {
-          prev.setNextOper(curr.getNextOper());
-        }
+        // move curr through removeOper/appendOper, which keep the def-use chains
         next = curr.getNextOper();
-        if (next == null) {
-          block.setLastOper(prev);
-        }
-        else {
-          next.setPrevOper(curr.getPrevOper());
-        }
+        block.removeOper(curr);
         curr.setPrevOper(null);
         curr.setNextOper(null);
         post.appendOper(curr);
@@ -402,7 +400,7 @@ public class X86CodeGenerator {
       Operand src = new Operand(oper.getSrcOperand(0));
       mov.setSrcOperand(0, src);
       int regNum = block.getFunc().getNewRegNum();
-      Operand dest = new Operand(Operand.OperandType.REGISTER, new Integer(regNum));
+      Operand dest = new Operand(Operand.OperandType.REGISTER, regNum);
       mov.setDestOperand(0, dest);
       block.insertOperBefore(oper, mov);
 
@@ -471,6 +469,20 @@ public class X86CodeGenerator {
     oper.setType(Operation.OperationType.X86_PUSH);
   }
 
+  // A local array is addressed off ESP, which moves down as a call's params
+  // are pushed; an access between a push and its call (e.g. f(x, a[i]))
+  // must reach past the params pushed so far
+  private void x86ConvertStackAddress(Operation oper, int first) {
+    Operand base = oper.getSrcOperand(first);
+    if (pushedBytes == 0 || base.getType() != Operand.OperandType.MACRO ||
+        base.getName().compareTo("ESP") != 0) {
+      return;
+    }
+    Operand disp = oper.getSrcOperand(first + 1);
+    oper.setSrcOperand(first + 1, new Operand(Operand.OperandType.INTEGER,
+                                              disp.getImmediate() + pushedBytes));
+  }
+
   public void x86ConvertMulOper(Operation oper) {
     // The multiply uses particular regs.  In particular, the src0 must be
     // EAX and the dest must be EAX/EDX
@@ -490,7 +502,7 @@ public class X86CodeGenerator {
       int regNum = block.getFunc().getNewRegNum();
       preMov2.setDestOperand(0,
                              new Operand(Operand.OperandType.REGISTER,
-                                         new Integer(regNum)));
+                                         regNum));
       block.insertOperBefore(oper, preMov2);
       oper.setSrcOperand(1, new Operand(preMov2.getDestOperand(0)));
     }
@@ -513,7 +525,7 @@ public class X86CodeGenerator {
     oper.setType(Operation.OperationType.X86_DIV_I);
     // first, zero EDX
     Operation zero = new Operation(Operation.OperationType.X86_MOV, block);
-    zero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, new Integer(0)));
+    zero.setSrcOperand(0, new Operand(Operand.OperandType.INTEGER, 0));
     zero.setDestOperand(0, new Operand(Operand.OperandType.MACRO, "EDX"));
     block.insertOperBefore(oper, zero);
     // again, src0 must be EAX
@@ -528,7 +540,7 @@ public class X86CodeGenerator {
       int regNum = block.getFunc().getNewRegNum();
       preMov2.setDestOperand(0,
                              new Operand(Operand.OperandType.REGISTER,
-                                         new Integer(regNum)));
+                                         regNum));
       block.insertOperBefore(oper, preMov2);
       oper.setSrcOperand(1, new Operand(preMov2.getDestOperand(0)));
     }
@@ -557,16 +569,16 @@ public class X86CodeGenerator {
       throw new X86CodegenException("convertSub: dest is null");
     }
     if (dest.getType() == Operand.OperandType.REGISTER) {
-      int destReg = ( (Integer) oper.getDestOperand(0).getValue()).intValue();
+      int destReg = oper.getDestOperand(0).getRegNum();
       // if dest == src0, no mod required
       if (oper.getSrcOperand(0).getType() == Operand.OperandType.REGISTER) {
-        if (destReg == ( (Integer) oper.getSrcOperand(0).getValue()).intValue()) {
+        if (destReg == oper.getSrcOperand(0).getRegNum()) {
           return;
         }
       }
       // if src1 == dest, then swap src0 and src1
       if ( (oper.getSrcOperand(1).getType() == Operand.OperandType.REGISTER) &&
-          (destReg == ( (Integer) oper.getSrcOperand(1).getValue()).intValue())) {
+          (destReg == oper.getSrcOperand(1).getRegNum())) {
         Operand temp = oper.getSrcOperand(0);
         oper.setSrcOperand(0, oper.getSrcOperand(1));
         oper.setSrcOperand(1, temp);
@@ -574,16 +586,16 @@ public class X86CodeGenerator {
       }
     }
     else if (dest.getType() == Operand.OperandType.MACRO) {
-      String destMacro = (String) oper.getDestOperand(0).getValue();
+      String destMacro = oper.getDestOperand(0).getName();
       // if dest == src0, no mod required
       if (oper.getSrcOperand(0).getType() == Operand.OperandType.MACRO) {
-        if (destMacro.equals( (String) oper.getSrcOperand(0).getValue())) {
+        if (destMacro.equals(oper.getSrcOperand(0).getName())) {
           return;
         }
       }
       // if src1 == dest, then swap src0 and src1
       if ( (oper.getSrcOperand(1).getType() == Operand.OperandType.MACRO) &&
-          (destMacro.equals( (String) oper.getSrcOperand(1).getValue()))) {
+          (destMacro.equals(oper.getSrcOperand(1).getName()))) {
         Operand temp = oper.getSrcOperand(0);
         oper.setSrcOperand(0, oper.getSrcOperand(1));
         oper.setSrcOperand(1, temp);
@@ -616,19 +628,19 @@ public class X86CodeGenerator {
       throw new X86CodegenException("convertSub: dest is null");
     }
     if (dest.getType() == Operand.OperandType.REGISTER) {
-      int destReg = ( (Integer) oper.getDestOperand(0).getValue()).intValue();
+      int destReg = oper.getDestOperand(0).getRegNum();
       // if dest == src0, no mod required
       if (oper.getSrcOperand(0).getType() == Operand.OperandType.REGISTER) {
-        if (destReg == ( (Integer) oper.getSrcOperand(0).getValue()).intValue()) {
+        if (destReg == oper.getSrcOperand(0).getRegNum()) {
           return;
         }
       }
     }
     else if (dest.getType() == Operand.OperandType.MACRO) {
-      String destMacro = (String) oper.getDestOperand(0).getValue();
+      String destMacro = oper.getDestOperand(0).getName();
       // if dest == src0, no mod required
       if (oper.getSrcOperand(0).getType() == Operand.OperandType.MACRO) {
-        if (destMacro.equals( (String) oper.getSrcOperand(0).getValue())) {
+        if (destMacro.equals(oper.getSrcOperand(0).getName())) {
           return;
         }
       }
@@ -657,13 +669,14 @@ public class X86CodeGenerator {
     }
     int numParams = Integer.parseInt(attrValue);
     int offset = numParams << 2;
+    pushedBytes -= offset;
     if (numParams > 0) {
       BasicBlock currBlock = currOper.getBlock();
       Operation newOper =
           new Operation(Operation.OperationType.ADD_I, currBlock);
       Operand src0 = new Operand(Operand.OperandType.MACRO, "ESP");
       newOper.setSrcOperand(0, src0);
-      Operand src1 = new Operand(Operand.OperandType.INTEGER, new Integer(offset));
+      Operand src1 = new Operand(Operand.OperandType.INTEGER, offset);
       newOper.setSrcOperand(1, src1);
       Operand dest0 = new Operand(Operand.OperandType.MACRO, "ESP");
       newOper.setDestOperand(0, dest0);
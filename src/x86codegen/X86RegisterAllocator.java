@@ -119,12 +119,16 @@ public class X86RegisterAllocator {
         // check all dests before delete
         boolean canDelete = true;
         boolean foundRegDest = false;
-        for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+        for (int i = 0; i < currOper.destCount(); i++) {
           Operand currOperand = currOper.getDestOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.REGISTER)) {
             foundRegDest = true;
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+            int regNum = currOperand.getRegNum();
+            // a reg nothing reads is dead wherever it is defined
+            if (func.getUses(regNum).isEmpty()) {
+              continue;
+            }
             Operation subsequentOper;
             if (currOper.getNextOper() == null) {
               BasicBlock nextBlock = currBlock.getNextBlock();
@@ -347,11 +351,11 @@ public class X86RegisterAllocator {
       for (Operation currOper = currBlock.getLastOper(); currOper != null;
            currOper = currOper.getPrevOper()) {
 
-        for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+        for (int i = 0; i < currOper.destCount(); i++) {
           Operand currOperand = currOper.getDestOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.MACRO)) {
-            int regNum = getNumFromMacro(currOperand.getValue());
+            int regNum = getNumFromMacro(currOperand.getName());
             if (regNum > 0) {
               currentLiveness.remove(regNum);
             }
@@ -365,11 +369,11 @@ public class X86RegisterAllocator {
         }
 
         // update for uses
-        for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+        for (int i = 0; i < currOper.srcCount(); i++) {
           Operand currOperand = currOper.getSrcOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.MACRO)) {
-            int regNum = getNumFromMacro(currOperand.getValue());
+            int regNum = getNumFromMacro(currOperand.getName());
             currentLiveness.add(regNum);
           }
         }
@@ -392,8 +396,8 @@ public class X86RegisterAllocator {
     }
   }
 
-  private int getNumFromMacro(Object macro) {
-    // we are passed an Object (which should be a String).  We need to convert
+  private int getNumFromMacro(String mac) {
+    // we are passed the name of a MACRO register.  We need to convert
     // it to an int physical reg num using following code:  Note caller save
     // used first
     //  1. EAX
@@ -407,12 +411,6 @@ public class X86RegisterAllocator {
 
     int returnVal;
 
-    if (! (macro instanceof String)) {
-      throw new X86CodegenException("RegAlloc: bad macro value");
-    }
-
-    String mac = (String) macro;
-
     if (mac.compareTo("EAX") == 0) {
       returnVal = 1;
     }
@@ -508,11 +506,11 @@ public class X86RegisterAllocator {
       for (Operation currOper = currBlock.getFirstOper(); currOper != null;
            currOper = currOper.getNextOper()) {
 
-        for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+        for (int i = 0; i < currOper.destCount(); i++) {
           Operand currOperand = currOper.getDestOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.REGISTER)) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+            int regNum = currOperand.getRegNum();
             if (regMap[regNum] > 0) {
               currOper.setDestOperand(i, new Operand(Operand.OperandType.MACRO,
                   getMacroNameFromNum(regMap[regNum])));
@@ -521,11 +519,11 @@ public class X86RegisterAllocator {
         }
 
         // update for uses
-        for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+        for (int i = 0; i < currOper.srcCount(); i++) {
           Operand currOperand = currOper.getSrcOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.REGISTER)) {
-            int regNum = ( (Integer) currOperand.getValue()).intValue();
+            int regNum = currOperand.getRegNum();
             if (regMap[regNum] > 0) {
               currOper.setSrcOperand(i, new Operand(Operand.OperandType.MACRO,
                   getMacroNameFromNum(regMap[regNum])));
@@ -632,12 +630,13 @@ public class X86RegisterAllocator {
             if (currOper.getSrcOperand(0).getType() != Operand.OperandType.MACRO) {
               continue;
             }
-            if (((String)currOper.getSrcOperand(0).getValue()).compareTo("ESP") != 0) {
+            if (currOper.getSrcOperand(0).getName().compareTo("ESP") != 0) {
               continue;
             }
             int oldOffset =
-                  ((Integer) currOper.getSrcOperand(1).getValue()).intValue();
-            currOper.getSrcOperand(1).setValue(new Integer(oldOffset + fudgeFactor));
+                  currOper.getSrcOperand(1).getImmediate();
+            currOper.setSrcOperand(1, new Operand(Operand.OperandType.INTEGER,
+                                                  oldOffset + fudgeFactor));
           }
         }
       }
@@ -696,7 +695,7 @@ public class X86RegisterAllocator {
       for (Operation currOper = currBlock.getFirstOper(); currOper != null;
            currOper = currOper.getNextOper()) {
 
-        for (int i = 0; i < Operation.MAX_DEST_OPERANDS; i++) {
+        for (int i = 0; i < currOper.destCount(); i++) {
           Operand currOperand = currOper.getDestOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.REGISTER)) {
@@ -706,7 +705,7 @@ public class X86RegisterAllocator {
         }
 
         // update for uses
-        for (int i = 0; i < Operation.MAX_SRC_OPERANDS; i++) {
+        for (int i = 0; i < currOper.srcCount(); i++) {
           Operand currOperand = currOper.getSrcOperand(i);
           if ( (currOperand != null) &&
               (currOperand.getType() == Operand.OperandType.REGISTER)) {